@@ -0,0 +1,422 @@
+package com.huyvuong.udacity.popularmovies.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.mock.MockContentResolver;
+import android.util.Log;
+
+import com.huyvuong.udacity.popularmovies.gateway.TmdbGateway;
+import com.huyvuong.udacity.popularmovies.model.business.Movie;
+import com.huyvuong.udacity.popularmovies.model.business.Review;
+import com.huyvuong.udacity.popularmovies.model.business.Video;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Benchmark of the {@link MovieProvider} reads and writes behind the app's screens, on a database
+ * holding 10,000 favorite movies and 100 cached pages of movies, with cached videos and reviews
+ * for 500 of them. The data goes through the same {@link CatalogCache} calls and provider URIs as
+ * the app's, against a provider of its own on a separate database file.
+ *
+ * Every benchmark measures a path with and without one of the database's optimizations, logs the
+ * median timings of both under this class's name, and checks that both return the same rows.
+ *
+ * This is an instrumented test, which runs on an Android device, rather than a Robolectric or
+ * plain JVM test, because neither could measure what these optimizations are for. Robolectric
+ * runs every SQLite call of every connection on one thread of its own, so reads never run
+ * alongside a write, with or without a write-ahead log, and it uses a desktop build of SQLite
+ * rather than the device's. Plain JDBC would bypass the provider and Android's connection pool.
+ * Run it with {@code ./gradlew connectedAndroidTest} against a device or emulator.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MovieProviderBenchmarkTest
+{
+    private static final String LOG_TAG = MovieProviderBenchmarkTest.class.getSimpleName();
+    private static final String DATABASE_NAME = "movie-benchmark.db";
+
+    private static final int FAVORITE_COUNT = 10000;
+    private static final int CACHED_PAGE_COUNT = 100;
+    private static final int MOVIES_PER_PAGE = 20;
+    private static final int EXTRAS_MOVIE_COUNT = 500;
+    private static final int VIDEOS_PER_MOVIE = 10;
+    private static final int REVIEWS_PER_MOVIE = 10;
+    private static final int LOOKUP_COUNT = 100;
+    private static final int REPLACED_PAGE_COUNT = 10;
+    private static final int WARM_UP_RUNS = 3;
+    private static final int MEASURED_RUNS = 10;
+
+    // Cached movies get TMDb IDs above those of the favorites, so the two do not overlap.
+    private static final int CACHED_MOVIE_ID_OFFSET = 100000;
+
+    // Columns read by FavoritesRepository when loading the favorites list.
+    private static final String[] MOVIE_PROJECTION = new String[]
+            {
+                    MovieContract.MovieEntry.COLUMN_MOVIE_ID,
+                    MovieContract.MovieEntry.COLUMN_ORIGINAL_TITLE,
+                    MovieContract.MovieEntry.COLUMN_POSTER_PATH,
+                    MovieContract.MovieEntry.COLUMN_PLOT_SYNOPSIS,
+                    MovieContract.MovieEntry.COLUMN_RATING,
+                    MovieContract.MovieEntry.COLUMN_RELEASE_DATE
+            };
+
+    private Context context;
+    private MovieProvider movieProvider;
+    private MockContentResolver contentResolver;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        movieProvider = new MovieProvider(DATABASE_NAME);
+        movieProvider.attachInfo(context, null);
+        contentResolver = new MockContentResolver(context);
+        contentResolver.addProvider(MovieContract.CONTENT_AUTHORITY, movieProvider);
+
+        insertFavoriteMovies();
+        for (int page = 1; page <= CACHED_PAGE_COUNT; page++)
+        {
+            CatalogCache.replaceMoviePage(contentResolver,
+                                          TmdbGateway.MovieSortingCriteria.POPULAR,
+                                          page,
+                                          buildPage(page, 0));
+        }
+        for (int i = 0; i < EXTRAS_MOVIE_COUNT; i++)
+        {
+            int tmdbId = CACHED_MOVIE_ID_OFFSET + i;
+            CatalogCache.replaceVideos(contentResolver, tmdbId, buildVideos(tmdbId));
+            CatalogCache.replaceReviews(contentResolver, tmdbId, buildReviews(tmdbId));
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        movieProvider.getMovieDbHelper().close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void journalsToWriteAheadLog() throws Exception
+    {
+        assumeTrue(Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB);
+
+        SQLiteDatabase db = movieProvider.getMovieDbHelper().getReadableDatabase();
+        String journalMode = DatabaseUtils.stringForQuery(db, "PRAGMA journal_mode", null);
+        assertEquals("wal", journalMode.toLowerCase(Locale.US));
+    }
+
+    /**
+     * Loads the favorites list and the master screen's cached first page while pages of another
+     * list are being cached, as PagedMovieSource does in the background, with and without the
+     * write-ahead log.
+     */
+    @Test
+    public void readsWhileCaching_withAndWithoutWriteAheadLog() throws Exception
+    {
+        // Write-ahead logging can only be turned off again from Jelly Bean on.
+        assumeTrue(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN);
+        SQLiteDatabase db = movieProvider.getMovieDbHelper().getWritableDatabase();
+
+        long[] walNanos = measureReadsWhileCaching();
+        db.disableWriteAheadLogging();
+        long[] noWalNanos = measureReadsWhileCaching();
+
+        log("Loaded %d favorite movies while caching in %.2f ms with WAL, %.2f ms without",
+            FAVORITE_COUNT,
+            walNanos[0] / 1e6,
+            noWalNanos[0] / 1e6);
+        log("Loaded a cached page while caching in %.2f ms with WAL, %.2f ms without",
+            walNanos[1] / 1e6,
+            noWalNanos[1] / 1e6);
+    }
+
+    /**
+     * Loads the cached videos and reviews of movies, as the detail screen does when TMDb is not
+     * reachable, with and without the indexes on the movie and position of each row.
+     *
+     * Both find the rows of a movie through the index of their UNIQUE constraint, which leads with
+     * the movie ID. What differs is the order: without the position indexes, the rows of each
+     * movie are sorted by position in a temporary B-tree on every read.
+     */
+    @Test
+    public void queryCachedExtras_withAndWithoutPositionIndexes() throws Exception
+    {
+        List<String> indexedExtras = new ArrayList<>();
+        long indexedNanos = measure(() -> queryCachedExtras(indexedExtras));
+
+        SQLiteDatabase db = movieProvider.getMovieDbHelper().getWritableDatabase();
+        db.execSQL("DROP INDEX cached_video_position_index");
+        db.execSQL("DROP INDEX cached_review_position_index");
+        List<String> unindexedExtras = new ArrayList<>();
+        long unindexedNanos = measure(() -> queryCachedExtras(unindexedExtras));
+
+        assertEquals(LOOKUP_COUNT * (VIDEOS_PER_MOVIE + REVIEWS_PER_MOVIE),
+                     indexedExtras.size());
+        assertEquals(indexedExtras, unindexedExtras);
+        log("Loaded the cached extras of %d movies in %.2f ms with the position indexes, " +
+            "%.2f ms sorting them instead",
+            LOOKUP_COUNT,
+            indexedNanos / 1e6,
+            unindexedNanos / 1e6);
+    }
+
+    /**
+     * Replaces cached pages of movies, as PagedMovieSource does for every page it loads, with and
+     * without the index on the TMDb ID of cached movies, which the search index triggers look
+     * movies up by.
+     */
+    @Test
+    public void replaceMoviePage_withAndWithoutIndex() throws Exception
+    {
+        long indexedNanos = measure(() -> replaceMoviePages(1));
+
+        SQLiteDatabase db = movieProvider.getMovieDbHelper().getWritableDatabase();
+        db.execSQL("DROP INDEX cached_movie_movie_id_index");
+        long unindexedNanos = measure(() -> replaceMoviePages(2));
+
+        assertEquals(CACHED_PAGE_COUNT * MOVIES_PER_PAGE, countSearchEntriesOfCachedMovies());
+        log("Cached %d pages in %.2f ms with the movie ID index, %.2f ms without",
+            REPLACED_PAGE_COUNT,
+            indexedNanos / 1e6,
+            unindexedNanos / 1e6);
+    }
+
+    /**
+     * Returns the median time of loading the favorites list and of loading the cached first page,
+     * while another thread keeps caching pages of another list.
+     */
+    private long[] measureReadsWhileCaching() throws Exception
+    {
+        AtomicBoolean isWriting = new AtomicBoolean(true);
+        AtomicReference<Exception> writeError = new AtomicReference<>();
+        Thread writer = new Thread(
+                () ->
+                {
+                    int page = 2;
+                    while (isWriting.get())
+                    {
+                        try
+                        {
+                            CatalogCache.replaceMoviePage(
+                                    contentResolver,
+                                    TmdbGateway.MovieSortingCriteria.TOP_RATED,
+                                    page,
+                                    buildPage(page, 0));
+                        }
+                        catch (Exception e)
+                        {
+                            writeError.set(e);
+                            return;
+                        }
+                        page = (page < CACHED_PAGE_COUNT) ? page + 1 : 2;
+                    }
+                });
+        writer.start();
+        try
+        {
+            long favoritesNanos = measure(
+                    () -> assertEquals(FAVORITE_COUNT, loadFavoriteMovies().size()));
+            long cachedPageNanos = measure(
+                    () -> assertEquals(MOVIES_PER_PAGE,
+                                       CatalogCache.queryMoviePage(
+                                               contentResolver,
+                                               TmdbGateway.MovieSortingCriteria.POPULAR,
+                                               1).size()));
+            return new long[] {favoritesNanos, cachedPageNanos};
+        }
+        finally
+        {
+            isWriting.set(false);
+            writer.join();
+            assertNull(writeError.get());
+        }
+    }
+
+    /**
+     * Loads the favorites list the way FavoritesRepository does.
+     */
+    private List<Movie> loadFavoriteMovies()
+    {
+        Cursor cursor = contentResolver.query(MovieContract.MovieEntry.CONTENT_URI,
+                                              MOVIE_PROJECTION,
+                                              null,
+                                              null,
+                                              null);
+        assertNotNull(cursor);
+        List<Movie> movies = new ArrayList<>(cursor.getCount());
+        while (cursor.moveToNext())
+        {
+            movies.add(new Movie.Builder()
+                               .withId(cursor.getInt(0))
+                               .withOriginalTitle(cursor.getString(1))
+                               .withPosterPath(cursor.getString(2))
+                               .withPlotSynopsis(cursor.getString(3))
+                               .withRating(cursor.getDouble(4))
+                               .withReleaseDate(cursor.getString(5))
+                               .build());
+        }
+        cursor.close();
+        return movies;
+    }
+
+    /**
+     * Loads the cached videos and reviews of the first movies with cached extras, and adds the ID
+     * of every video and review to the given list.
+     */
+    private void queryCachedExtras(List<String> extraIds)
+    {
+        extraIds.clear();
+        for (int i = 0; i < LOOKUP_COUNT; i++)
+        {
+            int tmdbId = CACHED_MOVIE_ID_OFFSET + i * (EXTRAS_MOVIE_COUNT / LOOKUP_COUNT);
+            for (Video video : CatalogCache.queryVideos(contentResolver, tmdbId))
+            {
+                extraIds.add(video.getId());
+            }
+            for (Review review : CatalogCache.queryReviews(contentResolver, tmdbId))
+            {
+                extraIds.add(review.getId());
+            }
+        }
+    }
+
+    /**
+     * Replaces cached pages of popular movies, after the first, with movies of the given version.
+     */
+    private void replaceMoviePages(int version)
+    {
+        for (int page = 2; page < 2 + REPLACED_PAGE_COUNT; page++)
+        {
+            try
+            {
+                CatalogCache.replaceMoviePage(contentResolver,
+                                              TmdbGateway.MovieSortingCriteria.POPULAR,
+                                              page,
+                                              buildPage(page, version));
+            }
+            catch (Exception e)
+            {
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    private int countSearchEntriesOfCachedMovies()
+    {
+        SQLiteDatabase db = movieProvider.getMovieDbHelper().getReadableDatabase();
+        return (int) DatabaseUtils.longForQuery(
+                db,
+                "SELECT COUNT(*) FROM " + MovieContract.SearchEntry.TABLE_NAME +
+                " WHERE docid >= " + CACHED_MOVIE_ID_OFFSET,
+                null);
+    }
+
+    private void insertFavoriteMovies()
+    {
+        ContentValues[] values = new ContentValues[FAVORITE_COUNT];
+        for (int i = 0; i < FAVORITE_COUNT; i++)
+        {
+            values[i] = buildMovie(i, 0).toContentValues();
+        }
+        contentResolver.bulkInsert(MovieContract.MovieEntry.CONTENT_URI, values);
+    }
+
+    private static List<Movie> buildPage(int page, int version)
+    {
+        List<Movie> movies = new ArrayList<>(MOVIES_PER_PAGE);
+        for (int position = 0; position < MOVIES_PER_PAGE; position++)
+        {
+            int tmdbId = CACHED_MOVIE_ID_OFFSET + (page - 1) * MOVIES_PER_PAGE + position;
+            movies.add(buildMovie(tmdbId, version));
+        }
+        return movies;
+    }
+
+    private static Movie buildMovie(int tmdbId, int version)
+    {
+        return new Movie.Builder()
+                .withId(tmdbId)
+                .withOriginalTitle("Movie " + tmdbId + " v" + version)
+                .withPosterPath("/poster" + tmdbId + ".jpg")
+                .withPlotSynopsis("Plot synopsis of movie " + tmdbId)
+                .withRating((tmdbId * 7919 % 100) / 10.0)
+                .withReleaseDate(String.format(Locale.US, "%04d-01-01", 1900 + tmdbId % 120))
+                .build();
+    }
+
+    private static List<Video> buildVideos(int tmdbId)
+    {
+        List<Video> videos = new ArrayList<>(VIDEOS_PER_MOVIE);
+        for (int i = 0; i < VIDEOS_PER_MOVIE; i++)
+        {
+            videos.add(new Video.Builder()
+                               .withId(tmdbId + "-video-" + i)
+                               .withName("Trailer " + i)
+                               .withKey("key" + tmdbId + "x" + i)
+                               .withType("Trailer")
+                               .build());
+        }
+        return videos;
+    }
+
+    private static List<Review> buildReviews(int tmdbId)
+    {
+        List<Review> reviews = new ArrayList<>(REVIEWS_PER_MOVIE);
+        for (int i = 0; i < REVIEWS_PER_MOVIE; i++)
+        {
+            reviews.add(new Review.Builder()
+                                .withId(tmdbId + "-review-" + i)
+                                .withAuthor("Author " + i)
+                                .withContent("Review " + i + " of movie " + tmdbId)
+                                .build());
+        }
+        return reviews;
+    }
+
+    /**
+     * Runs the given action a few times to warm up, then returns the median duration of several
+     * more runs in nanoseconds.
+     */
+    private static long measure(Runnable action)
+    {
+        for (int i = 0; i < WARM_UP_RUNS; i++)
+        {
+            action.run();
+        }
+
+        long[] durations = new long[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++)
+        {
+            long startNanos = System.nanoTime();
+            action.run();
+            durations[i] = System.nanoTime() - startNanos;
+        }
+        Arrays.sort(durations);
+        return durations[MEASURED_RUNS / 2];
+    }
+
+    private static void log(String format, Object... args)
+    {
+        Log.i(LOG_TAG, String.format(Locale.US, format, args));
+    }
+}
@@ -0,0 +1,71 @@
+package com.huyvuong.udacity.popularmovies;
+
+import android.app.ActivityManager;
+import android.app.Application;
+import android.content.Context;
+import android.content.res.Resources;
+
+import com.huyvuong.udacity.popularmovies.gateway.OkHttp3Downloader;
+import com.huyvuong.udacity.popularmovies.gateway.TmdbGateway;
+import com.squareup.picasso.LruCache;
+import com.squareup.picasso.Picasso;
+
+import java.io.File;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+
+/**
+ * Application class that sets up the process-wide Picasso instance returned by
+ * {@link Picasso#with(Context)}.
+ */
+public class PopularMoviesApplication
+        extends Application
+{
+    private static final String IMAGE_CACHE_DIRECTORY = "picasso-image-cache";
+    private static final int BYTES_PER_MEGABYTE = 1024 * 1024;
+
+    @Override
+    public void onCreate()
+    {
+        super.onCreate();
+        Picasso.setSingletonInstance(buildPicasso());
+    }
+
+    /**
+     * Builds a Picasso instance that downloads images through a client derived from the
+     * {@link TmdbGateway}'s shared client, so that images reuse its connection pool and
+     * dispatcher. Images get their own disk cache, so that scrolling through posters does not
+     * evict cached TMDb responses.
+     *
+     * The memory cache takes {@code R.integer.picasso_memory_cache_percent} of the memory class of
+     * the device, i.e. of the heap that the app is expected to stay within.
+     *
+     * @return
+     *     Picasso instance to use throughout the app
+     */
+    private Picasso buildPicasso()
+    {
+        Resources resources = getResources();
+
+        Cache imageCache = new Cache(
+                new File(getCacheDir(), IMAGE_CACHE_DIRECTORY),
+                (long) resources.getInteger(R.integer.picasso_disk_cache_size_mb) *
+                BYTES_PER_MEGABYTE);
+        OkHttpClient imageClient = TmdbGateway.getInstance(this)
+                                              .getSharedClient()
+                                              .newBuilder()
+                                              .cache(imageCache)
+                                              .build();
+
+        ActivityManager activityManager =
+                (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryCacheBytes = activityManager.getMemoryClass() * BYTES_PER_MEGABYTE / 100 *
+                               resources.getInteger(R.integer.picasso_memory_cache_percent);
+
+        return new Picasso.Builder(this)
+                .downloader(new OkHttp3Downloader(imageClient))
+                .memoryCache(new LruCache(memoryCacheBytes))
+                .build();
+    }
+}
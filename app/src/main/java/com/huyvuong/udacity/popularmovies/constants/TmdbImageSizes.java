@@ -9,14 +9,19 @@ package com.huyvuong.udacity.popularmovies.constants;
  * For example, for size {@code w185} and a poster path of
  * {@code "/nBNZadXqJSdt05SHLqgT0HuC5Gm.jpg"}, the link would look like:
  *     http://image.tmdb.org/t/p/w185//nBNZadXqJSdt05SHLqgT0HuC5Gm.jpg
+ *
+ * Posters come in the sizes up to {@link #W780}, while backdrops come in {@link #W300},
+ * {@link #W780} and {@link #W1280}. Both come in {@link #ORIGINAL}.
  */
 public class TmdbImageSizes
 {
     public static final String W92 = "w92";
     public static final String W154 = "w154";
     public static final String W185 = "w185";
+    public static final String W300 = "w300";
     public static final String W342 = "w342";
     public static final String W500 = "w500";
     public static final String W780 = "w780";
+    public static final String W1280 = "w1280";
     public static final String ORIGINAL = "original";
 }
@@ -0,0 +1,365 @@
+package com.huyvuong.udacity.popularmovies.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.RemoteException;
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+
+import com.huyvuong.udacity.popularmovies.model.business.Movie;
+import com.huyvuong.udacity.popularmovies.model.business.Review;
+import com.huyvuong.udacity.popularmovies.model.business.Video;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Utility class for reading and writing the offline catalog cache, which holds the lists of
+ * movies, videos and reviews last returned by TMDb so that they can be shown before TMDb answers
+ * or while the device is offline.
+ *
+ * All methods hit the {@link MovieProvider} and must be called off the main thread. Each
+ * replacement is applied as one batch, so that it runs in a single transaction and listeners are
+ * notified once.
+ */
+public class CatalogCache
+{
+    private static final String[] CACHED_MOVIE_PROJECTION = new String[]
+            {
+                    MovieContract.CachedMovieEntry.COLUMN_MOVIE_ID,
+                    MovieContract.CachedMovieEntry.COLUMN_ORIGINAL_TITLE,
+                    MovieContract.CachedMovieEntry.COLUMN_POSTER_PATH,
+                    MovieContract.CachedMovieEntry.COLUMN_PLOT_SYNOPSIS,
+                    MovieContract.CachedMovieEntry.COLUMN_RATING,
+                    MovieContract.CachedMovieEntry.COLUMN_RELEASE_DATE
+            };
+    private static final int INDEX_MOVIE_ID = 0;
+    private static final int INDEX_ORIGINAL_TITLE = 1;
+    private static final int INDEX_POSTER_PATH = 2;
+    private static final int INDEX_PLOT_SYNOPSIS = 3;
+    private static final int INDEX_RATING = 4;
+    private static final int INDEX_RELEASE_DATE = 5;
+
+    private static final String[] CACHED_VIDEO_PROJECTION = new String[]
+            {
+                    MovieContract.CachedVideoEntry.COLUMN_VIDEO_ID,
+                    MovieContract.CachedVideoEntry.COLUMN_NAME,
+                    MovieContract.CachedVideoEntry.COLUMN_KEY,
+                    MovieContract.CachedVideoEntry.COLUMN_TYPE
+            };
+    private static final int INDEX_VIDEO_ID = 0;
+    private static final int INDEX_VIDEO_NAME = 1;
+    private static final int INDEX_VIDEO_KEY = 2;
+    private static final int INDEX_VIDEO_TYPE = 3;
+
+    private static final String[] CACHED_REVIEW_PROJECTION = new String[]
+            {
+                    MovieContract.CachedReviewEntry.COLUMN_REVIEW_ID,
+                    MovieContract.CachedReviewEntry.COLUMN_AUTHOR,
+                    MovieContract.CachedReviewEntry.COLUMN_CONTENT
+            };
+    private static final int INDEX_REVIEW_ID = 0;
+    private static final int INDEX_REVIEW_AUTHOR = 1;
+    private static final int INDEX_REVIEW_CONTENT = 2;
+
+    private CatalogCache()
+    {
+        throw new UnsupportedOperationException("Do not instantiate utility classes.");
+    }
+
+    /**
+     * Returns the cached page of movies for the given sorting criteria, in the order that TMDb
+     * returned them.
+     *
+     * @param contentResolver
+     *     content resolver to query against
+     * @param sortingCriteria
+     *     sorting criteria that the movies were requested with
+     * @param pageNumber
+     *     page number of the movies to return
+     * @return
+     *     cached movies on the page, or an empty list if the page is not cached
+     */
+    @NonNull
+    @WorkerThread
+    public static List<Movie> queryMoviePage(ContentResolver contentResolver,
+                                             String sortingCriteria,
+                                             int pageNumber)
+    {
+        Cursor cursor = contentResolver.query(
+                MovieContract.CachedMovieEntry.buildCachedMoviesUriWithCriteria(sortingCriteria),
+                CACHED_MOVIE_PROJECTION,
+                MovieContract.CachedMovieEntry.COLUMN_PAGE + " = ?",
+                new String[] {String.valueOf(pageNumber)},
+                null);
+        return readMovies(cursor);
+    }
+
+    /**
+     * Returns the movies in the local catalog, that is the favorite movies and the cached lists of
+     * movies, matching the given query, best matches first. Each word of the query matches any
+     * word starting with it in the title, plot synopsis or cached reviews of a movie.
+     *
+     * @param contentResolver
+     *     content resolver to query against
+     * @param query
+     *     words to search for, as typed by the user
+     * @return
+     *     matching movies, or an empty list if none match
+     */
+    @NonNull
+    @WorkerThread
+    public static List<Movie> searchMovies(ContentResolver contentResolver, String query)
+    {
+        if (query.trim().isEmpty())
+        {
+            return new ArrayList<>();
+        }
+
+        Cursor cursor = contentResolver.query(
+                MovieContract.SearchEntry.buildSearchUriWithQuery(query),
+                CACHED_MOVIE_PROJECTION,
+                null,
+                null,
+                null);
+        return readMovies(cursor);
+    }
+
+    /**
+     * Replaces the cached page of movies for the given sorting criteria with the given movies.
+     *
+     * Replacing the first page also drops every later page cached for the criteria, since the
+     * rankings that those pages were based on are no longer current.
+     *
+     * @param contentResolver
+     *     content resolver to write through
+     * @param sortingCriteria
+     *     sorting criteria that the movies were requested with
+     * @param pageNumber
+     *     page number of the given movies
+     * @param movies
+     *     movies on the page, in the order that TMDb returned them
+     * @throws RemoteException
+     *     if the {@link MovieProvider} could not be reached
+     * @throws OperationApplicationException
+     *     if the page could not be written
+     */
+    @WorkerThread
+    public static void replaceMoviePage(ContentResolver contentResolver,
+                                        String sortingCriteria,
+                                        int pageNumber,
+                                        List<Movie> movies)
+            throws RemoteException, OperationApplicationException
+    {
+        Uri cachedMoviesUri =
+                MovieContract.CachedMovieEntry.buildCachedMoviesUriWithCriteria(sortingCriteria);
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(movies.size() + 1);
+        operations.add(ContentProviderOperation
+                               .newDelete(cachedMoviesUri)
+                               .withSelection(MovieContract.CachedMovieEntry.COLUMN_PAGE +
+                                              ((pageNumber == 1) ? " >= ?" : " = ?"),
+                                              new String[] {String.valueOf(pageNumber)})
+                               .build());
+
+        long cachedAt = System.currentTimeMillis();
+        for (int position = 0; position < movies.size(); position++)
+        {
+            ContentValues values = movies.get(position).toContentValues();
+            values.put(MovieContract.CachedMovieEntry.COLUMN_PAGE, pageNumber);
+            values.put(MovieContract.CachedMovieEntry.COLUMN_POSITION, position);
+            values.put(MovieContract.CachedMovieEntry.COLUMN_CACHED_AT, cachedAt);
+            operations.add(ContentProviderOperation.newInsert(cachedMoviesUri)
+                                                   .withValues(values)
+                                                   .build());
+        }
+        contentResolver.applyBatch(MovieContract.CONTENT_AUTHORITY, operations);
+    }
+
+    /**
+     * Returns the cached videos of the movie with the given movie ID from TMDb.
+     *
+     * @param contentResolver
+     *     content resolver to query against
+     * @param tmdbId
+     *     movie ID corresponding to the ID assigned by TMDb
+     * @return
+     *     cached videos of the movie, or an empty list if none are cached
+     */
+    @NonNull
+    @WorkerThread
+    public static List<Video> queryVideos(ContentResolver contentResolver, int tmdbId)
+    {
+        Cursor cursor = contentResolver.query(
+                MovieContract.CachedVideoEntry.buildCachedVideosUriWithTmdbId(tmdbId),
+                CACHED_VIDEO_PROJECTION,
+                null,
+                null,
+                null);
+
+        // Convert the returned database rows to Video objects.
+        List<Video> videos = new ArrayList<>();
+        if (cursor != null)
+        {
+            while (cursor.moveToNext())
+            {
+                Video video = new Video.Builder()
+                        .withId(cursor.getString(INDEX_VIDEO_ID))
+                        .withName(cursor.getString(INDEX_VIDEO_NAME))
+                        .withKey(cursor.getString(INDEX_VIDEO_KEY))
+                        .withType(cursor.getString(INDEX_VIDEO_TYPE))
+                        .build();
+                videos.add(video);
+            }
+            cursor.close();
+        }
+        return videos;
+    }
+
+    /**
+     * Replaces the cached videos of the movie with the given movie ID from TMDb.
+     *
+     * @param contentResolver
+     *     content resolver to write through
+     * @param tmdbId
+     *     movie ID corresponding to the ID assigned by TMDb
+     * @param videos
+     *     videos of the movie, in the order that TMDb returned them
+     * @throws RemoteException
+     *     if the {@link MovieProvider} could not be reached
+     * @throws OperationApplicationException
+     *     if the videos could not be written
+     */
+    @WorkerThread
+    public static void replaceVideos(ContentResolver contentResolver,
+                                     int tmdbId,
+                                     List<Video> videos)
+            throws RemoteException, OperationApplicationException
+    {
+        Uri cachedVideosUri = MovieContract.CachedVideoEntry.buildCachedVideosUriWithTmdbId(tmdbId);
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(videos.size() + 1);
+        operations.add(ContentProviderOperation.newDelete(cachedVideosUri).build());
+        for (int position = 0; position < videos.size(); position++)
+        {
+            Video video = videos.get(position);
+            ContentValues values = new ContentValues();
+            values.put(MovieContract.CachedVideoEntry.COLUMN_POSITION, position);
+            values.put(MovieContract.CachedVideoEntry.COLUMN_VIDEO_ID, video.getId());
+            values.put(MovieContract.CachedVideoEntry.COLUMN_NAME, video.getName());
+            values.put(MovieContract.CachedVideoEntry.COLUMN_KEY, video.getKey());
+            values.put(MovieContract.CachedVideoEntry.COLUMN_TYPE, video.getType());
+            operations.add(ContentProviderOperation.newInsert(cachedVideosUri)
+                                                   .withValues(values)
+                                                   .build());
+        }
+        contentResolver.applyBatch(MovieContract.CONTENT_AUTHORITY, operations);
+    }
+
+    /**
+     * Returns the cached reviews of the movie with the given movie ID from TMDb.
+     *
+     * @param contentResolver
+     *     content resolver to query against
+     * @param tmdbId
+     *     movie ID corresponding to the ID assigned by TMDb
+     * @return
+     *     cached reviews of the movie, or an empty list if none are cached
+     */
+    @NonNull
+    @WorkerThread
+    public static List<Review> queryReviews(ContentResolver contentResolver, int tmdbId)
+    {
+        Cursor cursor = contentResolver.query(
+                MovieContract.CachedReviewEntry.buildCachedReviewsUriWithTmdbId(tmdbId),
+                CACHED_REVIEW_PROJECTION,
+                null,
+                null,
+                null);
+
+        // Convert the returned database rows to Review objects.
+        List<Review> reviews = new ArrayList<>();
+        if (cursor != null)
+        {
+            while (cursor.moveToNext())
+            {
+                Review review = new Review.Builder()
+                        .withId(cursor.getString(INDEX_REVIEW_ID))
+                        .withAuthor(cursor.getString(INDEX_REVIEW_AUTHOR))
+                        .withContent(cursor.getString(INDEX_REVIEW_CONTENT))
+                        .build();
+                reviews.add(review);
+            }
+            cursor.close();
+        }
+        return reviews;
+    }
+
+    /**
+     * Replaces the cached reviews of the movie with the given movie ID from TMDb.
+     *
+     * @param contentResolver
+     *     content resolver to write through
+     * @param tmdbId
+     *     movie ID corresponding to the ID assigned by TMDb
+     * @param reviews
+     *     reviews of the movie, in the order that TMDb returned them
+     * @throws RemoteException
+     *     if the {@link MovieProvider} could not be reached
+     * @throws OperationApplicationException
+     *     if the reviews could not be written
+     */
+    @WorkerThread
+    public static void replaceReviews(ContentResolver contentResolver,
+                                      int tmdbId,
+                                      List<Review> reviews)
+            throws RemoteException, OperationApplicationException
+    {
+        Uri cachedReviewsUri =
+                MovieContract.CachedReviewEntry.buildCachedReviewsUriWithTmdbId(tmdbId);
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(reviews.size() + 1);
+        operations.add(ContentProviderOperation.newDelete(cachedReviewsUri).build());
+        for (int position = 0; position < reviews.size(); position++)
+        {
+            Review review = reviews.get(position);
+            ContentValues values = new ContentValues();
+            values.put(MovieContract.CachedReviewEntry.COLUMN_POSITION, position);
+            values.put(MovieContract.CachedReviewEntry.COLUMN_REVIEW_ID, review.getId());
+            values.put(MovieContract.CachedReviewEntry.COLUMN_AUTHOR, review.getAuthor());
+            values.put(MovieContract.CachedReviewEntry.COLUMN_CONTENT, review.getContent());
+            operations.add(ContentProviderOperation.newInsert(cachedReviewsUri)
+                                                   .withValues(values)
+                                                   .build());
+        }
+        contentResolver.applyBatch(MovieContract.CONTENT_AUTHORITY, operations);
+    }
+
+    /**
+     * Converts the rows of the given cursor, queried with {@link #CACHED_MOVIE_PROJECTION}, to
+     * Movie objects and closes it.
+     */
+    @NonNull
+    private static List<Movie> readMovies(Cursor cursor)
+    {
+        List<Movie> movies = new ArrayList<>();
+        if (cursor != null)
+        {
+            while (cursor.moveToNext())
+            {
+                Movie movie = new Movie.Builder()
+                        .withId(cursor.getInt(INDEX_MOVIE_ID))
+                        .withOriginalTitle(cursor.getString(INDEX_ORIGINAL_TITLE))
+                        .withPosterPath(cursor.getString(INDEX_POSTER_PATH))
+                        .withPlotSynopsis(cursor.getString(INDEX_PLOT_SYNOPSIS))
+                        .withRating(cursor.getDouble(INDEX_RATING))
+                        .withReleaseDate(cursor.getString(INDEX_RELEASE_DATE))
+                        .build();
+                movies.add(movie);
+            }
+            cursor.close();
+        }
+        return movies;
+    }
+}
@@ -0,0 +1,123 @@
+package com.huyvuong.udacity.popularmovies.data;
+
+import android.util.SparseBooleanArray;
+
+/**
+ * In-memory set of the TMDb IDs of the user's favorite movies, so that favorite checks do not need
+ * to query the {@link MovieProvider}.
+ *
+ * The set starts out unloaded. {@link FavoritesRepository} loads it from the favorites table on
+ * first use, and {@link MovieProvider} keeps it in step with every committed insert and delete.
+ * Changes made while a load is in flight invalidate that load, which is then retried, so the set
+ * never misses a change.
+ */
+final class FavoriteIds
+{
+    private static final FavoriteIds instance = new FavoriteIds();
+
+    // Keys are the favorite TMDb IDs; the values are unused.
+    private final SparseBooleanArray ids = new SparseBooleanArray();
+    private boolean isLoaded;
+    private int changeCount;
+
+    private FavoriteIds()
+    {
+    }
+
+    /**
+     * Returns the process-wide set of favorite IDs.
+     *
+     * @return
+     *     shared set of favorite IDs
+     */
+    static FavoriteIds getInstance()
+    {
+        return instance;
+    }
+
+    /**
+     * Returns whether the set has been loaded from the favorites table.
+     *
+     * @return
+     *     true if the set has been loaded; false otherwise
+     */
+    synchronized boolean isLoaded()
+    {
+        return isLoaded;
+    }
+
+    /**
+     * Returns whether the movie with the given TMDb ID is a favorite. Only meaningful once the set
+     * has been loaded.
+     *
+     * @param tmdbId
+     *     TMDb ID of the movie to check
+     * @return
+     *     true if the movie is a favorite; false otherwise
+     */
+    synchronized boolean contains(int tmdbId)
+    {
+        return ids.get(tmdbId);
+    }
+
+    /**
+     * Returns the number of changes made to the favorites so far. Read it before querying the
+     * favorites table and pass it to {@link #load(int[], int)}.
+     *
+     * @return
+     *     number of changes made to the favorites
+     */
+    synchronized int getChangeCount()
+    {
+        return changeCount;
+    }
+
+    /**
+     * Loads the set with the given IDs, unless the favorites changed since the given change count
+     * was read, in which case the IDs may be stale and must be queried again.
+     *
+     * @param favoriteIds
+     *     TMDb IDs of every favorite movie
+     * @param expectedChangeCount
+     *     change count read before querying the IDs
+     * @return
+     *     true if the set was loaded; false if the IDs must be queried again
+     */
+    synchronized boolean load(int[] favoriteIds, int expectedChangeCount)
+    {
+        if (changeCount != expectedChangeCount)
+        {
+            return false;
+        }
+
+        ids.clear();
+        for (int favoriteId : favoriteIds)
+        {
+            ids.put(favoriteId, true);
+        }
+        isLoaded = true;
+        return true;
+    }
+
+    /**
+     * Records that the movie with the given TMDb ID was marked or unmarked as a favorite. Call this
+     * only once the change is committed.
+     *
+     * @param tmdbId
+     *     TMDb ID of the movie that changed
+     * @param isFavorite
+     *     true if the movie was marked as a favorite; false if it was unmarked
+     */
+    synchronized void update(int tmdbId, boolean isFavorite)
+    {
+        changeCount++;
+        if (isFavorite)
+        {
+            ids.put(tmdbId, true);
+        }
+        else
+        {
+            ids.delete(tmdbId);
+        }
+    }
+}
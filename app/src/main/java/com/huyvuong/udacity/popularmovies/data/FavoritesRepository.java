@@ -0,0 +1,331 @@
+package com.huyvuong.udacity.popularmovies.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+
+import com.huyvuong.udacity.popularmovies.model.business.Movie;
+import com.huyvuong.udacity.popularmovies.scheduler.PriorityScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.observers.SerializedSubscriber;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * Entry point for reading and writing the movies that the user marked as favorites. Reads against
+ * the {@link MovieProvider} run on the database lane of the {@link PriorityScheduler} and writes on
+ * its sync lane, and their results are delivered on the main thread.
+ *
+ * The observe methods listen to the provider's notifications for the favorites table and query
+ * again whenever it changes, so subscribers receive the up-to-date favorites until they
+ * unsubscribe. Notifications arriving while a query is running are coalesced into one more query.
+ *
+ * Favorite checks are answered from the in-memory {@link FavoriteIds}, which is loaded from the
+ * favorites table on first use and then kept up to date by the provider.
+ *
+ * A single instance is shared across the whole process. Obtain it with
+ * {@link #getInstance(Context)}.
+ */
+public class FavoritesRepository
+{
+    private static final String[] MOVIE_PROJECTION = new String[]
+            {
+                    MovieContract.MovieEntry.COLUMN_MOVIE_ID,
+                    MovieContract.MovieEntry.COLUMN_ORIGINAL_TITLE,
+                    MovieContract.MovieEntry.COLUMN_POSTER_PATH,
+                    MovieContract.MovieEntry.COLUMN_PLOT_SYNOPSIS,
+                    MovieContract.MovieEntry.COLUMN_RATING,
+                    MovieContract.MovieEntry.COLUMN_RELEASE_DATE
+            };
+    private static final int INDEX_MOVIE_ID = 0;
+    private static final int INDEX_ORIGINAL_TITLE = 1;
+    private static final int INDEX_POSTER_PATH = 2;
+    private static final int INDEX_PLOT_SYNOPSIS = 3;
+    private static final int INDEX_RATING = 4;
+    private static final int INDEX_RELEASE_DATE = 5;
+
+    // Emitted by the change observable, whose items only signal that the favorites changed.
+    private static final Object CHANGE = new Object();
+
+    private static FavoritesRepository instance;
+
+    private final ContentResolver contentResolver;
+    private final PriorityScheduler scheduler;
+
+    /**
+     * Constructs a new FavoritesRepository reading and writing through the given context.
+     *
+     * @param context
+     *     application context used to obtain the content resolver and the scheduler
+     */
+    private FavoritesRepository(Context context)
+    {
+        contentResolver = context.getContentResolver();
+        scheduler = PriorityScheduler.getInstance(context);
+    }
+
+    /**
+     * Returns the process-wide FavoritesRepository instance, creating it on first use.
+     *
+     * @param context
+     *     any context; only its application context is retained
+     * @return
+     *     shared FavoritesRepository instance
+     */
+    public static synchronized FavoritesRepository getInstance(Context context)
+    {
+        if (instance == null)
+        {
+            instance = new FavoritesRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Returns an observable emitting the user's favorite movies upon subscription, and again every
+     * time the favorites change. It never completes; unsubscribe to stop listening for changes.
+     *
+     * @return
+     *     observable emitting the current list of favorite movies
+     */
+    public Observable<List<Movie>> observeFavoriteMovies()
+    {
+        return observeChanges()
+                .map(change -> queryFavoriteMovies())
+                .observeOn(AndroidSchedulers.mainThread());
+    }
+
+    /**
+     * Returns an observable emitting whether the given movie is marked as a favorite upon
+     * subscription, and again every time that changes. It never completes; unsubscribe to stop
+     * listening for changes.
+     *
+     * @param tmdbId
+     *     TMDb ID of the movie to check
+     * @return
+     *     observable emitting true while the movie is a favorite; false otherwise
+     */
+    public Observable<Boolean> observeIsFavorite(int tmdbId)
+    {
+        return observeChanges()
+                .map(change -> checkIsFavorite(tmdbId))
+                .distinctUntilChanged()
+                .observeOn(AndroidSchedulers.mainThread());
+    }
+
+    /**
+     * Returns whether the given movie is marked as a favorite, if that is known without querying
+     * the favorites table. Safe to call on the main thread.
+     *
+     * @param tmdbId
+     *     TMDb ID of the movie to check
+     * @return
+     *     true if the movie is known to be a favorite; false if it is not or if the favorite IDs
+     *     have not been loaded yet
+     */
+    public boolean isKnownFavorite(int tmdbId)
+    {
+        FavoriteIds favoriteIds = FavoriteIds.getInstance();
+        return favoriteIds.isLoaded() && favoriteIds.contains(tmdbId);
+    }
+
+    /**
+     * Returns an observable emitting whether the given movie is currently marked as a favorite.
+     *
+     * @param tmdbId
+     *     TMDb ID of the movie to check
+     * @return
+     *     observable emitting true if the movie is a favorite; false otherwise
+     */
+    public Observable<Boolean> isFavorite(int tmdbId)
+    {
+        Observable<Boolean> favoriteObservable = Observable.create(
+                subscriber ->
+                {
+                    subscriber.onNext(checkIsFavorite(tmdbId));
+                    subscriber.onCompleted();
+                });
+        return favoriteObservable
+                .subscribeOn(scheduler.database())
+                .observeOn(AndroidSchedulers.mainThread());
+    }
+
+    /**
+     * Marks the given movie as a favorite. Nothing happens until the returned observable is
+     * subscribed to.
+     *
+     * @param movie
+     *     movie to mark as a favorite
+     * @return
+     *     observable emitting the URI of the inserted movie
+     */
+    public Observable<Uri> markFavorite(Movie movie)
+    {
+        Observable<Uri> insertObservable = Observable.create(
+                subscriber ->
+                {
+                    subscriber.onNext(
+                            contentResolver.insert(MovieContract.MovieEntry.CONTENT_URI,
+                                                   movie.toContentValues()));
+                    subscriber.onCompleted();
+                });
+        return insertObservable
+                .subscribeOn(scheduler.sync())
+                .observeOn(AndroidSchedulers.mainThread());
+    }
+
+    /**
+     * Unmarks the given movie as a favorite. Nothing happens until the returned observable is
+     * subscribed to.
+     *
+     * @param tmdbId
+     *     TMDb ID of the movie to unmark as a favorite
+     * @return
+     *     observable emitting the number of rows deleted
+     */
+    public Observable<Integer> unmarkFavorite(int tmdbId)
+    {
+        Uri movieUri = MovieContract.MovieEntry.buildMovieUriWithTmdbId(tmdbId);
+        Observable<Integer> deleteObservable = Observable.create(
+                subscriber ->
+                {
+                    subscriber.onNext(
+                            contentResolver.delete(
+                                    movieUri,
+                                    MovieContract.MovieEntry.COLUMN_MOVIE_ID + " = ?",
+                                    new String[] {String.valueOf(tmdbId)}));
+                    subscriber.onCompleted();
+                });
+        return deleteObservable
+                .subscribeOn(scheduler.sync())
+                .observeOn(AndroidSchedulers.mainThread());
+    }
+
+    /**
+     * Returns an observable emitting once upon subscription and once for every change to the
+     * favorites table, on the database lane. The ContentObserver is registered while subscribed.
+     *
+     * Changes are dropped while the previous one is still being handled, except for the latest,
+     * so that a burst of notifications leads to at most one more query.
+     */
+    private Observable<Object> observeChanges()
+    {
+        Observable<Object> changeObservable = Observable.create(
+                unserializedSubscriber ->
+                {
+                    // The observer is notified on a binder thread, which may race the first
+                    // emission below, so serialize the calls to onNext.
+                    Subscriber<Object> subscriber =
+                            new SerializedSubscriber<>(unserializedSubscriber);
+                    ContentObserver contentObserver = new ContentObserver(null)
+                    {
+                        @Override
+                        public void onChange(boolean selfChange)
+                        {
+                            subscriber.onNext(CHANGE);
+                        }
+                    };
+                    contentResolver.registerContentObserver(
+                            MovieContract.MovieEntry.CONTENT_URI,
+                            true,
+                            contentObserver);
+                    subscriber.add(Subscriptions.create(
+                            () -> contentResolver.unregisterContentObserver(contentObserver)));
+
+                    // Query once right away for the current state.
+                    subscriber.onNext(CHANGE);
+                });
+        return changeObservable
+                .onBackpressureLatest()
+                .observeOn(scheduler.database(), 1);
+    }
+
+    /**
+     * Queries for and returns the list of the user's favorite movies.
+     */
+    @NonNull
+    @WorkerThread
+    private List<Movie> queryFavoriteMovies()
+    {
+        // Query for all of the movies that the user has marked as favorites.
+        Cursor cursor = contentResolver.query(
+                MovieContract.MovieEntry.CONTENT_URI,
+                MOVIE_PROJECTION,
+                null,
+                null,
+                null);
+
+        // Convert the returned database rows to Movie objects.
+        List<Movie> favoriteMovies = new ArrayList<>();
+        if (cursor != null)
+        {
+            while (cursor.moveToNext())
+            {
+                Movie movie = new Movie.Builder()
+                        .withId(cursor.getInt(INDEX_MOVIE_ID))
+                        .withOriginalTitle(cursor.getString(INDEX_ORIGINAL_TITLE))
+                        .withPosterPath(cursor.getString(INDEX_POSTER_PATH))
+                        .withPlotSynopsis(cursor.getString(INDEX_PLOT_SYNOPSIS))
+                        .withRating(cursor.getDouble(INDEX_RATING))
+                        .withReleaseDate(cursor.getString(INDEX_RELEASE_DATE))
+                        .build();
+                favoriteMovies.add(movie);
+            }
+            cursor.close();
+        }
+        return favoriteMovies;
+    }
+
+    /**
+     * Returns true if the movie with the given TMDb ID is marked as a favorite; false otherwise.
+     * Only queries the favorites table if the favorite IDs have not been loaded yet.
+     */
+    @WorkerThread
+    private boolean checkIsFavorite(int tmdbId)
+    {
+        FavoriteIds favoriteIds = FavoriteIds.getInstance();
+        while (!favoriteIds.isLoaded())
+        {
+            // Query again if a favorite was marked or unmarked while querying.
+            int changeCount = favoriteIds.getChangeCount();
+            favoriteIds.load(queryFavoriteIds(), changeCount);
+        }
+        return favoriteIds.contains(tmdbId);
+    }
+
+    /**
+     * Queries for and returns the TMDb IDs of the user's favorite movies.
+     */
+    @NonNull
+    @WorkerThread
+    private int[] queryFavoriteIds()
+    {
+        Cursor cursor = contentResolver.query(
+                MovieContract.MovieEntry.CONTENT_URI,
+                new String[] {MovieContract.MovieEntry.COLUMN_MOVIE_ID},
+                null,
+                null,
+                null);
+        if (cursor == null)
+        {
+            return new int[0];
+        }
+
+        int[] favoriteIds = new int[cursor.getCount()];
+        for (int i = 0; cursor.moveToNext(); i++)
+        {
+            favoriteIds[i] = cursor.getInt(0);
+        }
+        cursor.close();
+        return favoriteIds;
+    }
+}
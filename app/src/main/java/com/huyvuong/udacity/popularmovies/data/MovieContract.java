@@ -23,6 +23,26 @@ public class MovieContract
      */
     public static final String PATH_MOVIES = "movies";
 
+    /**
+     * URI path for requesting changes against cached lists of movies.
+     */
+    public static final String PATH_CACHED_MOVIES = "cached_movies";
+
+    /**
+     * URI path for requesting changes against cached videos of movies.
+     */
+    public static final String PATH_CACHED_VIDEOS = "cached_videos";
+
+    /**
+     * URI path for requesting changes against cached reviews of movies.
+     */
+    public static final String PATH_CACHED_REVIEWS = "cached_reviews";
+
+    /**
+     * URI path for searching the movies in the local catalog.
+     */
+    public static final String PATH_SEARCH = "search";
+
     public static final class MovieEntry
             implements BaseColumns
     {
@@ -54,4 +74,164 @@ public class MovieContract
                               .build();
         }
     }
+
+    /**
+     * Movies from the lists of movies returned by TMDb, cached for showing while offline or while
+     * the lists are refreshed. Rows are keyed by sorting criteria, page and position within the
+     * page.
+     *
+     * The movie columns share their names with {@link MovieEntry}, so that
+     * {@code Movie#toContentValues()} can be used to build rows.
+     */
+    public static final class CachedMovieEntry
+            implements BaseColumns
+    {
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                                                              .appendPath(PATH_CACHED_MOVIES)
+                                                              .build();
+
+        public static final String TABLE_NAME = "cached_movie";
+
+        public static final String COLUMN_SORTING_CRITERIA = "sorting_criteria";
+        public static final String COLUMN_PAGE = "page";
+        public static final String COLUMN_POSITION = "position";
+        public static final String COLUMN_CACHED_AT = "cached_at";
+        public static final String COLUMN_MOVIE_ID = MovieEntry.COLUMN_MOVIE_ID;
+        public static final String COLUMN_ORIGINAL_TITLE = MovieEntry.COLUMN_ORIGINAL_TITLE;
+        public static final String COLUMN_POSTER_PATH = MovieEntry.COLUMN_POSTER_PATH;
+        public static final String COLUMN_PLOT_SYNOPSIS = MovieEntry.COLUMN_PLOT_SYNOPSIS;
+        public static final String COLUMN_RATING = MovieEntry.COLUMN_RATING;
+        public static final String COLUMN_RELEASE_DATE = MovieEntry.COLUMN_RELEASE_DATE;
+
+        /**
+         * Builds a URI referring to the cached list of movies for the given sorting criteria.
+         *
+         * @param sortingCriteria
+         *     sorting criteria that the list of movies was requested with
+         * @return
+         *     URI referring to the cached list of movies for the given sorting criteria
+         */
+        public static Uri buildCachedMoviesUriWithCriteria(String sortingCriteria)
+        {
+            return CONTENT_URI.buildUpon()
+                              .appendPath(sortingCriteria)
+                              .build();
+        }
+    }
+
+    /**
+     * Videos of movies returned by TMDb, cached for showing while offline or while the videos are
+     * refreshed.
+     */
+    public static final class CachedVideoEntry
+            implements BaseColumns
+    {
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                                                              .appendPath(PATH_CACHED_VIDEOS)
+                                                              .build();
+
+        public static final String TABLE_NAME = "cached_video";
+
+        public static final String COLUMN_MOVIE_ID = "movie_id";
+        public static final String COLUMN_POSITION = "position";
+        public static final String COLUMN_VIDEO_ID = "video_id";
+        public static final String COLUMN_NAME = "name";
+        public static final String COLUMN_KEY = "key";
+        public static final String COLUMN_TYPE = "type";
+
+        /**
+         * Builds a URI referring to the cached videos of the movie with the given movie ID from
+         * TMDb.
+         *
+         * @param tmdbId
+         *     movie ID corresponding to the ID assigned by TMDb
+         * @return
+         *     URI referring to the cached videos of the movie
+         */
+        public static Uri buildCachedVideosUriWithTmdbId(int tmdbId)
+        {
+            return CONTENT_URI.buildUpon()
+                              .appendPath(String.valueOf(tmdbId))
+                              .build();
+        }
+    }
+
+    /**
+     * Reviews of movies returned by TMDb, cached for showing while offline or while the reviews
+     * are refreshed.
+     */
+    public static final class CachedReviewEntry
+            implements BaseColumns
+    {
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                                                              .appendPath(PATH_CACHED_REVIEWS)
+                                                              .build();
+
+        public static final String TABLE_NAME = "cached_review";
+
+        public static final String COLUMN_MOVIE_ID = "movie_id";
+        public static final String COLUMN_POSITION = "position";
+        public static final String COLUMN_REVIEW_ID = "review_id";
+        public static final String COLUMN_AUTHOR = "author";
+        public static final String COLUMN_CONTENT = "content";
+
+        /**
+         * Builds a URI referring to the cached reviews of the movie with the given movie ID from
+         * TMDb.
+         *
+         * @param tmdbId
+         *     movie ID corresponding to the ID assigned by TMDb
+         * @return
+         *     URI referring to the cached reviews of the movie
+         */
+        public static Uri buildCachedReviewsUriWithTmdbId(int tmdbId)
+        {
+            return CONTENT_URI.buildUpon()
+                              .appendPath(String.valueOf(tmdbId))
+                              .build();
+        }
+    }
+
+    /**
+     * Full-text index over the movies in the local catalog, that is the favorite movies and the
+     * cached lists of movies, along with the content of their cached reviews. The row ID of each
+     * entry is the TMDb ID of its movie. The index is kept up to date by the database itself.
+     *
+     * Querying a search URI returns the matching movies with the movie columns of
+     * {@link MovieEntry} and a {@link #COLUMN_RANK}, best matches first. Each word of the query
+     * matches any word starting with it.
+     */
+    public static final class SearchEntry
+    {
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                                                              .appendPath(PATH_SEARCH)
+                                                              .build();
+
+        public static final String TABLE_NAME = "movie_search";
+
+        public static final String COLUMN_ORIGINAL_TITLE = MovieEntry.COLUMN_ORIGINAL_TITLE;
+        public static final String COLUMN_PLOT_SYNOPSIS = MovieEntry.COLUMN_PLOT_SYNOPSIS;
+        public static final String COLUMN_REVIEW_CONTENT = "review_content";
+
+        /**
+         * Column of search results holding how well the movie matched the query. Matches in the
+         * title outweigh matches in the plot synopsis, which outweigh matches in the reviews.
+         */
+        public static final String COLUMN_RANK = "rank";
+
+        /**
+         * Builds a URI referring to the movies in the local catalog matching the given query.
+         *
+         * @param query
+         *     words to search for, as typed by the user
+         * @return
+         *     URI referring to the movies matching the query
+         */
+        public static Uri buildSearchUriWithQuery(String query)
+        {
+            return CONTENT_URI.buildUpon()
+                              .appendPath(query)
+                              .build();
+        }
+    }
 }
@@ -3,16 +3,64 @@ package com.huyvuong.udacity.popularmovies.data;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
+import android.support.annotation.VisibleForTesting;
 
 public class MovieDbHelper
         extends SQLiteOpenHelper
 {
     public static final String DATABASE_NAME = "movie.db";
-    public static final int DATABASE_VERSION = 1;
+    public static final int DATABASE_VERSION = 4;
+
+    // Version that added the offline catalog cache tables.
+    private static final int VERSION_CATALOG_CACHE = 2;
+
+    // Version that added indexes for the lookups and sort orders used by the provider.
+    private static final int VERSION_INDEXES = 3;
+
+    // Version that added the full-text search index over the local catalog.
+    private static final int VERSION_SEARCH = 4;
 
     public MovieDbHelper(Context context)
     {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME);
+    }
+
+    /**
+     * Constructs a helper for the database with the given name, so that tests can work on a
+     * database of their own.
+     *
+     * @param context
+     *     context used to locate the database
+     * @param databaseName
+     *     name of the database file
+     */
+    @VisibleForTesting
+    MovieDbHelper(Context context, String databaseName)
+    {
+        super(context, databaseName, null, DATABASE_VERSION);
+
+        // Journal to a write-ahead log, so that reads do not wait on writes and commits only
+        // append to the log.
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN)
+        {
+            setWriteAheadLoggingEnabled(true);
+        }
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db)
+    {
+        super.onOpen(db);
+
+        // The helper can only enable write-ahead logging from Jelly Bean on, so enable it on the
+        // database itself on the versions before that which support it.
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB &&
+            Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN &&
+            !db.isReadOnly())
+        {
+            db.enableWriteAheadLogging();
+        }
     }
 
     @Override
@@ -31,8 +79,250 @@ public class MovieDbHelper
                 ");";
 
         db.execSQL(createTableQuery);
+        createCatalogCacheTables(db);
+        createIndexes(db);
+        createSearchIndex(db);
     }
 
     @Override
-    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {}
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion)
+    {
+        // Apply each schema change in order, so that users upgrading across several versions end
+        // up with the same schema as new installs. The favorites table is never dropped.
+        if (oldVersion < VERSION_CATALOG_CACHE)
+        {
+            createCatalogCacheTables(db);
+        }
+        if (oldVersion < VERSION_INDEXES)
+        {
+            createIndexes(db);
+        }
+        if (oldVersion < VERSION_SEARCH)
+        {
+            createSearchIndex(db);
+        }
+    }
+
+    /**
+     * Creates the tables caching lists of movies, videos and reviews returned by TMDb.
+     *
+     * @param db
+     *     database to create the tables in
+     */
+    private static void createCatalogCacheTables(SQLiteDatabase db)
+    {
+        String createCachedMovieTableQuery =
+                "CREATE TABLE " + MovieContract.CachedMovieEntry.TABLE_NAME +
+                "(" +
+                MovieContract.CachedMovieEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                MovieContract.CachedMovieEntry.COLUMN_SORTING_CRITERIA + " TEXT NOT NULL, " +
+                MovieContract.CachedMovieEntry.COLUMN_PAGE + " INTEGER NOT NULL, " +
+                MovieContract.CachedMovieEntry.COLUMN_POSITION + " INTEGER NOT NULL, " +
+                MovieContract.CachedMovieEntry.COLUMN_CACHED_AT + " INTEGER NOT NULL, " +
+                MovieContract.CachedMovieEntry.COLUMN_MOVIE_ID + " INTEGER NOT NULL, " +
+                MovieContract.CachedMovieEntry.COLUMN_ORIGINAL_TITLE + " TEXT, " +
+                MovieContract.CachedMovieEntry.COLUMN_POSTER_PATH + " TEXT, " +
+                MovieContract.CachedMovieEntry.COLUMN_PLOT_SYNOPSIS + " TEXT, " +
+                MovieContract.CachedMovieEntry.COLUMN_RATING + " NUMBER, " +
+                MovieContract.CachedMovieEntry.COLUMN_RELEASE_DATE + " TEXT, " +
+                "UNIQUE (" +
+                MovieContract.CachedMovieEntry.COLUMN_SORTING_CRITERIA + ", " +
+                MovieContract.CachedMovieEntry.COLUMN_PAGE + ", " +
+                MovieContract.CachedMovieEntry.COLUMN_POSITION +
+                ") ON CONFLICT REPLACE" +
+                ");";
+
+        String createCachedVideoTableQuery =
+                "CREATE TABLE " + MovieContract.CachedVideoEntry.TABLE_NAME +
+                "(" +
+                MovieContract.CachedVideoEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                MovieContract.CachedVideoEntry.COLUMN_MOVIE_ID + " INTEGER NOT NULL, " +
+                MovieContract.CachedVideoEntry.COLUMN_POSITION + " INTEGER NOT NULL, " +
+                MovieContract.CachedVideoEntry.COLUMN_VIDEO_ID + " TEXT NOT NULL, " +
+                MovieContract.CachedVideoEntry.COLUMN_NAME + " TEXT, " +
+                MovieContract.CachedVideoEntry.COLUMN_KEY + " TEXT, " +
+                MovieContract.CachedVideoEntry.COLUMN_TYPE + " TEXT, " +
+                "UNIQUE (" +
+                MovieContract.CachedVideoEntry.COLUMN_MOVIE_ID + ", " +
+                MovieContract.CachedVideoEntry.COLUMN_VIDEO_ID +
+                ") ON CONFLICT REPLACE" +
+                ");";
+
+        String createCachedReviewTableQuery =
+                "CREATE TABLE " + MovieContract.CachedReviewEntry.TABLE_NAME +
+                "(" +
+                MovieContract.CachedReviewEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                MovieContract.CachedReviewEntry.COLUMN_MOVIE_ID + " INTEGER NOT NULL, " +
+                MovieContract.CachedReviewEntry.COLUMN_POSITION + " INTEGER NOT NULL, " +
+                MovieContract.CachedReviewEntry.COLUMN_REVIEW_ID + " TEXT NOT NULL, " +
+                MovieContract.CachedReviewEntry.COLUMN_AUTHOR + " TEXT, " +
+                MovieContract.CachedReviewEntry.COLUMN_CONTENT + " TEXT, " +
+                "UNIQUE (" +
+                MovieContract.CachedReviewEntry.COLUMN_MOVIE_ID + ", " +
+                MovieContract.CachedReviewEntry.COLUMN_REVIEW_ID +
+                ") ON CONFLICT REPLACE" +
+                ");";
+
+        db.execSQL(createCachedMovieTableQuery);
+        db.execSQL(createCachedVideoTableQuery);
+        db.execSQL(createCachedReviewTableQuery);
+    }
+
+    /**
+     * Creates the indexes backing the lookups and sort orders used by the provider. The TMDb ID of
+     * favorite movies, the key of each cached list and the movie of each cached video and review
+     * are already indexed by their UNIQUE constraints.
+     *
+     * The UNIQUE constraints of cached videos and reviews lead with the movie ID, so they already
+     * find the rows of a movie. The position indexes only add their order, which saves sorting
+     * those rows in a temporary B-tree on every read of a movie's videos or reviews.
+     *
+     * @param db
+     *     database to create the indexes in
+     */
+    private static void createIndexes(SQLiteDatabase db)
+    {
+        // Sort orders offered for the favorite movies.
+        db.execSQL("CREATE INDEX movie_rating_index ON " +
+                   MovieContract.MovieEntry.TABLE_NAME +
+                   "(" + MovieContract.MovieEntry.COLUMN_RATING + ");");
+        db.execSQL("CREATE INDEX movie_release_date_index ON " +
+                   MovieContract.MovieEntry.TABLE_NAME +
+                   "(" + MovieContract.MovieEntry.COLUMN_RELEASE_DATE + ");");
+
+        // Cached videos and reviews of a movie, in the order that TMDb returned them, without a
+        // sort.
+        db.execSQL("CREATE INDEX cached_video_position_index ON " +
+                   MovieContract.CachedVideoEntry.TABLE_NAME +
+                   "(" +
+                   MovieContract.CachedVideoEntry.COLUMN_MOVIE_ID + ", " +
+                   MovieContract.CachedVideoEntry.COLUMN_POSITION +
+                   ");");
+        db.execSQL("CREATE INDEX cached_review_position_index ON " +
+                   MovieContract.CachedReviewEntry.TABLE_NAME +
+                   "(" +
+                   MovieContract.CachedReviewEntry.COLUMN_MOVIE_ID + ", " +
+                   MovieContract.CachedReviewEntry.COLUMN_POSITION +
+                   ");");
+    }
+
+    /**
+     * Creates the full-text search index over the local catalog, along with the triggers keeping
+     * it up to date, and indexes the movies already in the catalog.
+     *
+     * Each movie in the catalog has one entry, whose row ID is its TMDb ID. Whenever a favorite
+     * movie, cached movie or cached review changes, the entry of its movie is rebuilt from the
+     * catalog, or removed if the movie left the catalog.
+     *
+     * @param db
+     *     database to create the index in
+     */
+    private static void createSearchIndex(SQLiteDatabase db)
+    {
+        // FTS3 rather than FTS4, since FTS4 needs a newer SQLite than Gingerbread ships with.
+        String createSearchTableQuery =
+                "CREATE VIRTUAL TABLE " + MovieContract.SearchEntry.TABLE_NAME +
+                " USING fts3(" +
+                MovieContract.SearchEntry.COLUMN_ORIGINAL_TITLE + ", " +
+                MovieContract.SearchEntry.COLUMN_PLOT_SYNOPSIS + ", " +
+                MovieContract.SearchEntry.COLUMN_REVIEW_CONTENT +
+                ");";
+        db.execSQL(createSearchTableQuery);
+
+        // Rebuilding an entry looks up its movie among the cached movies by TMDb ID.
+        db.execSQL("CREATE INDEX cached_movie_movie_id_index ON " +
+                   MovieContract.CachedMovieEntry.TABLE_NAME +
+                   "(" + MovieContract.CachedMovieEntry.COLUMN_MOVIE_ID + ");");
+
+        createSearchTrigger(db,
+                            "movie_insert_search_trigger",
+                            "AFTER INSERT ON " + MovieContract.MovieEntry.TABLE_NAME,
+                            "NEW." + MovieContract.MovieEntry.COLUMN_MOVIE_ID);
+        createSearchTrigger(db,
+                            "movie_update_search_trigger",
+                            "AFTER UPDATE ON " + MovieContract.MovieEntry.TABLE_NAME,
+                            "NEW." + MovieContract.MovieEntry.COLUMN_MOVIE_ID);
+        createSearchTrigger(db,
+                            "movie_delete_search_trigger",
+                            "AFTER DELETE ON " + MovieContract.MovieEntry.TABLE_NAME,
+                            "OLD." + MovieContract.MovieEntry.COLUMN_MOVIE_ID);
+        createSearchTrigger(db,
+                            "cached_movie_insert_search_trigger",
+                            "AFTER INSERT ON " + MovieContract.CachedMovieEntry.TABLE_NAME,
+                            "NEW." + MovieContract.CachedMovieEntry.COLUMN_MOVIE_ID);
+        createSearchTrigger(db,
+                            "cached_movie_delete_search_trigger",
+                            "AFTER DELETE ON " + MovieContract.CachedMovieEntry.TABLE_NAME,
+                            "OLD." + MovieContract.CachedMovieEntry.COLUMN_MOVIE_ID);
+        createSearchTrigger(db,
+                            "cached_review_insert_search_trigger",
+                            "AFTER INSERT ON " + MovieContract.CachedReviewEntry.TABLE_NAME,
+                            "NEW." + MovieContract.CachedReviewEntry.COLUMN_MOVIE_ID);
+        createSearchTrigger(db,
+                            "cached_review_delete_search_trigger",
+                            "AFTER DELETE ON " + MovieContract.CachedReviewEntry.TABLE_NAME,
+                            "OLD." + MovieContract.CachedReviewEntry.COLUMN_MOVIE_ID);
+
+        // Index the movies already in the catalog.
+        db.execSQL("INSERT INTO " + MovieContract.SearchEntry.TABLE_NAME +
+                   buildSearchEntryQuery(null) + ";");
+    }
+
+    /**
+     * Creates a trigger that rebuilds the search entry of the movie with the given TMDb ID.
+     *
+     * @param db
+     *     database to create the trigger in
+     * @param triggerName
+     *     name of the trigger
+     * @param event
+     *     event firing the trigger, such as {@code AFTER INSERT ON movie}
+     * @param tmdbIdExpression
+     *     expression evaluating to the TMDb ID of the changed movie, such as {@code NEW.id}
+     */
+    private static void createSearchTrigger(SQLiteDatabase db,
+                                            String triggerName,
+                                            String event,
+                                            String tmdbIdExpression)
+    {
+        db.execSQL("CREATE TRIGGER " + triggerName + " " + event + " " +
+                   "BEGIN " +
+                   "DELETE FROM " + MovieContract.SearchEntry.TABLE_NAME +
+                   " WHERE docid = " + tmdbIdExpression + "; " +
+                   "INSERT INTO " + MovieContract.SearchEntry.TABLE_NAME +
+                   buildSearchEntryQuery(tmdbIdExpression) + "; " +
+                   "END;");
+    }
+
+    /**
+     * Returns the column list and SELECT statement inserting the search entries of the movies in
+     * the catalog, limited to the movie with the given TMDb ID if any. A movie that is both a
+     * favorite and cached, or cached in several lists, gets a single entry.
+     */
+    private static String buildSearchEntryQuery(String tmdbIdExpression)
+    {
+        String movieIdColumn = MovieContract.MovieEntry.COLUMN_MOVIE_ID;
+        String catalogColumns = movieIdColumn + ", " +
+                                MovieContract.MovieEntry.COLUMN_ORIGINAL_TITLE + ", " +
+                                MovieContract.MovieEntry.COLUMN_PLOT_SYNOPSIS;
+        String movieFilter = (tmdbIdExpression != null) ?
+                             " WHERE " + movieIdColumn + " = " + tmdbIdExpression :
+                             "";
+        return " (docid, " +
+               MovieContract.SearchEntry.COLUMN_ORIGINAL_TITLE + ", " +
+               MovieContract.SearchEntry.COLUMN_PLOT_SYNOPSIS + ", " +
+               MovieContract.SearchEntry.COLUMN_REVIEW_CONTENT +
+               ") SELECT " + catalogColumns + ", " +
+               "(SELECT group_concat(" + MovieContract.CachedReviewEntry.COLUMN_CONTENT +
+               ", ' ') FROM " + MovieContract.CachedReviewEntry.TABLE_NAME +
+               " WHERE " + MovieContract.CachedReviewEntry.COLUMN_MOVIE_ID + " = catalog." +
+               movieIdColumn + ") " +
+               "FROM (" +
+               "SELECT " + catalogColumns + " FROM " + MovieContract.MovieEntry.TABLE_NAME +
+               movieFilter +
+               " UNION ALL " +
+               "SELECT " + catalogColumns + " FROM " + MovieContract.CachedMovieEntry.TABLE_NAME +
+               movieFilter +
+               ") AS catalog GROUP BY " + movieIdColumn;
+    }
 }
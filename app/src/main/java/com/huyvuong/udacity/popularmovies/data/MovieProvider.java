@@ -1,16 +1,36 @@
 package com.huyvuong.udacity.popularmovies.data;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.MatrixCursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
 import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+import android.util.SparseBooleanArray;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Content provider for interacting and managing movie data cached from The Movie Database (TMDb).
+ *
+ * Writes made through {@link #bulkInsert(Uri, ContentValues[])} or
+ * {@link #applyBatch(ArrayList)} run in a single transaction, insert rows with compiled upsert
+ * statements, and notify each changed URI once after the transaction commits.
  */
 public class MovieProvider
         extends ContentProvider
@@ -18,21 +38,95 @@ public class MovieProvider
     // URIs supported by this content provider.
     private static final int CODE_MOVIE = 100;
     private static final int CODE_MOVIE_WITH_TMDB_ID = 101;
+    private static final int CODE_CACHED_MOVIES_WITH_CRITERIA = 200;
+    private static final int CODE_CACHED_VIDEOS_WITH_TMDB_ID = 300;
+    private static final int CODE_CACHED_REVIEWS_WITH_TMDB_ID = 400;
+    private static final int CODE_SEARCH_WITH_QUERY = 500;
 
     private static final UriMatcher uriMatcher = buildUriMatcher();
 
+    // Columns written by upserts into the favorite movies table.
+    private static final String[] MOVIE_COLUMNS = new String[]
+            {
+                    MovieContract.MovieEntry.COLUMN_MOVIE_ID,
+                    MovieContract.MovieEntry.COLUMN_ORIGINAL_TITLE,
+                    MovieContract.MovieEntry.COLUMN_POSTER_PATH,
+                    MovieContract.MovieEntry.COLUMN_PLOT_SYNOPSIS,
+                    MovieContract.MovieEntry.COLUMN_RATING,
+                    MovieContract.MovieEntry.COLUMN_RELEASE_DATE
+            };
+
+    // Columns of search results, in the order returned when no projection is given.
+    private static final String[] SEARCH_COLUMNS = new String[]
+            {
+                    MovieContract.MovieEntry.COLUMN_MOVIE_ID,
+                    MovieContract.MovieEntry.COLUMN_ORIGINAL_TITLE,
+                    MovieContract.MovieEntry.COLUMN_POSTER_PATH,
+                    MovieContract.MovieEntry.COLUMN_PLOT_SYNOPSIS,
+                    MovieContract.MovieEntry.COLUMN_RATING,
+                    MovieContract.MovieEntry.COLUMN_RELEASE_DATE,
+                    MovieContract.SearchEntry.COLUMN_RANK
+            };
+
+    // Search over the local catalog. Binds the match expressions restricted to the title, plot
+    // synopsis and reviews, used for ranking, followed by the unrestricted one.
+    private static final String SQL_SEARCH = buildSearchSql();
+    private static final String DEFAULT_SEARCH_SORT_ORDER =
+            MovieContract.SearchEntry.COLUMN_RANK + " DESC, " +
+            MovieContract.MovieEntry.COLUMN_ORIGINAL_TITLE + " COLLATE NOCASE";
+
+    // SQL of the lookups of a favorite movie by its TMDb ID, keyed by their columns and sort
+    // order. Every lookup for the same columns runs the same SQL, so the database connections keep
+    // its compiled statement in their statement caches instead of compiling it on each lookup.
+    private final Map<String, String> movieWithTmdbIdSql = new ConcurrentHashMap<>();
+
+    // Batch being applied by the current thread, if any.
+    private final ThreadLocal<Batch> currentBatch = new ThreadLocal<>();
+
+    private final String databaseName;
     private MovieDbHelper movieDbHelper;
 
+    public MovieProvider()
+    {
+        this(MovieDbHelper.DATABASE_NAME);
+    }
+
+    /**
+     * Constructs a provider for the database with the given name, so that tests can work on a
+     * database of their own.
+     *
+     * @param databaseName
+     *     name of the database file
+     */
+    @VisibleForTesting
+    MovieProvider(String databaseName)
+    {
+        this.databaseName = databaseName;
+    }
+
     @Override
     public boolean onCreate()
     {
         // Set up the DB helper.
-        movieDbHelper = new MovieDbHelper(getContext());
+        movieDbHelper = new MovieDbHelper(getContext(), databaseName);
 
         // Return true to indicate a successful setup.
         return true;
     }
 
+    /**
+     * Returns the helper of the database behind this provider, so that tests can change its
+     * configuration and close it.
+     *
+     * @return
+     *     helper of the database behind this provider
+     */
+    @VisibleForTesting
+    MovieDbHelper getMovieDbHelper()
+    {
+        return movieDbHelper;
+    }
+
     @Override
     public Cursor query(@NonNull Uri uri,
                         String[] projection,
@@ -57,15 +151,37 @@ public class MovieProvider
                 break;
             case CODE_MOVIE_WITH_TMDB_ID:
                 sqLiteDatabase = movieDbHelper.getReadableDatabase();
-                String tmdbId = uri.getPathSegments().get(1);
-                queryResults = sqLiteDatabase.query(MovieContract.MovieEntry.TABLE_NAME,
-                                                    projection,
-                                                    MovieContract.MovieEntry.COLUMN_MOVIE_ID + " = ?",
-                                                    new String[] {tmdbId},
-                                                    null,
-                                                    null,
-                                                    sortOrder);
+                queryResults = sqLiteDatabase.rawQuery(
+                        getMovieWithTmdbIdSql(projection, sortOrder),
+                        new String[] {uri.getPathSegments().get(1)});
+                break;
+            case CODE_CACHED_MOVIES_WITH_CRITERIA:
+            case CODE_CACHED_VIDEOS_WITH_TMDB_ID:
+            case CODE_CACHED_REVIEWS_WITH_TMDB_ID:
+                // Query the cached rows belonging to the list or movie referred to by the URI, in
+                // the order that TMDb returned them by default.
+                sqLiteDatabase = movieDbHelper.getReadableDatabase();
+                CacheTable cacheTable = CacheTable.forUri(uri);
+                queryResults = sqLiteDatabase.query(
+                        cacheTable.tableName,
+                        projection,
+                        cacheTable.buildSelection(selection),
+                        cacheTable.buildSelectionArgs(uri, selectionArgs),
+                        null,
+                        null,
+                        (sortOrder != null) ? sortOrder : cacheTable.defaultSortOrder);
                 break;
+            case CODE_SEARCH_WITH_QUERY:
+                queryResults = search(uri.getPathSegments().get(1), projection, sortOrder);
+
+                // Register this cursor to watch the whole catalog for changes instead, since any
+                // change to it may change the search results.
+                if (getContext() != null && getContext().getContentResolver() != null)
+                {
+                    queryResults.setNotificationUri(getContext().getContentResolver(),
+                                                    MovieContract.BASE_CONTENT_URI);
+                }
+                return queryResults;
             default:
                 throw new UnsupportedOperationException("Unknown URI: " + uri);
         }
@@ -85,28 +201,98 @@ public class MovieProvider
         switch (uriMatcher.match(uri))
         {
             case CODE_MOVIE:
-                // Insert the provided values into the database.
-                SQLiteDatabase sqLiteDatabase = movieDbHelper.getWritableDatabase();
-                long rowId =
-                        sqLiteDatabase.insert(MovieContract.MovieEntry.TABLE_NAME, null, values);
+                // Insert the provided values into the database. Within a batch, replace any row
+                // with the same TMDb-assigned ID instead of failing.
+                long rowId;
+                Batch batch = currentBatch.get();
+                if (batch != null)
+                {
+                    rowId = batch.upsert(
+                            MovieContract.MovieEntry.TABLE_NAME, MOVIE_COLUMNS, values);
+                }
+                else
+                {
+                    SQLiteDatabase sqLiteDatabase = movieDbHelper.getWritableDatabase();
+                    rowId = sqLiteDatabase.insert(
+                            MovieContract.MovieEntry.TABLE_NAME, null, values);
+                }
                 if (rowId < 0)
                 {
                     throw new SQLException("Failed to insert row at URI: " + uri);
                 }
 
-                // Notify anyone listening on the resulting URI of changes to it.
+                // Keep the in-memory favorite IDs in step with the table.
                 int tmdbId = values.getAsInteger(MovieContract.MovieEntry.COLUMN_MOVIE_ID);
+                updateFavoriteIds(tmdbId, true);
+
+                // Notify anyone listening on the resulting URI of changes to it. Within a batch,
+                // notify the list of movies instead, which covers every movie inserted.
                 Uri insertedUri = MovieContract.MovieEntry.buildMovieUriWithTmdbId(tmdbId);
-                if (getContext() != null && getContext().getContentResolver() != null)
+                notifyChange((batch != null) ? uri : insertedUri);
+                return insertedUri;
+            case CODE_CACHED_MOVIES_WITH_CRITERIA:
+            case CODE_CACHED_VIDEOS_WITH_TMDB_ID:
+            case CODE_CACHED_REVIEWS_WITH_TMDB_ID:
+                // Insert the provided values under the list or movie referred to by the URI,
+                // replacing any row cached at the same position.
+                insertIntoCacheTable(uri, values);
+
+                // Notify anyone listening on the given URI of changes to it.
+                notifyChange(uri);
+                return uri;
+            default:
+                throw new UnsupportedOperationException("Unknown URI: " + uri);
+        }
+    }
+
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values)
+    {
+        switch (uriMatcher.match(uri))
+        {
+            case CODE_MOVIE:
+            case CODE_CACHED_MOVIES_WITH_CRITERIA:
+            case CODE_CACHED_VIDEOS_WITH_TMDB_ID:
+            case CODE_CACHED_REVIEWS_WITH_TMDB_ID:
+                // Insert all of the rows in one transaction, notifying listeners once at the end.
+                Batch batch = beginBatch();
+                try
                 {
-                    getContext().getContentResolver().notifyChange(insertedUri, null);
+                    for (ContentValues rowValues : values)
+                    {
+                        insert(uri, rowValues);
+                    }
+                    batch.setSuccessful();
                 }
-                return insertedUri;
+                finally
+                {
+                    endBatch(batch);
+                }
+                return values.length;
             default:
                 throw new UnsupportedOperationException("Unknown URI: " + uri);
         }
     }
 
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(
+            @NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException
+    {
+        // Apply all of the operations in one transaction, notifying listeners once at the end.
+        Batch batch = beginBatch();
+        try
+        {
+            ContentProviderResult[] results = super.applyBatch(operations);
+            batch.setSuccessful();
+            return results;
+        }
+        finally
+        {
+            endBatch(batch);
+        }
+    }
 
     @Override
     public int update(@NonNull Uri uri,
@@ -127,10 +313,7 @@ public class MovieProvider
                         new String[] {tmdbId});
 
                 // Notify anyone listening on the given URI of changes to it.
-                if (getContext() != null && getContext().getContentResolver() != null)
-                {
-                    getContext().getContentResolver().notifyChange(uri, null);
-                }
+                notifyChange(uri);
                 return rowsUpdated;
             default:
                 throw new UnsupportedOperationException("Unknown URI: " + uri);
@@ -151,12 +334,29 @@ public class MovieProvider
                         MovieContract.MovieEntry.COLUMN_MOVIE_ID + " = ?",
                         new String[] {tmdbId});
 
-                // Notify anyone listening on the given URI of changes to it.
-                if (getContext() != null && getContext().getContentResolver() != null)
+                // Keep the in-memory favorite IDs in step with the table.
+                if (rowsDeleted > 0)
                 {
-                    getContext().getContentResolver().notifyChange(uri, null);
+                    updateFavoriteIds(Integer.parseInt(tmdbId), false);
                 }
+
+                // Notify anyone listening on the given URI of changes to it.
+                notifyChange(uri);
                 return rowsDeleted;
+            case CODE_CACHED_MOVIES_WITH_CRITERIA:
+            case CODE_CACHED_VIDEOS_WITH_TMDB_ID:
+            case CODE_CACHED_REVIEWS_WITH_TMDB_ID:
+                // Delete the cached rows belonging to the list or movie referred to by the URI,
+                // further narrowed down by the given selection if any.
+                CacheTable cacheTable = CacheTable.forUri(uri);
+                int cachedRowsDeleted = movieDbHelper.getWritableDatabase().delete(
+                        cacheTable.tableName,
+                        cacheTable.buildSelection(selection),
+                        cacheTable.buildSelectionArgs(uri, selectionArgs));
+
+                // Notify anyone listening on the given URI of changes to it.
+                notifyChange(uri);
+                return cachedRowsDeleted;
             default:
                 throw new UnsupportedOperationException("Unknown URI: " + uri);
         }
@@ -171,11 +371,46 @@ public class MovieProvider
                 return "vnd.android.cursor.dir/vnd.com.huyvuong.udacity.popularmovies.movies";
             case CODE_MOVIE_WITH_TMDB_ID:
                 return "vnd.android.cursor.item/vnd.com.huyvuong.udacity.popularmovies.movies";
+            case CODE_CACHED_MOVIES_WITH_CRITERIA:
+                return "vnd.android.cursor.dir/" +
+                       "vnd.com.huyvuong.udacity.popularmovies.cached_movies";
+            case CODE_CACHED_VIDEOS_WITH_TMDB_ID:
+                return "vnd.android.cursor.dir/" +
+                       "vnd.com.huyvuong.udacity.popularmovies.cached_videos";
+            case CODE_CACHED_REVIEWS_WITH_TMDB_ID:
+                return "vnd.android.cursor.dir/" +
+                       "vnd.com.huyvuong.udacity.popularmovies.cached_reviews";
+            case CODE_SEARCH_WITH_QUERY:
+                return "vnd.android.cursor.dir/vnd.com.huyvuong.udacity.popularmovies.movies";
             default:
                 throw new UnsupportedOperationException("Unknown URI: " + uri);
         }
     }
 
+    /**
+     * Returns the SQL looking up a favorite movie by its TMDb ID, bound as its only argument,
+     * building it on the first lookup for the given columns and sort order.
+     */
+    private String getMovieWithTmdbIdSql(String[] projection, String sortOrder)
+    {
+        String key = Arrays.toString(projection) + " ORDER BY " + sortOrder;
+        String sql = movieWithTmdbIdSql.get(key);
+        if (sql == null)
+        {
+            sql = SQLiteQueryBuilder.buildQueryString(
+                    false,
+                    MovieContract.MovieEntry.TABLE_NAME,
+                    projection,
+                    MovieContract.MovieEntry.COLUMN_MOVIE_ID + " = ?",
+                    null,
+                    null,
+                    sortOrder,
+                    null);
+            movieWithTmdbIdSql.put(key, sql);
+        }
+        return sql;
+    }
+
     private static UriMatcher buildUriMatcher()
     {
         UriMatcher uriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
@@ -185,6 +420,477 @@ public class MovieProvider
         uriMatcher.addURI(MovieContract.CONTENT_AUTHORITY,
                           MovieContract.PATH_MOVIES + "/#",
                           CODE_MOVIE_WITH_TMDB_ID);
+        uriMatcher.addURI(MovieContract.CONTENT_AUTHORITY,
+                          MovieContract.PATH_CACHED_MOVIES + "/*",
+                          CODE_CACHED_MOVIES_WITH_CRITERIA);
+        uriMatcher.addURI(MovieContract.CONTENT_AUTHORITY,
+                          MovieContract.PATH_CACHED_VIDEOS + "/#",
+                          CODE_CACHED_VIDEOS_WITH_TMDB_ID);
+        uriMatcher.addURI(MovieContract.CONTENT_AUTHORITY,
+                          MovieContract.PATH_CACHED_REVIEWS + "/#",
+                          CODE_CACHED_REVIEWS_WITH_TMDB_ID);
+        uriMatcher.addURI(MovieContract.CONTENT_AUTHORITY,
+                          MovieContract.PATH_SEARCH + "/*",
+                          CODE_SEARCH_WITH_QUERY);
         return uriMatcher;
     }
+
+    /**
+     * Searches the local catalog for the movies matching the given query, best matches first
+     * unless another sort order is given.
+     *
+     * @param query
+     *     words to search for, as typed by the user
+     * @param projection
+     *     columns of the search results to return, or null for all of them
+     * @param sortOrder
+     *     order of the search results, or null to order them by rank
+     * @return
+     *     cursor over the matching movies
+     */
+    private Cursor search(String query, String[] projection, String sortOrder)
+    {
+        // A query without any words matches nothing.
+        String matchExpression = buildMatchExpression(query, null);
+        if (matchExpression.isEmpty())
+        {
+            return new MatrixCursor((projection != null) ? projection : SEARCH_COLUMNS);
+        }
+
+        String sql = SQLiteQueryBuilder.buildQueryString(
+                false,
+                "(" + SQL_SEARCH + ")",
+                projection,
+                null,
+                null,
+                null,
+                (sortOrder != null) ? sortOrder : DEFAULT_SEARCH_SORT_ORDER,
+                null);
+        return movieDbHelper.getReadableDatabase().rawQuery(
+                sql,
+                new String[]
+                        {
+                                buildMatchExpression(
+                                        query, MovieContract.SearchEntry.COLUMN_ORIGINAL_TITLE),
+                                buildMatchExpression(
+                                        query, MovieContract.SearchEntry.COLUMN_PLOT_SYNOPSIS),
+                                buildMatchExpression(
+                                        query, MovieContract.SearchEntry.COLUMN_REVIEW_CONTENT),
+                                matchExpression
+                        });
+    }
+
+    /**
+     * Returns a full-text match expression requiring every word of the given query to prefix a
+     * word in the given column of the search index, or in any column if none is given.
+     *
+     * The query is split into words the way the search index's simple tokenizer splits text: ASCII
+     * letters and digits and all non-ASCII characters make up words, and every other character
+     * separates them, so that nothing typed by the user is taken as search syntax. Likewise, only
+     * ASCII letters are lowercased, since the tokenizer leaves the case of all other letters as it
+     * is and a query lowercasing them would never match.
+     */
+    private static String buildMatchExpression(String query, String column)
+    {
+        StringBuilder matchExpression = new StringBuilder();
+        boolean isInWord = false;
+        for (int i = 0; i < query.length(); i++)
+        {
+            char c = query.charAt(i);
+            if (!isSearchTokenChar(c))
+            {
+                // End the current word, if any.
+                if (isInWord)
+                {
+                    matchExpression.append('*');
+                    isInWord = false;
+                }
+                continue;
+            }
+
+            // Start a new word.
+            if (!isInWord)
+            {
+                if (matchExpression.length() > 0)
+                {
+                    matchExpression.append(' ');
+                }
+                if (column != null)
+                {
+                    matchExpression.append(column).append(':');
+                }
+                isInWord = true;
+            }
+            matchExpression.append((c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c);
+        }
+        if (isInWord)
+        {
+            matchExpression.append('*');
+        }
+        return matchExpression.toString();
+    }
+
+    /**
+     * Returns true if the simple tokenizer of the search index takes the given character as part
+     * of a word.
+     */
+    private static boolean isSearchTokenChar(char c)
+    {
+        return (c >= 0x80) ||
+               (c >= '0' && c <= '9') ||
+               (c >= 'A' && c <= 'Z') ||
+               (c >= 'a' && c <= 'z');
+    }
+
+    /**
+     * Returns the SQL searching the local catalog, which ranks each movie matching the search by
+     * the columns of the search index that it matches in, and joins it to its catalog entry.
+     */
+    private static String buildSearchSql()
+    {
+        String searchTable = MovieContract.SearchEntry.TABLE_NAME;
+        String matchedDocIds = "(docid IN (SELECT docid FROM " + searchTable +
+                               " WHERE " + searchTable + " MATCH ?))";
+        String movieColumns = MovieContract.MovieEntry.COLUMN_MOVIE_ID + ", " +
+                              MovieContract.MovieEntry.COLUMN_ORIGINAL_TITLE + ", " +
+                              MovieContract.MovieEntry.COLUMN_POSTER_PATH + ", " +
+                              MovieContract.MovieEntry.COLUMN_PLOT_SYNOPSIS + ", " +
+                              MovieContract.MovieEntry.COLUMN_RATING + ", " +
+                              MovieContract.MovieEntry.COLUMN_RELEASE_DATE;
+        return "SELECT " + movieColumns + ", " + MovieContract.SearchEntry.COLUMN_RANK +
+               " FROM (" +
+               "SELECT docid, " +
+               "4 * " + matchedDocIds + " + 2 * " + matchedDocIds + " + " + matchedDocIds +
+               " AS " + MovieContract.SearchEntry.COLUMN_RANK +
+               " FROM " + searchTable + " WHERE " + searchTable + " MATCH ?" +
+               ") AS hit JOIN (" +
+               "SELECT " + movieColumns + " FROM (" +
+               "SELECT " + movieColumns + " FROM " + MovieContract.MovieEntry.TABLE_NAME +
+               " UNION ALL " +
+               "SELECT " + movieColumns + " FROM " + MovieContract.CachedMovieEntry.TABLE_NAME +
+               ") GROUP BY " + MovieContract.MovieEntry.COLUMN_MOVIE_ID +
+               ") AS catalog ON catalog." + MovieContract.MovieEntry.COLUMN_MOVIE_ID +
+               " = hit.docid";
+    }
+
+    /**
+     * Inserts the given values into the cache table referred to by the given URI, keyed by the
+     * sorting criteria or movie ID in the URI.
+     *
+     * @param uri
+     *     URI of a cached list of movies, or of the cached videos or reviews of a movie
+     * @param values
+     *     values of the row to insert
+     */
+    private void insertIntoCacheTable(Uri uri, ContentValues values)
+    {
+        CacheTable cacheTable = CacheTable.forUri(uri);
+        ContentValues keyedValues = new ContentValues(values);
+        keyedValues.put(cacheTable.keyColumn, uri.getPathSegments().get(1));
+        if (cacheTable == CacheTable.MOVIES &&
+            !keyedValues.containsKey(MovieContract.CachedMovieEntry.COLUMN_CACHED_AT))
+        {
+            keyedValues.put(MovieContract.CachedMovieEntry.COLUMN_CACHED_AT,
+                            System.currentTimeMillis());
+        }
+
+        Batch batch = currentBatch.get();
+        long rowId = (batch != null) ?
+                     batch.upsert(cacheTable.tableName, cacheTable.columns, keyedValues) :
+                     movieDbHelper.getWritableDatabase()
+                                  .insert(cacheTable.tableName, null, keyedValues);
+        if (rowId < 0)
+        {
+            throw new SQLException("Failed to insert row at URI: " + uri);
+        }
+    }
+
+    /**
+     * Notifies anyone listening on the given URI of changes to it. Within a batch, the
+     * notification is deferred until the batch commits, and repeated notifications of the same
+     * URI are coalesced into one.
+     *
+     * @param uri
+     *     URI that changed
+     */
+    private void notifyChange(Uri uri)
+    {
+        Batch batch = currentBatch.get();
+        if (batch != null)
+        {
+            batch.changedUris.add(uri);
+        }
+        else if (getContext() != null && getContext().getContentResolver() != null)
+        {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+    }
+
+    /**
+     * Records that the movie with the given TMDb ID was marked or unmarked as a favorite in the
+     * in-memory favorite IDs. Within a batch, the change is recorded once the batch commits, and
+     * dropped if it rolls back.
+     *
+     * @param tmdbId
+     *     TMDb ID of the movie that changed
+     * @param isFavorite
+     *     true if the movie was marked as a favorite; false if it was unmarked
+     */
+    private void updateFavoriteIds(int tmdbId, boolean isFavorite)
+    {
+        Batch batch = currentBatch.get();
+        if (batch != null)
+        {
+            batch.favoriteIdChanges.put(tmdbId, isFavorite);
+        }
+        else
+        {
+            FavoriteIds.getInstance().update(tmdbId, isFavorite);
+        }
+    }
+
+    /**
+     * Begins a batch on the current thread by opening a transaction.
+     *
+     * @return
+     *     batch that must be passed to {@link #endBatch(Batch)} once applied
+     */
+    private Batch beginBatch()
+    {
+        if (currentBatch.get() != null)
+        {
+            throw new IllegalStateException("Batches cannot be nested.");
+        }
+
+        SQLiteDatabase sqLiteDatabase = movieDbHelper.getWritableDatabase();
+        sqLiteDatabase.beginTransaction();
+        Batch batch = new Batch(sqLiteDatabase);
+        currentBatch.set(batch);
+        return batch;
+    }
+
+    /**
+     * Ends the given batch, committing its transaction if it was marked successful and then
+     * recording its favorite changes and notifying each URI that it changed. Otherwise, rolls back
+     * the transaction without recording or notifying anything.
+     *
+     * @param batch
+     *     batch returned by {@link #beginBatch()}
+     */
+    private void endBatch(Batch batch)
+    {
+        currentBatch.remove();
+        batch.closeStatements();
+        batch.sqLiteDatabase.endTransaction();
+        if (batch.isSuccessful)
+        {
+            for (int i = 0; i < batch.favoriteIdChanges.size(); i++)
+            {
+                FavoriteIds.getInstance().update(batch.favoriteIdChanges.keyAt(i),
+                                                 batch.favoriteIdChanges.valueAt(i));
+            }
+            for (Uri changedUri : batch.changedUris)
+            {
+                notifyChange(changedUri);
+            }
+        }
+    }
+
+    /**
+     * Cache tables along with the column that the key in their URIs refers to.
+     */
+    private enum CacheTable
+    {
+        MOVIES(MovieContract.CachedMovieEntry.TABLE_NAME,
+               MovieContract.CachedMovieEntry.COLUMN_SORTING_CRITERIA,
+               MovieContract.CachedMovieEntry.COLUMN_PAGE + ", " +
+               MovieContract.CachedMovieEntry.COLUMN_POSITION,
+               new String[]
+                       {
+                               MovieContract.CachedMovieEntry.COLUMN_SORTING_CRITERIA,
+                               MovieContract.CachedMovieEntry.COLUMN_PAGE,
+                               MovieContract.CachedMovieEntry.COLUMN_POSITION,
+                               MovieContract.CachedMovieEntry.COLUMN_CACHED_AT,
+                               MovieContract.CachedMovieEntry.COLUMN_MOVIE_ID,
+                               MovieContract.CachedMovieEntry.COLUMN_ORIGINAL_TITLE,
+                               MovieContract.CachedMovieEntry.COLUMN_POSTER_PATH,
+                               MovieContract.CachedMovieEntry.COLUMN_PLOT_SYNOPSIS,
+                               MovieContract.CachedMovieEntry.COLUMN_RATING,
+                               MovieContract.CachedMovieEntry.COLUMN_RELEASE_DATE
+                       }),
+        VIDEOS(MovieContract.CachedVideoEntry.TABLE_NAME,
+               MovieContract.CachedVideoEntry.COLUMN_MOVIE_ID,
+               MovieContract.CachedVideoEntry.COLUMN_POSITION,
+               new String[]
+                       {
+                               MovieContract.CachedVideoEntry.COLUMN_MOVIE_ID,
+                               MovieContract.CachedVideoEntry.COLUMN_POSITION,
+                               MovieContract.CachedVideoEntry.COLUMN_VIDEO_ID,
+                               MovieContract.CachedVideoEntry.COLUMN_NAME,
+                               MovieContract.CachedVideoEntry.COLUMN_KEY,
+                               MovieContract.CachedVideoEntry.COLUMN_TYPE
+                       }),
+        REVIEWS(MovieContract.CachedReviewEntry.TABLE_NAME,
+                MovieContract.CachedReviewEntry.COLUMN_MOVIE_ID,
+                MovieContract.CachedReviewEntry.COLUMN_POSITION,
+                new String[]
+                        {
+                                MovieContract.CachedReviewEntry.COLUMN_MOVIE_ID,
+                                MovieContract.CachedReviewEntry.COLUMN_POSITION,
+                                MovieContract.CachedReviewEntry.COLUMN_REVIEW_ID,
+                                MovieContract.CachedReviewEntry.COLUMN_AUTHOR,
+                                MovieContract.CachedReviewEntry.COLUMN_CONTENT
+                        });
+
+        private final String tableName;
+        private final String keyColumn;
+        private final String defaultSortOrder;
+        private final String[] columns;
+
+        CacheTable(String tableName, String keyColumn, String defaultSortOrder, String[] columns)
+        {
+            this.tableName = tableName;
+            this.keyColumn = keyColumn;
+            this.defaultSortOrder = defaultSortOrder;
+            this.columns = columns;
+        }
+
+        static CacheTable forUri(Uri uri)
+        {
+            switch (uriMatcher.match(uri))
+            {
+                case CODE_CACHED_MOVIES_WITH_CRITERIA:
+                    return MOVIES;
+                case CODE_CACHED_VIDEOS_WITH_TMDB_ID:
+                    return VIDEOS;
+                case CODE_CACHED_REVIEWS_WITH_TMDB_ID:
+                    return REVIEWS;
+                default:
+                    throw new UnsupportedOperationException("Unknown URI: " + uri);
+            }
+        }
+
+        /**
+         * Returns a selection restricted to this table's key, combined with the given selection.
+         */
+        String buildSelection(String selection)
+        {
+            return (selection == null || selection.isEmpty()) ?
+                   keyColumn + " = ?" :
+                   keyColumn + " = ? AND (" + selection + ")";
+        }
+
+        /**
+         * Returns the key in the given URI followed by the given selection arguments.
+         */
+        String[] buildSelectionArgs(Uri uri, String[] selectionArgs)
+        {
+            int selectionArgCount = (selectionArgs != null) ? selectionArgs.length : 0;
+            String[] keyedSelectionArgs = new String[selectionArgCount + 1];
+            keyedSelectionArgs[0] = uri.getPathSegments().get(1);
+            if (selectionArgs != null)
+            {
+                System.arraycopy(selectionArgs, 0, keyedSelectionArgs, 1, selectionArgCount);
+            }
+            return keyedSelectionArgs;
+        }
+    }
+
+    /**
+     * State of a batch being applied by one thread: its transaction, the upsert statements
+     * compiled so far, and the URIs to notify once it commits.
+     */
+    private static class Batch
+    {
+        private final SQLiteDatabase sqLiteDatabase;
+        private final Map<String, SQLiteStatement> upsertStatements = new HashMap<>();
+        private final Set<Uri> changedUris = new LinkedHashSet<>();
+        private final SparseBooleanArray favoriteIdChanges = new SparseBooleanArray();
+        private boolean isSuccessful;
+
+        Batch(SQLiteDatabase sqLiteDatabase)
+        {
+            this.sqLiteDatabase = sqLiteDatabase;
+        }
+
+        void setSuccessful()
+        {
+            sqLiteDatabase.setTransactionSuccessful();
+            isSuccessful = true;
+        }
+
+        /**
+         * Inserts the given values into the given table, replacing any row that conflicts with
+         * them on a unique column. The statement is compiled once per table and batch.
+         *
+         * @return
+         *     row ID of the inserted row, or -1 if it could not be inserted
+         */
+        long upsert(String tableName, String[] columns, ContentValues values)
+        {
+            SQLiteStatement statement = upsertStatements.get(tableName);
+            if (statement == null)
+            {
+                statement = sqLiteDatabase.compileStatement(buildUpsertSql(tableName, columns));
+                upsertStatements.put(tableName, statement);
+            }
+
+            statement.clearBindings();
+            for (int i = 0; i < columns.length; i++)
+            {
+                bindValue(statement, i + 1, values.get(columns[i]));
+            }
+            return statement.executeInsert();
+        }
+
+        void closeStatements()
+        {
+            for (SQLiteStatement statement : upsertStatements.values())
+            {
+                statement.close();
+            }
+            upsertStatements.clear();
+        }
+
+        private static String buildUpsertSql(String tableName, String[] columns)
+        {
+            StringBuilder columnList = new StringBuilder();
+            StringBuilder placeholders = new StringBuilder();
+            for (int i = 0; i < columns.length; i++)
+            {
+                columnList.append((i == 0) ? "" : ", ").append(columns[i]);
+                placeholders.append((i == 0) ? "?" : ", ?");
+            }
+            return "INSERT OR REPLACE INTO " + tableName +
+                   " (" + columnList + ") VALUES (" + placeholders + ")";
+        }
+
+        private static void bindValue(SQLiteStatement statement, int index, Object value)
+        {
+            if (value == null)
+            {
+                statement.bindNull(index);
+            }
+            else if (value instanceof Double || value instanceof Float)
+            {
+                statement.bindDouble(index, ((Number) value).doubleValue());
+            }
+            else if (value instanceof Number)
+            {
+                statement.bindLong(index, ((Number) value).longValue());
+            }
+            else if (value instanceof Boolean)
+            {
+                statement.bindLong(index, ((Boolean) value) ? 1 : 0);
+            }
+            else if (value instanceof byte[])
+            {
+                statement.bindBlob(index, (byte[]) value);
+            }
+            else
+            {
+                statement.bindString(index, value.toString());
+            }
+        }
+    }
 }
@@ -0,0 +1,131 @@
+package com.huyvuong.udacity.popularmovies.gateway;
+
+/**
+ * Circuit breaker for a single TMDb endpoint. It lets requests through while the endpoint works
+ * (closed), stops them for a while once it failed several times in a row (open), and then lets a
+ * single trial request through (half-open), whose outcome closes or reopens the circuit.
+ *
+ * Times are in milliseconds, from any clock that the caller uses consistently.
+ */
+class CircuitBreaker
+{
+    /**
+     * State of a circuit breaker.
+     */
+    enum State
+    {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailureCount;
+    private long openUntilMillis;
+
+    /**
+     * Constructs a new closed circuit breaker.
+     *
+     * @param failureThreshold
+     *     number of failures in a row that open the circuit
+     * @param openMillis
+     *     how long the circuit stays open before a trial request is let through
+     */
+    CircuitBreaker(int failureThreshold, long openMillis)
+    {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Returns whether a request may go to the network now. Once the circuit has been open for long
+     * enough, this lets a single trial request through, and refuses others until its outcome is
+     * recorded.
+     *
+     * @param nowMillis
+     *     current time
+     * @return
+     *     true if the request may go to the network; false if it must be short-circuited
+     */
+    synchronized boolean allowRequest(long nowMillis)
+    {
+        switch (state)
+        {
+            case OPEN:
+                if (nowMillis < openUntilMillis)
+                {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                return true;
+            case HALF_OPEN:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Records that a request succeeded, which closes the circuit.
+     */
+    synchronized void recordSuccess()
+    {
+        state = State.CLOSED;
+        consecutiveFailureCount = 0;
+    }
+
+    /**
+     * Records that a request failed, which opens the circuit if it was a trial request or if too
+     * many requests failed in a row.
+     *
+     * @param nowMillis
+     *     current time
+     */
+    synchronized void recordFailure(long nowMillis)
+    {
+        consecutiveFailureCount++;
+        if (state == State.HALF_OPEN || consecutiveFailureCount >= failureThreshold)
+        {
+            openUntil(nowMillis + openMillis);
+        }
+    }
+
+    /**
+     * Records that a request ended without an outcome, such as when it was cancelled. If it was
+     * the trial request, the next request becomes the trial request instead.
+     */
+    synchronized void recordNoOutcome()
+    {
+        if (state == State.HALF_OPEN)
+        {
+            state = State.OPEN;
+        }
+    }
+
+    /**
+     * Opens the circuit until the given time, such as when TMDb asks to be left alone until then,
+     * unless it is already open for longer.
+     *
+     * @param untilMillis
+     *     time until which the circuit stays open
+     */
+    synchronized void openUntil(long untilMillis)
+    {
+        state = State.OPEN;
+        openUntilMillis = Math.max(openUntilMillis, untilMillis);
+    }
+
+    /**
+     * Returns the current state of the circuit.
+     *
+     * @return
+     *     state of the circuit
+     */
+    synchronized State getState()
+    {
+        return state;
+    }
+}
@@ -0,0 +1,340 @@
+package com.huyvuong.udacity.popularmovies.gateway;
+
+import com.google.gson.JsonObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request counts, latencies and response sizes recorded for a single TMDb endpoint, such as
+ * {@code 3/movie/{id}/reviews}. Latencies are in microseconds and sizes in bytes.
+ *
+ * The latency of a request is split into phases, each with its own histogram. The network phases
+ * are only recorded for requests that went to the network, not for those served from the HTTP
+ * cache alone.
+ */
+public class EndpointMetrics
+{
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong cacheHitCount = new AtomicLong();
+    private final AtomicLong conditionalCacheHitCount = new AtomicLong();
+    private final AtomicLong responseByteCount = new AtomicLong();
+    private final AtomicLong rateLimitRejectionCount = new AtomicLong();
+
+    private final LogLinearHistogram totalMicros = new LogLinearHistogram();
+    private final LogLinearHistogram dnsMicros = new LogLinearHistogram();
+    private final LogLinearHistogram connectMicros = new LogLinearHistogram();
+    private final LogLinearHistogram timeToFirstByteMicros = new LogLinearHistogram();
+    private final LogLinearHistogram bodyMicros = new LogLinearHistogram();
+    private final LogLinearHistogram responseBytes = new LogLinearHistogram();
+    private final LogLinearHistogram rateLimitWaitMicros = new LogLinearHistogram();
+    private final LogLinearHistogram rateLimitQueueDepth = new LogLinearHistogram();
+
+    /**
+     * Returns the number of requests made.
+     *
+     * @return
+     *     number of requests made, including failed ones
+     */
+    public long getRequestCount()
+    {
+        return requestCount.get();
+    }
+
+    /**
+     * Returns the number of requests that failed, either with an I/O error or with an HTTP status
+     * other than 2xx.
+     *
+     * @return
+     *     number of failed requests
+     */
+    public long getErrorCount()
+    {
+        return errorCount.get();
+    }
+
+    /**
+     * Returns the share of requests that failed.
+     *
+     * @return
+     *     error rate between 0 and 1, or 0 if no requests were made
+     */
+    public double getErrorRate()
+    {
+        long requests = requestCount.get();
+        return (requests > 0) ? (double) errorCount.get() / requests : 0.0;
+    }
+
+    /**
+     * Returns the number of requests served from the HTTP cache without going to the network.
+     *
+     * @return
+     *     number of cache hits
+     */
+    public long getCacheHitCount()
+    {
+        return cacheHitCount.get();
+    }
+
+    /**
+     * Returns the number of requests served from the HTTP cache after TMDb confirmed that the
+     * cached response was still current.
+     *
+     * @return
+     *     number of conditional cache hits
+     */
+    public long getConditionalCacheHitCount()
+    {
+        return conditionalCacheHitCount.get();
+    }
+
+    /**
+     * Returns the number of response body bytes read in total.
+     *
+     * @return
+     *     total response body bytes
+     */
+    public long getResponseByteCount()
+    {
+        return responseByteCount.get();
+    }
+
+    /**
+     * Returns the number of prefetch requests that the rate limiter dropped rather than sent.
+     *
+     * @return
+     *     number of rate-limited requests
+     */
+    public long getRateLimitRejectionCount()
+    {
+        return rateLimitRejectionCount.get();
+    }
+
+    /**
+     * Returns the histogram of the time from issuing a request to reading the last byte of its
+     * response body.
+     *
+     * @return
+     *     histogram of total latencies in microseconds
+     */
+    public LogLinearHistogram getTotalMicros()
+    {
+        return totalMicros;
+    }
+
+    /**
+     * Returns the histogram of the time spent resolving the host name of TMDb. Only requests that
+     * had to open a connection resolve it.
+     *
+     * @return
+     *     histogram of DNS lookup latencies in microseconds
+     */
+    public LogLinearHistogram getDnsMicros()
+    {
+        return dnsMicros;
+    }
+
+    /**
+     * Returns the histogram of the time from the last attempt at a request to having a connection
+     * to send it on, excluding DNS lookups. It covers the cache lookup and, if no pooled
+     * connection could be reused, the TCP and TLS handshakes, but neither the wait for a rate
+     * limit token nor the backoff before a retry.
+     *
+     * @return
+     *     histogram of connection latencies in microseconds
+     */
+    public LogLinearHistogram getConnectMicros()
+    {
+        return connectMicros;
+    }
+
+    /**
+     * Returns the histogram of the time from sending a request on a connection to receiving the
+     * response headers.
+     *
+     * @return
+     *     histogram of time-to-first-byte latencies in microseconds
+     */
+    public LogLinearHistogram getTimeToFirstByteMicros()
+    {
+        return timeToFirstByteMicros;
+    }
+
+    /**
+     * Returns the histogram of the time from receiving the response headers to reading the last
+     * byte of the response body.
+     *
+     * @return
+     *     histogram of body read latencies in microseconds
+     */
+    public LogLinearHistogram getBodyMicros()
+    {
+        return bodyMicros;
+    }
+
+    /**
+     * Returns the histogram of response body sizes.
+     *
+     * @return
+     *     histogram of response body sizes in bytes
+     */
+    public LogLinearHistogram getResponseBytes()
+    {
+        return responseBytes;
+    }
+
+    /**
+     * Returns the histogram of the time that requests sent to TMDb waited for a token from the
+     * rate limiter. This time is part of the total latency, and precedes every network phase.
+     *
+     * @return
+     *     histogram of rate limiter waits in microseconds
+     */
+    public LogLinearHistogram getRateLimitWaitMicros()
+    {
+        return rateLimitWaitMicros;
+    }
+
+    /**
+     * Returns the histogram of the number of requests already queued at the rate limiter when a
+     * request to be sent to TMDb arrived at it.
+     *
+     * @return
+     *     histogram of rate limiter queue depths
+     */
+    public LogLinearHistogram getRateLimitQueueDepth()
+    {
+        return rateLimitQueueDepth;
+    }
+
+    /**
+     * Returns a JSON object holding every count and histogram of this endpoint.
+     *
+     * @return
+     *     JSON dump of the metrics of this endpoint
+     */
+    public JsonObject toJson()
+    {
+        JsonObject json = new JsonObject();
+        json.addProperty("requests", getRequestCount());
+        json.addProperty("errors", getErrorCount());
+        json.addProperty("errorRate", getErrorRate());
+        json.addProperty("cacheHits", getCacheHitCount());
+        json.addProperty("conditionalCacheHits", getConditionalCacheHitCount());
+        json.addProperty("responseBytes", getResponseByteCount());
+        json.addProperty("rateLimitRejections", getRateLimitRejectionCount());
+
+        JsonObject latencies = new JsonObject();
+        latencies.add("total", totalMicros.toJson());
+        latencies.add("dns", dnsMicros.toJson());
+        latencies.add("connect", connectMicros.toJson());
+        latencies.add("timeToFirstByte", timeToFirstByteMicros.toJson());
+        latencies.add("body", bodyMicros.toJson());
+        latencies.add("rateLimitWait", rateLimitWaitMicros.toJson());
+        json.add("latencyMicros", latencies);
+        json.add("responseSizeBytes", responseBytes.toJson());
+        json.add("rateLimitQueueDepth", rateLimitQueueDepth.toJson());
+        return json;
+    }
+
+    /**
+     * Records that a request was issued.
+     */
+    void recordRequest()
+    {
+        requestCount.incrementAndGet();
+    }
+
+    /**
+     * Records that a request failed.
+     */
+    void recordError()
+    {
+        errorCount.incrementAndGet();
+    }
+
+    /**
+     * Records that a request was served from the HTTP cache.
+     *
+     * @param isConditional
+     *     true if TMDb was asked whether the cached response was current; false if it was not
+     *     contacted at all
+     */
+    void recordCacheHit(boolean isConditional)
+    {
+        (isConditional ? conditionalCacheHitCount : cacheHitCount).incrementAndGet();
+    }
+
+    /**
+     * Records the network phases of a request that went to the network.
+     *
+     * @param dnsNanos
+     *     time spent resolving host names
+     * @param connectNanos
+     *     time spent obtaining a connection, excluding DNS lookups
+     * @param timeToFirstByteNanos
+     *     time from sending the request to receiving the response headers
+     */
+    void recordNetworkPhases(long dnsNanos, long connectNanos, long timeToFirstByteNanos)
+    {
+        if (dnsNanos > 0)
+        {
+            dnsMicros.record(toMicros(dnsNanos));
+        }
+        connectMicros.record(toMicros(connectNanos));
+        timeToFirstByteMicros.record(toMicros(timeToFirstByteNanos));
+    }
+
+    /**
+     * Records the completion of reading a response body.
+     *
+     * @param totalNanos
+     *     time from issuing the request to reading the last byte of the response body
+     * @param bodyNanos
+     *     time from receiving the response headers to reading the last byte of the response body
+     * @param byteCount
+     *     number of response body bytes read
+     */
+    void recordResponse(long totalNanos, long bodyNanos, long byteCount)
+    {
+        totalMicros.record(toMicros(totalNanos));
+        bodyMicros.record(toMicros(bodyNanos));
+        responseBytes.record(byteCount);
+        responseByteCount.addAndGet(byteCount);
+    }
+
+    /**
+     * Records the number of requests queued at the rate limiter ahead of a request.
+     *
+     * @param queueDepth
+     *     number of requests queued ahead
+     */
+    void recordRateLimitQueueDepth(int queueDepth)
+    {
+        rateLimitQueueDepth.record(queueDepth);
+    }
+
+    /**
+     * Records that a request obtained a token from the rate limiter.
+     *
+     * @param waitNanos
+     *     time spent waiting for the token
+     */
+    void recordRateLimitWait(long waitNanos)
+    {
+        rateLimitWaitMicros.record(toMicros(waitNanos));
+    }
+
+    /**
+     * Records that the rate limiter dropped a request rather than sending it.
+     */
+    void recordRateLimitRejection()
+    {
+        rateLimitRejectionCount.incrementAndGet();
+    }
+
+    private static long toMicros(long nanos)
+    {
+        return nanos / 1000L;
+    }
+}
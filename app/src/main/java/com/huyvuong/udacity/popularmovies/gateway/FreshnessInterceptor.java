@@ -0,0 +1,39 @@
+package com.huyvuong.udacity.popularmovies.gateway;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Network interceptor that replaces the caching headers TMDb sends with the freshness rules from
+ * {@link TmdbCachePolicy}, so that the on-disk HTTP cache keeps each kind of response for as long
+ * as it is useful to this app.
+ */
+class FreshnessInterceptor
+        implements Interceptor
+{
+    private static final String HEADER_CACHE_CONTROL = "Cache-Control";
+    private static final String HEADER_PRAGMA = "Pragma";
+    private static final String HEADER_EXPIRES = "Expires";
+
+    @Override
+    public Response intercept(Chain chain) throws IOException
+    {
+        Request request = chain.request();
+        Response response = chain.proceed(request);
+
+        TmdbCachePolicy policy = TmdbCachePolicy.forUrl(request.url());
+        if (policy == null || !"GET".equals(request.method()) || !response.isSuccessful())
+        {
+            return response;
+        }
+
+        return response.newBuilder()
+                       .removeHeader(HEADER_PRAGMA)
+                       .removeHeader(HEADER_EXPIRES)
+                       .header(HEADER_CACHE_CONTROL, policy.toCacheControlHeader())
+                       .build();
+    }
+}
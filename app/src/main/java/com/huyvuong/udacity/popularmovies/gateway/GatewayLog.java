@@ -0,0 +1,280 @@
+package com.huyvuong.udacity.popularmovies.gateway;
+
+import android.util.Log;
+
+import com.huyvuong.udacity.popularmovies.BuildConfig;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import rx.Observable;
+import rx.functions.Func1;
+
+/**
+ * Level-gated log for the calls that {@link TmdbGateway} makes against TMDb. Messages go to a
+ * pluggable {@link Sink}, which writes to logcat by default.
+ *
+ * Each call is logged at three levels:
+ *
+ * <ul>
+ * <li>{@link Log#DEBUG}: the request, when it is issued.</li>
+ * <li>{@link Log#INFO}: a summary of the response, such as the page number and the number of
+ * results. Only one in every {@code summarySampleInterval} summaries is logged.</li>
+ * <li>{@link Log#VERBOSE}: every item of the response, such as every movie title. This is only
+ * compiled into builds where {@code BuildConfig.LOG_TMDB_RESPONSE_ITEMS} is set.</li>
+ * </ul>
+ *
+ * Errors are logged at {@link Log#ERROR}. Logging operators are only attached to a call for the
+ * levels that are enabled, and no message is built for a level that is not, so disabled levels
+ * cost nothing per response. When no level is enabled, the call is returned as it is, without
+ * boxing its arguments.
+ */
+public class GatewayLog
+{
+    /**
+     * Destination of the messages of a {@link GatewayLog}.
+     */
+    public interface Sink
+    {
+        /**
+         * Writes the given message.
+         *
+         * @param priority
+         *     priority of the message, one of the {@link Log} priority constants
+         * @param tag
+         *     tag of the message
+         * @param message
+         *     message to write
+         * @param error
+         *     error to write along with the message; may be null
+         */
+        void println(int priority, String tag, String message, Throwable error);
+    }
+
+    /**
+     * Sink writing messages to logcat.
+     */
+    public static final Sink LOGCAT = (priority, tag, message, error) ->
+            Log.println(priority,
+                        tag,
+                        (error != null) ?
+                        message + '\n' + Log.getStackTraceString(error) :
+                        message);
+
+    private final String tag;
+    private final int minPriority;
+    private final int summarySampleInterval;
+    private final AtomicLong summaryCount = new AtomicLong();
+    private volatile Sink sink = LOGCAT;
+
+    /**
+     * Constructs a new log writing to logcat.
+     *
+     * @param tag
+     *     tag of every message
+     * @param minPriority
+     *     lowest priority to log, one of the {@link Log} priority constants
+     * @param summarySampleInterval
+     *     log one in every this many response summaries; 1 logs all of them
+     */
+    GatewayLog(String tag, int minPriority, int summarySampleInterval)
+    {
+        this.tag = tag;
+        this.minPriority = minPriority;
+        this.summarySampleInterval = Math.max(summarySampleInterval, 1);
+    }
+
+    /**
+     * Replaces the destination of the messages of this log.
+     *
+     * @param sink
+     *     sink to write messages to from now on
+     */
+    public void setSink(Sink sink)
+    {
+        this.sink = sink;
+    }
+
+    /**
+     * Returns whether messages of the given priority are logged.
+     *
+     * @param priority
+     *     one of the {@link Log} priority constants
+     * @return
+     *     true if messages of the given priority are logged; false otherwise
+     */
+    public boolean isLoggable(int priority)
+    {
+        return priority >= minPriority;
+    }
+
+    /**
+     * Returns the given call with logging attached for every enabled level, for a gateway method
+     * taking a single ID.
+     *
+     * @param call
+     *     call against TMDb, which has not been subscribed to yet
+     * @param summarizer
+     *     builds the summary of a response
+     * @param itemLister
+     *     builds the list of every item of a response
+     * @param methodName
+     *     name of the gateway method making the call
+     * @param id
+     *     ID the gateway method was called with
+     * @param <T>
+     *     type of the response of the call
+     * @return
+     *     call that logs its request, response and error, or the given call if no level is enabled
+     */
+    <T> Observable<T> logCall(Observable<T> call,
+                              Func1<T, String> summarizer,
+                              Func1<T, String> itemLister,
+                              String methodName,
+                              int id)
+    {
+        // Errors have the highest priority logged, so no level is enabled if they are not.
+        if (!isLoggable(Log.ERROR))
+        {
+            return call;
+        }
+        return attachLogging(call, summarizer, itemLister, methodName, new Object[] {id});
+    }
+
+    /**
+     * Returns the given call with logging attached for every enabled level, for a gateway method
+     * taking an ID and a page number.
+     *
+     * @param call
+     *     call against TMDb, which has not been subscribed to yet
+     * @param summarizer
+     *     builds the summary of a response
+     * @param itemLister
+     *     builds the list of every item of a response
+     * @param methodName
+     *     name of the gateway method making the call
+     * @param id
+     *     ID the gateway method was called with
+     * @param pageNumber
+     *     page number the gateway method was called with
+     * @param <T>
+     *     type of the response of the call
+     * @return
+     *     call that logs its request, response and error, or the given call if no level is enabled
+     */
+    <T> Observable<T> logCall(Observable<T> call,
+                              Func1<T, String> summarizer,
+                              Func1<T, String> itemLister,
+                              String methodName,
+                              int id,
+                              int pageNumber)
+    {
+        if (!isLoggable(Log.ERROR))
+        {
+            return call;
+        }
+        return attachLogging(call,
+                             summarizer,
+                             itemLister,
+                             methodName,
+                             new Object[] {id, pageNumber});
+    }
+
+    /**
+     * Returns the given call with logging attached for every enabled level, for a gateway method
+     * taking a string, such as a sorting criteria or search query, and a page number.
+     *
+     * @param call
+     *     call against TMDb, which has not been subscribed to yet
+     * @param summarizer
+     *     builds the summary of a response
+     * @param itemLister
+     *     builds the list of every item of a response
+     * @param methodName
+     *     name of the gateway method making the call
+     * @param key
+     *     string the gateway method was called with
+     * @param pageNumber
+     *     page number the gateway method was called with
+     * @param <T>
+     *     type of the response of the call
+     * @return
+     *     call that logs its request, response and error, or the given call if no level is enabled
+     */
+    <T> Observable<T> logCall(Observable<T> call,
+                              Func1<T, String> summarizer,
+                              Func1<T, String> itemLister,
+                              String methodName,
+                              String key,
+                              int pageNumber)
+    {
+        if (!isLoggable(Log.ERROR))
+        {
+            return call;
+        }
+        return attachLogging(call,
+                             summarizer,
+                             itemLister,
+                             methodName,
+                             new Object[] {key, pageNumber});
+    }
+
+    /**
+     * Returns the given call with logging attached for every enabled level. Only called once some
+     * level is known to be enabled, so that the arguments are never boxed for a disabled log.
+     */
+    private <T> Observable<T> attachLogging(Observable<T> call,
+                                            Func1<T, String> summarizer,
+                                            Func1<T, String> itemLister,
+                                            String methodName,
+                                            Object[] arguments)
+    {
+        Observable<T> loggedCall = call;
+        if (isLoggable(Log.DEBUG))
+        {
+            loggedCall = loggedCall.doOnSubscribe(
+                    () -> println(Log.DEBUG,
+                                  TmdbLogFormatter.formatRequest(methodName, arguments),
+                                  null));
+        }
+        if (isLoggable(Log.INFO))
+        {
+            loggedCall = loggedCall.doOnNext(
+                    response ->
+                    {
+                        if (summaryCount.getAndIncrement() % summarySampleInterval == 0)
+                        {
+                            println(Log.INFO,
+                                    TmdbLogFormatter.formatResponse(
+                                            methodName,
+                                            summarizer.call(response),
+                                            arguments),
+                                    null);
+                        }
+                    });
+        }
+        // Compiled out of builds that do not log response items.
+        if (BuildConfig.LOG_TMDB_RESPONSE_ITEMS && isLoggable(Log.VERBOSE))
+        {
+            loggedCall = loggedCall.doOnNext(
+                    response -> println(Log.VERBOSE,
+                                        TmdbLogFormatter.formatResponse(
+                                                methodName,
+                                                itemLister.call(response),
+                                                arguments),
+                                        null));
+        }
+        if (isLoggable(Log.ERROR))
+        {
+            loggedCall = loggedCall.doOnError(
+                    error -> println(Log.ERROR,
+                                     TmdbLogFormatter.formatError(methodName, error, arguments),
+                                     error));
+        }
+        return loggedCall;
+    }
+
+    private void println(int priority, String message, Throwable error)
+    {
+        sink.println(priority, tag, message, error);
+    }
+}
@@ -0,0 +1,191 @@
+package com.huyvuong.udacity.popularmovies.gateway;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of non-negative long values, such as latencies in microseconds or sizes in bytes, in
+ * the style of an HDR histogram. Values are counted in buckets whose width grows with the
+ * magnitude of the value: every power of two is split into {@link #SUB_BUCKET_COUNT} equal
+ * buckets, so every recorded value is off by less than 1/16th of itself, from zero up to
+ * {@code Long.MAX_VALUE}, in a fixed amount of memory.
+ *
+ * Recording is lock-free and safe from any thread. Reads are not atomic with respect to
+ * concurrent recordings, which may or may not be reflected in them.
+ */
+public class LogLinearHistogram
+{
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records the given value. Negative values are recorded as zero.
+     *
+     * @param value
+     *     value to record
+     */
+    public void record(long value)
+    {
+        long recordedValue = Math.max(value, 0L);
+        counts.incrementAndGet(bucketIndexOf(recordedValue));
+        totalCount.incrementAndGet();
+        sum.addAndGet(recordedValue);
+
+        long currentMax = max.get();
+        while (recordedValue > currentMax && !max.compareAndSet(currentMax, recordedValue))
+        {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Returns the number of values recorded.
+     *
+     * @return
+     *     number of values recorded
+     */
+    public long getCount()
+    {
+        return totalCount.get();
+    }
+
+    /**
+     * Returns the largest value recorded.
+     *
+     * @return
+     *     largest value recorded, or 0 if none were recorded
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * Returns the mean of the values recorded.
+     *
+     * @return
+     *     mean of the values recorded, or 0 if none were recorded
+     */
+    public double getMean()
+    {
+        long count = totalCount.get();
+        return (count > 0) ? (double) sum.get() / count : 0.0;
+    }
+
+    /**
+     * Returns the value at the given percentile, that is, the largest value that the given
+     * percentage of the recorded values are less than or equal to, within the precision of its
+     * bucket.
+     *
+     * @param percentile
+     *     percentile between 0 and 100, such as 50 for the median or 99 for the 99th percentile
+     * @return
+     *     value at the given percentile, or 0 if none were recorded
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        long count = totalCount.get();
+        if (count == 0)
+        {
+            return 0L;
+        }
+
+        // Walk the buckets until the given share of the values has been seen.
+        double share = Math.min(percentile, 100.0) / 100.0;
+        long targetCount = Math.max(1L, (long) Math.ceil(count * share));
+        long seenCount = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            seenCount += counts.get(i);
+            if (seenCount >= targetCount)
+            {
+                return Math.min(highestValueIn(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Returns a JSON object summarizing this histogram, with its count, mean, maximum, common
+     * percentiles, and the lowest value and count of every bucket holding any values.
+     *
+     * @return
+     *     JSON summary of this histogram
+     */
+    public JsonObject toJson()
+    {
+        JsonObject json = new JsonObject();
+        json.addProperty("count", getCount());
+        json.addProperty("mean", getMean());
+        json.addProperty("max", getMax());
+        json.addProperty("p50", getValueAtPercentile(50.0));
+        json.addProperty("p90", getValueAtPercentile(90.0));
+        json.addProperty("p99", getValueAtPercentile(99.0));
+        json.addProperty("p999", getValueAtPercentile(99.9));
+
+        JsonArray buckets = new JsonArray();
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            long bucketCount = counts.get(i);
+            if (bucketCount > 0)
+            {
+                JsonArray bucket = new JsonArray();
+                bucket.add(lowestValueIn(i));
+                bucket.add(bucketCount);
+                buckets.add(bucket);
+            }
+        }
+        json.add("buckets", buckets);
+        return json;
+    }
+
+    /**
+     * Returns the index of the bucket that counts the given non-negative value. Values below
+     * {@link #SUB_BUCKET_COUNT} get a bucket each; above that, every power of two is split into
+     * {@link #SUB_BUCKET_COUNT} buckets by the bits following its highest bit.
+     */
+    private static int bucketIndexOf(long value)
+    {
+        if (value < SUB_BUCKET_COUNT)
+        {
+            return (int) value;
+        }
+        int highestBit = (Long.SIZE - 1) - Long.numberOfLeadingZeros(value);
+        int shift = highestBit - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * Returns the lowest value counted by the bucket at the given index.
+     */
+    private static long lowestValueIn(int bucketIndex)
+    {
+        if (bucketIndex < SUB_BUCKET_COUNT)
+        {
+            return bucketIndex;
+        }
+        int shift = bucketIndex / SUB_BUCKET_COUNT - 1;
+        long subBucket = bucketIndex % SUB_BUCKET_COUNT;
+        return (SUB_BUCKET_COUNT + subBucket) << shift;
+    }
+
+    /**
+     * Returns the highest value counted by the bucket at the given index.
+     */
+    private static long highestValueIn(int bucketIndex)
+    {
+        return (bucketIndex + 1 < BUCKET_COUNT) ?
+               lowestValueIn(bucketIndex + 1) - 1 :
+               Long.MAX_VALUE;
+    }
+}
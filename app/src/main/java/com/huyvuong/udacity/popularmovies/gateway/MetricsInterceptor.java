@@ -0,0 +1,287 @@
+package com.huyvuong.udacity.popularmovies.gateway;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.Dns;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * Interceptor that records the latency phases, response size and cache status of every TMDb
+ * request into {@link TmdbMetrics}.
+ *
+ * Install it as the first application interceptor, install {@link #attemptInterceptor()} as the
+ * application interceptor right after any that wait or retry, install
+ * {@link #networkInterceptor()} as a network interceptor, and wrap the client's DNS with
+ * {@link #timeDns(Dns)}. OkHttp runs all of them on the thread executing the call, so the phases
+ * of the call in flight on a thread are collected in a thread-local {@link Timings}:
+ *
+ * <ul>
+ * <li>DNS lookups are timed by the wrapped DNS.</li>
+ * <li>The connect phase starts when the last attempt passes the attempt interceptor, so that rate
+ * limit waits and retry backoff are not counted in it, and lasts until the network interceptor
+ * runs, which OkHttp only does once it holds a connection.</li>
+ * <li>The time to first byte lasts until the network interceptor receives the response
+ * headers.</li>
+ * <li>The body phase lasts until the last byte of the response body is read, or the body is
+ * closed.</li>
+ * </ul>
+ */
+class MetricsInterceptor
+        implements Interceptor
+{
+    private final ThreadLocal<Timings> currentTimings = new ThreadLocal<>();
+    private final TmdbMetrics metrics;
+
+    /**
+     * Constructs a new interceptor recording into the given metrics.
+     *
+     * @param metrics
+     *     metrics to record every request into
+     */
+    MetricsInterceptor(TmdbMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException
+    {
+        Request request = chain.request();
+        EndpointMetrics endpointMetrics = metrics.forUrl(request.url());
+        endpointMetrics.recordRequest();
+
+        // Save the timings of any call that this one is nested in.
+        Timings outerTimings = currentTimings.get();
+        Timings timings = new Timings(System.nanoTime());
+        currentTimings.set(timings);
+        Response response;
+        try
+        {
+            response = chain.proceed(request);
+        }
+        catch (IOException e)
+        {
+            endpointMetrics.recordError();
+            throw e;
+        }
+        finally
+        {
+            currentTimings.set(outerTimings);
+        }
+        long headersNanos = System.nanoTime();
+
+        if (!response.isSuccessful())
+        {
+            endpointMetrics.recordError();
+        }
+        if (response.cacheResponse() != null)
+        {
+            endpointMetrics.recordCacheHit(response.networkResponse() != null);
+        }
+        if (timings.networkStartNanos > 0)
+        {
+            endpointMetrics.recordNetworkPhases(
+                    timings.dnsNanos,
+                    timings.networkStartNanos - timings.attemptStartNanos - timings.dnsNanos,
+                    timings.networkHeadersNanos - timings.networkStartNanos);
+        }
+
+        ResponseBody body = response.body();
+        if (body == null)
+        {
+            endpointMetrics.recordResponse(headersNanos - timings.startNanos, 0L, 0L);
+            return response;
+        }
+        return response.newBuilder()
+                       .body(new MeteredResponseBody(body,
+                                                     endpointMetrics,
+                                                     timings.startNanos,
+                                                     headersNanos))
+                       .build();
+    }
+
+    /**
+     * Returns the application interceptor that marks when a call makes an attempt at a request,
+     * discarding the DNS time of any earlier attempt.
+     *
+     * @return
+     *     application interceptor for the client that this interceptor is installed in
+     */
+    Interceptor attemptInterceptor()
+    {
+        return chain ->
+        {
+            Timings timings = currentTimings.get();
+            if (timings != null)
+            {
+                timings.attemptStartNanos = System.nanoTime();
+                timings.dnsNanos = 0L;
+            }
+            return chain.proceed(chain.request());
+        };
+    }
+
+    /**
+     * Returns the network interceptor that marks when a call obtained its connection and when it
+     * received the response headers.
+     *
+     * @return
+     *     network interceptor for the client that this interceptor is installed in
+     */
+    Interceptor networkInterceptor()
+    {
+        return chain ->
+        {
+            Timings timings = currentTimings.get();
+            if (timings == null)
+            {
+                return chain.proceed(chain.request());
+            }
+
+            timings.networkStartNanos = System.nanoTime();
+            Response response = chain.proceed(chain.request());
+            timings.networkHeadersNanos = System.nanoTime();
+            return response;
+        };
+    }
+
+    /**
+     * Returns a DNS that resolves host names with the given DNS and adds the time it took to the
+     * call in flight.
+     *
+     * @param dns
+     *     DNS to resolve host names with
+     * @return
+     *     timed DNS for the client that this interceptor is installed in
+     */
+    Dns timeDns(Dns dns)
+    {
+        return hostname ->
+        {
+            long startNanos = System.nanoTime();
+            try
+            {
+                return dns.lookup(hostname);
+            }
+            finally
+            {
+                Timings timings = currentTimings.get();
+                if (timings != null)
+                {
+                    timings.dnsNanos += System.nanoTime() - startNanos;
+                }
+            }
+        };
+    }
+
+    /**
+     * Points in time of a call in flight, from {@link System#nanoTime()}. Only touched by the
+     * thread executing the call.
+     */
+    private static class Timings
+    {
+        final long startNanos;
+        long attemptStartNanos;
+        long dnsNanos;
+        long networkStartNanos;
+        long networkHeadersNanos;
+
+        Timings(long startNanos)
+        {
+            this.startNanos = startNanos;
+            this.attemptStartNanos = startNanos;
+        }
+    }
+
+    /**
+     * Response body that counts the bytes read from it, and records the response into the
+     * endpoint's metrics once it is read to the end or closed, whichever comes first.
+     */
+    private static class MeteredResponseBody
+            extends ResponseBody
+    {
+        private final ResponseBody body;
+        private final EndpointMetrics endpointMetrics;
+        private final long startNanos;
+        private final long headersNanos;
+        private final AtomicBoolean isRecorded = new AtomicBoolean();
+        private long byteCount;
+        private BufferedSource source;
+
+        MeteredResponseBody(ResponseBody body,
+                            EndpointMetrics endpointMetrics,
+                            long startNanos,
+                            long headersNanos)
+        {
+            this.body = body;
+            this.endpointMetrics = endpointMetrics;
+            this.startNanos = startNanos;
+            this.headersNanos = headersNanos;
+        }
+
+        @Override
+        public MediaType contentType()
+        {
+            return body.contentType();
+        }
+
+        @Override
+        public long contentLength()
+        {
+            return body.contentLength();
+        }
+
+        @Override
+        public BufferedSource source()
+        {
+            if (source == null)
+            {
+                source = Okio.buffer(new ForwardingSource(body.source())
+                {
+                    @Override
+                    public long read(Buffer sink, long count) throws IOException
+                    {
+                        long read = super.read(sink, count);
+                        if (read == -1)
+                        {
+                            recordResponse();
+                        }
+                        else
+                        {
+                            byteCount += read;
+                        }
+                        return read;
+                    }
+
+                    @Override
+                    public void close() throws IOException
+                    {
+                        recordResponse();
+                        super.close();
+                    }
+                });
+            }
+            return source;
+        }
+
+        private void recordResponse()
+        {
+            if (isRecorded.compareAndSet(false, true))
+            {
+                long endNanos = System.nanoTime();
+                endpointMetrics.recordResponse(endNanos - startNanos,
+                                               endNanos - headersNanos,
+                                               byteCount);
+            }
+        }
+    }
+}
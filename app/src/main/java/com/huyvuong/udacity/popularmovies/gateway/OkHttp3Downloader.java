@@ -0,0 +1,97 @@
+package com.huyvuong.udacity.popularmovies.gateway;
+
+import android.net.Uri;
+import android.util.Log;
+
+import com.squareup.picasso.Downloader;
+import com.squareup.picasso.NetworkPolicy;
+
+import java.io.IOException;
+
+import okhttp3.CacheControl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+
+/**
+ * Picasso downloader that loads images through an OkHttp 3 client, so that images share the
+ * connection pool and dispatcher of the rest of the app. Picasso's network policies are mapped
+ * onto the client's HTTP cache.
+ *
+ * Picasso 2.5.2 only ships a downloader for OkHttp 2, hence this class.
+ */
+public class OkHttp3Downloader
+        implements Downloader
+{
+    private static final String LOG_TAG = OkHttp3Downloader.class.getSimpleName();
+
+    private final OkHttpClient client;
+
+    /**
+     * Constructs a new downloader loading images through the given client.
+     *
+     * @param client
+     *     client to load images through, normally with its own disk cache
+     */
+    public OkHttp3Downloader(OkHttpClient client)
+    {
+        this.client = client;
+    }
+
+    @Override
+    public Response load(Uri uri, int networkPolicy) throws IOException
+    {
+        Request.Builder requestBuilder = new Request.Builder().url(uri.toString());
+        if (networkPolicy != 0)
+        {
+            if (NetworkPolicy.isOfflineOnly(networkPolicy))
+            {
+                requestBuilder.cacheControl(CacheControl.FORCE_CACHE);
+            }
+            else
+            {
+                CacheControl.Builder cacheControlBuilder = new CacheControl.Builder();
+                if (!NetworkPolicy.shouldReadFromDiskCache(networkPolicy))
+                {
+                    cacheControlBuilder.noCache();
+                }
+                if (!NetworkPolicy.shouldWriteToDiskCache(networkPolicy))
+                {
+                    cacheControlBuilder.noStore();
+                }
+                requestBuilder.cacheControl(cacheControlBuilder.build());
+            }
+        }
+
+        // Qualified, since Response alone refers to Picasso's Downloader.Response in here.
+        okhttp3.Response response = client.newCall(requestBuilder.build()).execute();
+        if (!response.isSuccessful())
+        {
+            response.body().close();
+            throw new ResponseException(response.code() + " " + response.message(),
+                                        networkPolicy,
+                                        response.code());
+        }
+
+        ResponseBody body = response.body();
+        return new Response(body.byteStream(),
+                            response.cacheResponse() != null,
+                            body.contentLength());
+    }
+
+    @Override
+    public void shutdown()
+    {
+        if (client.cache() != null)
+        {
+            try
+            {
+                client.cache().close();
+            }
+            catch (IOException e)
+            {
+                Log.w(LOG_TAG, "Failed to close the image cache", e);
+            }
+        }
+    }
+}
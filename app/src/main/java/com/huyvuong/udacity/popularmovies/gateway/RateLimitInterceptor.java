@@ -0,0 +1,115 @@
+package com.huyvuong.udacity.popularmovies.gateway;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.CacheControl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Application interceptor that keeps the requests sent to TMDb within its request quota, by taking
+ * a token from a {@link TokenBucketRateLimiter} before every request goes out.
+ *
+ * Requests that the HTTP cache can answer on its own never wait for a token: a request is first
+ * tried against the cache alone, and only takes a token if that fails. Requests that may only be
+ * answered from the cache skip the limiter altogether.
+ *
+ * The priority of a request is read from its {@link #HEADER_PRIORITY} header, one of
+ * {@link TmdbGateway.RequestPriority}, which is removed before the request goes on. Requests
+ * without it are treated as visible. The number of requests queued ahead of each request, its
+ * wait for a token, and every rejected prefetch are recorded into {@link TmdbMetrics}.
+ *
+ * Install it after {@link ResilienceInterceptor}, so that every retry takes a token of its own.
+ */
+class RateLimitInterceptor
+        implements Interceptor
+{
+    /**
+     * Header carrying the priority of a request, from {@link TmdbGateway.RequestPriority}.
+     */
+    static final String HEADER_PRIORITY = "X-Tmdb-Priority";
+
+    private final TokenBucketRateLimiter rateLimiter;
+    private final TmdbMetrics metrics;
+
+    /**
+     * Constructs a new interceptor taking tokens from the given rate limiter.
+     *
+     * @param rateLimiter
+     *     rate limiter to take a token from for every request sent to TMDb
+     * @param metrics
+     *     metrics to record the waits and rejections of every request into
+     */
+    RateLimitInterceptor(TokenBucketRateLimiter rateLimiter, TmdbMetrics metrics)
+    {
+        this.rateLimiter = rateLimiter;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException
+    {
+        Request request = chain.request();
+        boolean isPrefetch =
+                TmdbGateway.RequestPriority.PREFETCH.equals(request.header(HEADER_PRIORITY));
+        request = request.newBuilder().removeHeader(HEADER_PRIORITY).build();
+
+        CacheControl cacheControl = request.cacheControl();
+        if (cacheControl.onlyIfCached())
+        {
+            return chain.proceed(request);
+        }
+
+        // Try the cache alone first, unless the caller insists on going to the network.
+        if (!cacheControl.noCache())
+        {
+            Response cachedResponse = chain.proceed(
+                    request.newBuilder().cacheControl(asCacheOnly(cacheControl)).build());
+            if (cachedResponse.code() != HttpURLConnection.HTTP_GATEWAY_TIMEOUT)
+            {
+                return cachedResponse;
+            }
+            cachedResponse.body().close();
+        }
+
+        EndpointMetrics endpointMetrics = metrics.forUrl(request.url());
+        endpointMetrics.recordRateLimitQueueDepth(rateLimiter.getQueueDepth(isPrefetch));
+        long startNanos = System.nanoTime();
+        try
+        {
+            rateLimiter.acquire(isPrefetch);
+        }
+        catch (RateLimitedException e)
+        {
+            endpointMetrics.recordRateLimitRejection();
+            throw e;
+        }
+        endpointMetrics.recordRateLimitWait(System.nanoTime() - startNanos);
+        return chain.proceed(request);
+    }
+
+    /**
+     * Returns the given cache control changed to only accept responses from the cache, keeping
+     * its limits on their age.
+     */
+    private static CacheControl asCacheOnly(CacheControl cacheControl)
+    {
+        CacheControl.Builder cacheOnlyBuilder = new CacheControl.Builder().onlyIfCached();
+        if (cacheControl.maxAgeSeconds() != -1)
+        {
+            cacheOnlyBuilder.maxAge(cacheControl.maxAgeSeconds(), TimeUnit.SECONDS);
+        }
+        if (cacheControl.maxStaleSeconds() != -1)
+        {
+            cacheOnlyBuilder.maxStale(cacheControl.maxStaleSeconds(), TimeUnit.SECONDS);
+        }
+        if (cacheControl.minFreshSeconds() != -1)
+        {
+            cacheOnlyBuilder.minFresh(cacheControl.minFreshSeconds(), TimeUnit.SECONDS);
+        }
+        return cacheOnlyBuilder.build();
+    }
+}
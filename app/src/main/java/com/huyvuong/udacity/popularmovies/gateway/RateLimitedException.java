@@ -0,0 +1,25 @@
+package com.huyvuong.udacity.popularmovies.gateway;
+
+import java.io.IOException;
+
+/**
+ * Signals that a low-priority TMDb request was dropped by the client-side rate limiter rather than
+ * sent, because TMDb's request quota was used up by more important requests. Nothing went wrong,
+ * so the request may simply be made again later.
+ */
+public class RateLimitedException
+        extends IOException
+{
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new exception with the given detail message.
+     *
+     * @param message
+     *     detail message describing the dropped request
+     */
+    RateLimitedException(String message)
+    {
+        super(message);
+    }
+}
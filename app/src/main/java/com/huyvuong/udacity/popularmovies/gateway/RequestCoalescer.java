@@ -0,0 +1,91 @@
+package com.huyvuong.udacity.popularmovies.gateway;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rx.functions.Func0;
+import rx.observables.ConnectableObservable;
+
+/**
+ * Single-flight layer for gateway requests. While a request for a given key is in flight, every
+ * caller asking for the same key receives the same {@code ConnectableObservable} rather than
+ * issuing another HTTP call. Because the gateway's observables replay their result, late
+ * subscribers still receive the response. The key is released once the request terminates, so the
+ * next call after that goes back to the network (or the HTTP cache).
+ */
+class RequestCoalescer
+{
+    private final Map<String, ConnectableObservable<?>> inFlightRequests = new HashMap<>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Returns the in-flight observable for the given key if there is one. Otherwise, creates one
+     * with the given factory, registers it as in flight until it terminates, and returns it.
+     *
+     * Callers are still expected to call {@code connect()} on the returned observable; connecting
+     * an observable that is already connected does not issue another request.
+     *
+     * @param key
+     *     identifies the request, including all of its parameters
+     * @param requestFactory
+     *     creates the observable for the request if none is in flight
+     * @param <T>
+     *     type of the response emitted by the observable
+     * @return
+     *     observable shared by every concurrent caller with the same key
+     */
+    @SuppressWarnings("unchecked")
+    synchronized <T> ConnectableObservable<T> coalesce(
+            String key,
+            Func0<ConnectableObservable<T>> requestFactory)
+    {
+        ConnectableObservable<T> inFlightRequest =
+                (ConnectableObservable<T>) inFlightRequests.get(key);
+        if (inFlightRequest != null)
+        {
+            hitCount.incrementAndGet();
+            return inFlightRequest;
+        }
+
+        missCount.incrementAndGet();
+        ConnectableObservable<T> request = requestFactory.call();
+        inFlightRequests.put(key, request);
+        request.subscribe(
+                response -> {},
+                error -> release(key, request),
+                () -> release(key, request));
+        return request;
+    }
+
+    /**
+     * Returns the number of calls that were handed an already in-flight request.
+     *
+     * @return
+     *     number of coalesced calls
+     */
+    long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of calls that had to start a new request.
+     *
+     * @return
+     *     number of calls that started a new request
+     */
+    long getMissCount()
+    {
+        return missCount.get();
+    }
+
+    private synchronized void release(String key, ConnectableObservable<?> request)
+    {
+        if (inFlightRequests.get(key) == request)
+        {
+            inFlightRequests.remove(key);
+        }
+    }
+}
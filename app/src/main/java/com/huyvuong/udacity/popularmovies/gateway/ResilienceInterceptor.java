@@ -0,0 +1,338 @@
+package com.huyvuong.udacity.popularmovies.gateway;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.CacheControl;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Application interceptor that retries failed TMDb GET requests and stops calling endpoints that
+ * keep failing.
+ *
+ * A GET request that fails with an I/O error, an HTTP 429 or an HTTP 5xx response is retried up to
+ * a maximum number of attempts. Before each retry, it waits for as long as the
+ * {@code Retry-After} header of the response asks, or otherwise for an exponentially growing delay
+ * with random jitter, so that clients do not retry in lockstep. If TMDb asks to wait longer than
+ * the maximum delay, the response is returned as is.
+ *
+ * Every endpoint, as grouped by {@link TmdbMetrics}, has its own {@link CircuitBreaker}, which
+ * opens once requests failed several times in a row, or when TMDb asks to wait. While it is open,
+ * requests are answered from the HTTP cache only, regardless of age, and fail with HTTP 504 if
+ * nothing is cached, without contacting TMDb.
+ *
+ * Install it after {@link StaleWhileRevalidateInterceptor}, so that the cache control it sets on
+ * short-circuited requests is not overridden.
+ */
+class ResilienceInterceptor
+        implements Interceptor
+{
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int HTTP_SERVER_ERROR = 500;
+    private static final String HEADER_RETRY_AFTER = "Retry-After";
+
+    // OkHttp fails calls that were cancelled with an IOException with this message.
+    private static final String MESSAGE_CANCELED = "Canceled";
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final Random random;
+    private final Map<String, CircuitBreaker> circuitBreakers = new HashMap<>();
+
+    private ResilienceInterceptor(Builder builder)
+    {
+        this.maxAttempts = builder.maxAttempts;
+        this.baseDelayMillis = builder.baseDelayMillis;
+        this.maxDelayMillis = builder.maxDelayMillis;
+        this.failureThreshold = builder.failureThreshold;
+        this.openMillis = builder.openMillis;
+        this.random = builder.random;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException
+    {
+        Request request = chain.request();
+        if (!"GET".equals(request.method()))
+        {
+            return chain.proceed(request);
+        }
+
+        CircuitBreaker circuitBreaker = circuitBreakerFor(request.url());
+        if (!circuitBreaker.allowRequest(System.currentTimeMillis()))
+        {
+            return chain.proceed(asCacheOnly(request));
+        }
+
+        for (int attempt = 1; ; attempt++)
+        {
+            Response response;
+            try
+            {
+                response = chain.proceed(request);
+            }
+            catch (IOException e)
+            {
+                // Neither cancelled nor rate-limited requests reached TMDb.
+                if (MESSAGE_CANCELED.equals(e.getMessage()) || e instanceof RateLimitedException)
+                {
+                    circuitBreaker.recordNoOutcome();
+                    throw e;
+                }
+                if (attempt >= maxAttempts)
+                {
+                    circuitBreaker.recordFailure(System.currentTimeMillis());
+                    throw e;
+                }
+                sleep(computeBackoffMillis(attempt));
+                continue;
+            }
+
+            if (!isRetryable(response))
+            {
+                // Responses from the cache alone say nothing about whether TMDb is working.
+                if (response.networkResponse() != null)
+                {
+                    circuitBreaker.recordSuccess();
+                }
+                else
+                {
+                    circuitBreaker.recordNoOutcome();
+                }
+                return response;
+            }
+
+            long retryAfterMillis = getRetryAfterMillis(response);
+            if (retryAfterMillis > maxDelayMillis)
+            {
+                circuitBreaker.openUntil(System.currentTimeMillis() + retryAfterMillis);
+                return response;
+            }
+            if (attempt >= maxAttempts)
+            {
+                circuitBreaker.recordFailure(System.currentTimeMillis());
+                return response;
+            }
+            response.body().close();
+            sleep((retryAfterMillis >= 0) ? retryAfterMillis : computeBackoffMillis(attempt));
+        }
+    }
+
+    /**
+     * Returns the state of the circuit breaker of the endpoint that the given URL refers to.
+     *
+     * @param url
+     *     URL of a request made against TMDb
+     * @return
+     *     state of the endpoint's circuit breaker
+     */
+    CircuitBreaker.State getCircuitState(HttpUrl url)
+    {
+        return circuitBreakerFor(url).getState();
+    }
+
+    private synchronized CircuitBreaker circuitBreakerFor(HttpUrl url)
+    {
+        String endpoint = TmdbMetrics.templatePathOf(url);
+        CircuitBreaker circuitBreaker = circuitBreakers.get(endpoint);
+        if (circuitBreaker == null)
+        {
+            circuitBreaker = new CircuitBreaker(failureThreshold, openMillis);
+            circuitBreakers.put(endpoint, circuitBreaker);
+        }
+        return circuitBreaker;
+    }
+
+    /**
+     * Returns the given request changed to be answered from the HTTP cache only, however stale.
+     */
+    private static Request asCacheOnly(Request request)
+    {
+        CacheControl cacheOnlyCacheControl = new CacheControl.Builder()
+                .onlyIfCached()
+                .maxStale(StaleWhileRevalidateInterceptor.OFFLINE_MAX_STALE_DAYS, TimeUnit.DAYS)
+                .build();
+        return request.newBuilder().cacheControl(cacheOnlyCacheControl).build();
+    }
+
+    /**
+     * Returns whether the given response is a failure from TMDb that is worth retrying.
+     */
+    private static boolean isRetryable(Response response)
+    {
+        return response.networkResponse() != null &&
+               (response.code() == HTTP_TOO_MANY_REQUESTS || response.code() >= HTTP_SERVER_ERROR);
+    }
+
+    /**
+     * Returns how long the given response asks to wait before retrying, from its
+     * {@code Retry-After} header in either seconds or as an HTTP date, or -1 if it does not ask.
+     */
+    private static long getRetryAfterMillis(Response response)
+    {
+        String retryAfter = response.header(HEADER_RETRY_AFTER);
+        if (retryAfter == null)
+        {
+            return -1L;
+        }
+
+        try
+        {
+            return Math.max(TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim())), 0L);
+        }
+        catch (NumberFormatException e)
+        {
+            Date retryAfterDate = response.headers().getDate(HEADER_RETRY_AFTER);
+            return (retryAfterDate != null) ?
+                   Math.max(retryAfterDate.getTime() - System.currentTimeMillis(), 0L) :
+                   -1L;
+        }
+    }
+
+    /**
+     * Returns the delay before the retry following the given attempt: half of the exponentially
+     * growing delay for the attempt, plus a random share of the other half.
+     */
+    private long computeBackoffMillis(int attempt)
+    {
+        long exponentialDelayMillis =
+                Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 30));
+        long halfDelayMillis = exponentialDelayMillis / 2;
+        long jitterMillis =
+                (long) (random.nextDouble() * (exponentialDelayMillis - halfDelayMillis));
+        return halfDelayMillis + jitterMillis;
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException
+    {
+        try
+        {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+
+    /**
+     * Builder for use in constructing a new ResilienceInterceptor object.
+     */
+    static class Builder
+    {
+        private int maxAttempts = 3;
+        private long baseDelayMillis = 500L;
+        private long maxDelayMillis = 4000L;
+        private int failureThreshold = 5;
+        private long openMillis = 30000L;
+        private Random random = new Random();
+
+        /**
+         * Sets the maximum number of attempts of a request, including the first one.
+         *
+         * @param maxAttempts
+         *     maximum number of attempts of a request
+         * @return
+         *     this Builder with the given maximum number of attempts
+         */
+        Builder withMaxAttempts(int maxAttempts)
+        {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Sets the delay before the first retry, which doubles for each retry after it.
+         *
+         * @param baseDelayMillis
+         *     delay before the first retry, in milliseconds
+         * @return
+         *     this Builder with the given base delay
+         */
+        Builder withBaseDelayMillis(long baseDelayMillis)
+        {
+            this.baseDelayMillis = baseDelayMillis;
+            return this;
+        }
+
+        /**
+         * Sets the maximum delay before a retry, including delays that TMDb asks for.
+         *
+         * @param maxDelayMillis
+         *     maximum delay before a retry, in milliseconds
+         * @return
+         *     this Builder with the given maximum delay
+         */
+        Builder withMaxDelayMillis(long maxDelayMillis)
+        {
+            this.maxDelayMillis = maxDelayMillis;
+            return this;
+        }
+
+        /**
+         * Sets the number of failed requests in a row that open the circuit of an endpoint.
+         *
+         * @param failureThreshold
+         *     number of failures in a row that open a circuit
+         * @return
+         *     this Builder with the given failure threshold
+         */
+        Builder withFailureThreshold(int failureThreshold)
+        {
+            this.failureThreshold = failureThreshold;
+            return this;
+        }
+
+        /**
+         * Sets how long the circuit of an endpoint stays open before a trial request is let
+         * through.
+         *
+         * @param openMillis
+         *     how long a circuit stays open, in milliseconds
+         * @return
+         *     this Builder with the given open duration
+         */
+        Builder withOpenMillis(long openMillis)
+        {
+            this.openMillis = openMillis;
+            return this;
+        }
+
+        /**
+         * Sets the source of the random jitter added to retry delays.
+         *
+         * @param random
+         *     source of random jitter
+         * @return
+         *     this Builder with the given source of random jitter
+         */
+        Builder withRandom(Random random)
+        {
+            this.random = random;
+            return this;
+        }
+
+        /**
+         * Builds a new ResilienceInterceptor instance from this Builder.
+         *
+         * @return
+         *     ResilienceInterceptor with the settings of this Builder
+         */
+        ResilienceInterceptor build()
+        {
+            return new ResilienceInterceptor(this);
+        }
+    }
+}
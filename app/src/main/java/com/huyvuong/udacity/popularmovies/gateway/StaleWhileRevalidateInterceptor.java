@@ -0,0 +1,142 @@
+package com.huyvuong.udacity.popularmovies.gateway;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.huyvuong.udacity.popularmovies.util.NetworkUtils;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.CacheControl;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Application interceptor that decides how each TMDb request may use the on-disk HTTP cache.
+ *
+ * While online, a response that has outlived its max-age but is still within its
+ * stale-while-revalidate window (see {@link TmdbCachePolicy}) is returned immediately and a fresh
+ * copy is fetched in the background for next time. While offline, any cached response is returned
+ * regardless of age, rather than failing the request outright.
+ */
+class StaleWhileRevalidateInterceptor
+        implements Interceptor
+{
+    private static final String LOG_TAG = StaleWhileRevalidateInterceptor.class.getSimpleName();
+
+    // How long a cached response may be used while the device is offline.
+    static final int OFFLINE_MAX_STALE_DAYS = 28;
+
+    // OkHttp marks responses served past their max-age with this warning code.
+    private static final String HEADER_WARNING = "Warning";
+    private static final String WARNING_RESPONSE_IS_STALE = "110";
+
+    private final Context context;
+    private OkHttpClient client;
+
+    /**
+     * Constructs a new interceptor that checks connectivity with the given context.
+     *
+     * @param context
+     *     application context used to check whether the device is online
+     */
+    StaleWhileRevalidateInterceptor(Context context)
+    {
+        this.context = context;
+    }
+
+    /**
+     * Sets the client used to refresh stale responses in the background. This must be the client
+     * that this interceptor is installed in, so that refreshed responses land in the same cache.
+     *
+     * @param client
+     *     client to issue background revalidation requests with
+     */
+    void setClient(OkHttpClient client)
+    {
+        this.client = client;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException
+    {
+        Request request = chain.request();
+        TmdbCachePolicy policy = TmdbCachePolicy.forUrl(request.url());
+        if (policy == null || !"GET".equals(request.method()) || request.cacheControl().noCache())
+        {
+            // Not a cacheable TMDb request, or it is already a forced network revalidation.
+            return chain.proceed(request);
+        }
+
+        if (!NetworkUtils.isOnline(context))
+        {
+            CacheControl offlineCacheControl = new CacheControl.Builder()
+                    .onlyIfCached()
+                    .maxStale(OFFLINE_MAX_STALE_DAYS, TimeUnit.DAYS)
+                    .build();
+            return chain.proceed(request.newBuilder().cacheControl(offlineCacheControl).build());
+        }
+
+        CacheControl onlineCacheControl = new CacheControl.Builder()
+                .maxStale((int) policy.getStaleWhileRevalidateSeconds(), TimeUnit.SECONDS)
+                .build();
+        Response response =
+                chain.proceed(request.newBuilder().cacheControl(onlineCacheControl).build());
+        if (isStale(response))
+        {
+            revalidateInBackground(request);
+        }
+        return response;
+    }
+
+    private boolean isStale(Response response)
+    {
+        String warning = response.header(HEADER_WARNING);
+        return response.networkResponse() == null &&
+               warning != null &&
+               warning.startsWith(WARNING_RESPONSE_IS_STALE);
+    }
+
+    /**
+     * Asynchronously re-requests the given request from the network so that the cache holds a
+     * fresh copy of its response. The response body is read fully so that the cache write
+     * completes.
+     *
+     * @param request
+     *     original request whose cached response is stale
+     */
+    private void revalidateInBackground(Request request)
+    {
+        if (client == null)
+        {
+            return;
+        }
+
+        // Revalidations are not awaited by anyone, so they yield to visible requests.
+        Request revalidationRequest = request.newBuilder()
+                                             .cacheControl(CacheControl.FORCE_NETWORK)
+                                             .header(RateLimitInterceptor.HEADER_PRIORITY,
+                                                     TmdbGateway.RequestPriority.PREFETCH)
+                                             .build();
+        client.newCall(revalidationRequest).enqueue(
+                new Callback()
+                {
+                    @Override
+                    public void onFailure(Call call, IOException e)
+                    {
+                        Log.w(LOG_TAG, "Revalidation failed for " + request.url().encodedPath(), e);
+                    }
+
+                    @Override
+                    public void onResponse(Call call, Response response) throws IOException
+                    {
+                        response.body().bytes();
+                    }
+                });
+    }
+}
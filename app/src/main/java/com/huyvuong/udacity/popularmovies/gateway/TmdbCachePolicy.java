@@ -0,0 +1,145 @@
+package com.huyvuong.udacity.popularmovies.gateway;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+
+/**
+ * Freshness rules for responses returned by The Movie Database (TMDb). Each value describes how
+ * long a response for a kind of endpoint may be served from the HTTP cache without contacting TMDb
+ * (max-age), and for how long past that it may still be served while it is refreshed in the
+ * background (stale-while-revalidate).
+ */
+enum TmdbCachePolicy
+{
+    /**
+     * Popular and top rated movie lists, e.g. {@code 3/movie/popular}. These shift over the course
+     * of a day, so they are only considered fresh for a few minutes.
+     */
+    MOVIE_LIST(TimeUnit.MINUTES.toSeconds(10), TimeUnit.HOURS.toSeconds(1)),
+
+    /**
+     * Details for a single movie, e.g. {@code 3/movie/550}. These rarely change.
+     */
+    MOVIE_DETAILS(TimeUnit.DAYS.toSeconds(1), TimeUnit.DAYS.toSeconds(7)),
+
+    /**
+     * Videos and reviews for a single movie, e.g. {@code 3/movie/550/reviews}.
+     */
+    MOVIE_EXTRAS(TimeUnit.HOURS.toSeconds(6), TimeUnit.DAYS.toSeconds(1));
+
+    private static final String SEGMENT_API_VERSION = "3";
+    private static final String SEGMENT_MOVIE = "movie";
+    private static final String QUERY_APPEND_TO_RESPONSE = "append_to_response";
+
+    private final long maxAgeSeconds;
+    private final long staleWhileRevalidateSeconds;
+
+    TmdbCachePolicy(long maxAgeSeconds, long staleWhileRevalidateSeconds)
+    {
+        this.maxAgeSeconds = maxAgeSeconds;
+        this.staleWhileRevalidateSeconds = staleWhileRevalidateSeconds;
+    }
+
+    /**
+     * Returns the number of seconds a response may be served from the cache without revalidating.
+     *
+     * @return
+     *     max-age of responses under this policy, in seconds
+     */
+    long getMaxAgeSeconds()
+    {
+        return maxAgeSeconds;
+    }
+
+    /**
+     * Returns the number of seconds past max-age that a stale response may still be served while a
+     * fresh copy is fetched in the background.
+     *
+     * @return
+     *     stale-while-revalidate window of responses under this policy, in seconds
+     */
+    long getStaleWhileRevalidateSeconds()
+    {
+        return staleWhileRevalidateSeconds;
+    }
+
+    /**
+     * Returns the {@code Cache-Control} header value to store alongside responses under this
+     * policy.
+     *
+     * @return
+     *     {@code Cache-Control} header value for responses under this policy
+     */
+    String toCacheControlHeader()
+    {
+        return "public, max-age=" + maxAgeSeconds +
+               ", stale-while-revalidate=" + staleWhileRevalidateSeconds;
+    }
+
+    /**
+     * Returns the policy that applies to the given TMDb URL, or null if the URL does not refer to a
+     * known TMDb endpoint.
+     *
+     * @param url
+     *     URL of a request made against TMDb
+     * @return
+     *     cache policy for the given URL, or null if none applies
+     */
+    static TmdbCachePolicy forUrl(HttpUrl url)
+    {
+        List<String> segments = url.pathSegments();
+        if (segments.size() < 3 ||
+            !SEGMENT_API_VERSION.equals(segments.get(0)) ||
+            !SEGMENT_MOVIE.equals(segments.get(1)))
+        {
+            return null;
+        }
+
+        if (segments.size() == 3 && isNumeric(segments.get(2)))
+        {
+            // Details with videos or reviews appended go stale as quickly as the extras do.
+            return (url.queryParameter(QUERY_APPEND_TO_RESPONSE) != null) ?
+                   MOVIE_EXTRAS :
+                   MOVIE_DETAILS;
+        }
+        else if (segments.size() == 3)
+        {
+            return MOVIE_LIST;
+        }
+        else if (segments.size() == 4 && isNumeric(segments.get(2)))
+        {
+            return MOVIE_EXTRAS;
+        }
+        else
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if the given URL path segment is a non-empty run of digits, such as a TMDb
+     * movie ID.
+     *
+     * @param segment
+     *     path segment of a TMDb URL
+     * @return
+     *     true if the segment only consists of digits; false otherwise
+     */
+    static boolean isNumeric(String segment)
+    {
+        if (segment.isEmpty())
+        {
+            return false;
+        }
+        for (int i = 0; i < segment.length(); i++)
+        {
+            if (!Character.isDigit(segment.charAt(i)))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
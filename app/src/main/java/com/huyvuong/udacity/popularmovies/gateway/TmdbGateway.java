@@ -1,16 +1,28 @@
 package com.huyvuong.udacity.popularmovies.gateway;
 
+import android.content.Context;
+import android.content.res.Resources;
 import android.support.annotation.NonNull;
-import android.util.Log;
 
-import com.annimon.stream.Collectors;
-import com.annimon.stream.Stream;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.huyvuong.udacity.popularmovies.BuildConfig;
+import com.huyvuong.udacity.popularmovies.R;
+import com.huyvuong.udacity.popularmovies.model.transport.GetMovieBundleResponse;
 import com.huyvuong.udacity.popularmovies.model.transport.GetMovieDetailsResponse;
 import com.huyvuong.udacity.popularmovies.model.transport.GetMoviesResponse;
 import com.huyvuong.udacity.popularmovies.model.transport.GetReviewsResponse;
 import com.huyvuong.udacity.popularmovies.model.transport.GetVideosResponse;
+import com.huyvuong.udacity.popularmovies.model.transport.TmdbTypeAdapterFactory;
+import com.huyvuong.udacity.popularmovies.scheduler.PriorityScheduler;
 
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Dns;
 import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -18,17 +30,26 @@ import retrofit2.Retrofit;
 import retrofit2.adapter.rxjava.RxJavaCallAdapterFactory;
 import retrofit2.converter.gson.GsonConverterFactory;
 import retrofit2.http.GET;
+import retrofit2.http.Header;
 import retrofit2.http.Path;
+import retrofit2.http.Query;
 import rx.Observable;
+import rx.Scheduler;
 import rx.android.schedulers.AndroidSchedulers;
 import rx.observables.ConnectableObservable;
-import rx.schedulers.Schedulers;
 
 /**
  * Entry point for all calls against The Movie Database (TMDb). This manages configuring and
  * constructing calls to TMDb using Retrofit; no code outside of this class should attempt to build
  * a Retrofit instance for contacting TMDb.
  *
+ * A single instance is shared across the whole process so that every screen reuses the same
+ * connection pool, TLS sessions and Retrofit service proxy. Obtain it with
+ * {@link #getInstance(Context)}.
+ *
+ * Calls are logged through a {@link GatewayLog}, at the level and sample rate set for the build
+ * type in {@code build.gradle}.
+ *
  * This product uses the TMDb API but is not endorsed or certified by TMDb.
  */
 public class TmdbGateway
@@ -36,35 +57,175 @@ public class TmdbGateway
     private static final String LOG_TAG = TmdbGateway.class.getSimpleName();
     private static final String BASE_URL = "http://api.themoviedb.org/";
     private static final String QUERY_API_KEY = "api_key";
+    private static final int FIRST_PAGE = 1;
+    private static final String APPEND_VIDEOS_AND_REVIEWS = "videos,reviews";
+    private static final String HTTP_CACHE_DIRECTORY = "tmdb-http-cache";
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
 
+    private static TmdbGateway instance;
+
+    private OkHttpClient sharedClient;
     private TmdbEndpointInterface tmdbService;
+    private final PriorityScheduler scheduler;
+    private final RequestCoalescer requestCoalescer = new RequestCoalescer();
+    private final TmdbMetrics metrics = new TmdbMetrics();
+    private final GatewayLog log = new GatewayLog(LOG_TAG,
+                                                  BuildConfig.TMDB_LOG_LEVEL,
+                                                  BuildConfig.TMDB_LOG_SUMMARY_SAMPLE_INTERVAL);
 
     /**
      * Constructs a new TmdbGateway instance configured to call the TMDb APIs.
+     *
+     * @param context
+     *     application context used to read the client configuration and locate the cache
      */
-    public TmdbGateway()
+    private TmdbGateway(Context context)
     {
-        OkHttpClient clientWithApiKey = buildClientWithApiKey();
+        scheduler = PriorityScheduler.getInstance(context);
+        sharedClient = buildSharedClient(context);
+        OkHttpClient clientWithApiKey = buildClientWithApiKey(context, sharedClient);
         Retrofit retrofit = buildRetrofitForTmdb(clientWithApiKey);
         tmdbService = retrofit.create(TmdbEndpointInterface.class);
     }
 
+    /**
+     * Returns the process-wide TmdbGateway instance, creating it on first use.
+     *
+     * @param context
+     *     any context; only its application context is retained
+     * @return
+     *     shared TmdbGateway instance configured to call the TMDb APIs
+     */
+    public static synchronized TmdbGateway getInstance(Context context)
+    {
+        if (instance == null)
+        {
+            instance = new TmdbGateway(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the {@code OkHttpClient} whose connection pool and dispatcher are shared by every
+     * HTTP client in the app. Derive clients for other hosts from it with
+     * {@link OkHttpClient#newBuilder()}, so that they reuse its sockets and threads.
+     *
+     * @return
+     *     shared {@code OkHttpClient} without TMDb API configuration
+     */
+    public OkHttpClient getSharedClient()
+    {
+        return sharedClient;
+    }
+
+    /**
+     * Builds the {@code OkHttpClient} holding the shared connection pool and dispatcher. Their
+     * limits are read from {@code integers.xml} so that idle sockets are kept alive long enough to
+     * be reused between screens.
+     *
+     * @param context
+     *     application context to read the client configuration from
+     * @return
+     *     {@code OkHttpClient} to derive all other clients from
+     */
+    @NonNull
+    private OkHttpClient buildSharedClient(Context context)
+    {
+        Resources resources = context.getResources();
+
+        ConnectionPool connectionPool = new ConnectionPool(
+                resources.getInteger(R.integer.tmdb_max_idle_connections),
+                resources.getInteger(R.integer.tmdb_keep_alive_duration_seconds),
+                TimeUnit.SECONDS);
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(resources.getInteger(R.integer.tmdb_max_requests));
+        dispatcher.setMaxRequestsPerHost(
+                resources.getInteger(R.integer.tmdb_max_requests_per_host));
+
+        return new OkHttpClient.Builder()
+                .connectionPool(connectionPool)
+                .dispatcher(dispatcher)
+                .build();
+    }
+
     /**
      * Builds an {@code OkHttpClient} with the {@code api_key} query parameter value set to the
      * string set for {@code TmdbApiKey} in the gradle.properties file. This allows all calls using
      * this gateway to automatically supply the API key when calling TMDb.
      *
+     * The client is derived from the given shared client, so that it shares its connection pool
+     * and dispatcher.
+     *
+     * Responses are stored in a bounded on-disk cache. {@link FreshnessInterceptor} assigns each
+     * TMDb endpoint its own freshness lifetime, and {@link StaleWhileRevalidateInterceptor} serves
+     * stale responses while refreshing them, or any cached response while the device is offline.
+     *
+     * {@link ResilienceInterceptor} retries failed requests with backoff, and stops calling TMDb
+     * endpoints that keep failing for a while, answering from the cache instead.
+     *
+     * {@link RateLimitInterceptor} keeps requests within TMDb's request quota, sending requests
+     * for visible content ahead of prefetches, and dropping prefetches when the quota is used up.
+     *
+     * {@link MetricsInterceptor} records the latency, size and cache status of every request into
+     * the gateway's {@link TmdbMetrics}.
+     *
      * Pass this client when building a Retrofit instance
      *
      * From: http://stackoverflow.com/a/33667739
      *
+     * @param context
+     *     application context to read the client configuration from and to locate the cache in
+     * @param sharedClient
+     *     client holding the shared connection pool and dispatcher
      * @return
      *     {@code OkHttpClient} with the {@code api_key} query parameter already set up
      */
     @NonNull
-    private OkHttpClient buildClientWithApiKey()
+    private OkHttpClient buildClientWithApiKey(Context context, OkHttpClient sharedClient)
     {
-        return new OkHttpClient.Builder()
+        Resources resources = context.getResources();
+
+        Cache cache = new Cache(
+                new File(context.getCacheDir(), HTTP_CACHE_DIRECTORY),
+                resources.getInteger(R.integer.tmdb_http_cache_size_mb) * BYTES_PER_MEGABYTE);
+
+        // The cache interceptor must run before the API key is appended, so that background
+        // revalidations it issues pass through the API key interceptor exactly once.
+        StaleWhileRevalidateInterceptor staleWhileRevalidateInterceptor =
+                new StaleWhileRevalidateInterceptor(context);
+
+        ResilienceInterceptor resilienceInterceptor = new ResilienceInterceptor.Builder()
+                .withMaxAttempts(resources.getInteger(R.integer.tmdb_retry_max_attempts))
+                .withBaseDelayMillis(resources.getInteger(R.integer.tmdb_retry_base_delay_millis))
+                .withMaxDelayMillis(resources.getInteger(R.integer.tmdb_retry_max_delay_millis))
+                .withFailureThreshold(
+                        resources.getInteger(R.integer.tmdb_circuit_failure_threshold))
+                .withOpenMillis(TimeUnit.SECONDS.toMillis(
+                        resources.getInteger(R.integer.tmdb_circuit_open_seconds)))
+                .build();
+
+        RateLimitInterceptor rateLimitInterceptor = new RateLimitInterceptor(
+                new TokenBucketRateLimiter(
+                        resources.getInteger(R.integer.tmdb_rate_limit_burst_size),
+                        resources.getInteger(R.integer.tmdb_rate_limit_requests_per_second),
+                        resources.getInteger(R.integer.tmdb_rate_limit_max_queued_prefetches),
+                        resources.getInteger(R.integer.tmdb_rate_limit_max_prefetch_wait_millis)),
+                metrics);
+
+        // The metrics interceptor runs first, so that it times everything the caller waits for.
+        // Its attempt interceptor runs after the rate limiter, so that the network phases of a
+        // request start once it is allowed to go out.
+        MetricsInterceptor metricsInterceptor = new MetricsInterceptor(metrics);
+
+        OkHttpClient client = sharedClient.newBuilder()
+                    .cache(cache)
+                    .dns(metricsInterceptor.timeDns(Dns.SYSTEM))
+                    .addInterceptor(metricsInterceptor)
+                    .addInterceptor(staleWhileRevalidateInterceptor)
+                    .addInterceptor(resilienceInterceptor)
+                    .addInterceptor(rateLimitInterceptor)
+                    .addInterceptor(metricsInterceptor.attemptInterceptor())
                     .addInterceptor(
                             chain ->
                             {
@@ -77,7 +238,11 @@ public class TmdbGateway
                                         .build();
                                 return chain.proceed(request);
                             })
+                    .addNetworkInterceptor(metricsInterceptor.networkInterceptor())
+                    .addNetworkInterceptor(new FreshnessInterceptor())
                     .build();
+        staleWhileRevalidateInterceptor.setClient(client);
+        return client;
     }
 
     /**
@@ -85,6 +250,9 @@ public class TmdbGateway
      * instance. This provided instance allows the caller the ability pass in a customized
      * configuration for {@code OkHttpClient}.
      *
+     * Responses are decoded with the streaming adapters from {@link TmdbTypeAdapterFactory} rather
+     * than Gson's reflective binding.
+     *
      * @param client
      *     {@code OkHttpClient} instance to use for HTTP calls via Retrofit
      * @return
@@ -93,17 +261,22 @@ public class TmdbGateway
     @NonNull
     private Retrofit buildRetrofitForTmdb(OkHttpClient client)
     {
+        Gson gson = new GsonBuilder()
+                .registerTypeAdapterFactory(new TmdbTypeAdapterFactory())
+                .create();
         return new Retrofit.Builder()
                 .baseUrl(BASE_URL)
                 .client(client)
-                .addConverterFactory(GsonConverterFactory.create())
+                .addConverterFactory(GsonConverterFactory.create(gson))
                 .addCallAdapterFactory(RxJavaCallAdapterFactory.create())
                 .build();
     }
 
     /**
-     * Returns a ReactiveX {@code ConnectedObservable} for getting the list of movies from TMDb for
-     * the given movie sorting criteria.
+     * Returns a ReactiveX {@code ConnectedObservable} for getting the first page of the list of
+     * movies from TMDb for the given movie sorting criteria.
+     *
+     * Concurrent calls with the same arguments share a single in-flight request.
      *
      * @param movieSortingCriteria
      *     sorting criteria used to determine what kind of movies to look up
@@ -113,36 +286,111 @@ public class TmdbGateway
      */
     public ConnectableObservable<GetMoviesResponse> getMovies(String movieSortingCriteria)
     {
-        Log.d(LOG_TAG, String.format("Request -> getMovies(\"%s\")", movieSortingCriteria));
-        ConnectableObservable<GetMoviesResponse> observable =
-                tmdbService.getMovies(movieSortingCriteria)
-                        .subscribeOn(Schedulers.io())
-                        .observeOn(AndroidSchedulers.mainThread())
-                        .share()
-                        .replay();
-        observable.subscribe(
-                response -> Log.i(
-                        LOG_TAG,
-                        String.format(
-                                "Response <- getMovies(\"%s\"): %s",
-                                movieSortingCriteria,
-                                Stream.of(response.getMovies())
-                                        .map(movie -> "\"" + movie.getOriginalTitle() + "\"")
-                                        .collect(Collectors.toList()))),
-                error -> Log.e(
-                        LOG_TAG,
-                        String.format(
-                                "Error <- getMovies(\"%s\"): %s",
-                                movieSortingCriteria,
-                                error.getMessage()),
-                        error));
-        return observable;
+        return getMovies(movieSortingCriteria, FIRST_PAGE);
+    }
+
+    /**
+     * Returns a ReactiveX {@code ConnectedObservable} for getting the given page of the list of
+     * movies from TMDb for the given movie sorting criteria.
+     *
+     * Concurrent calls with the same arguments share a single in-flight request.
+     *
+     * @param movieSortingCriteria
+     *     sorting criteria used to determine what kind of movies to look up
+     * @param pageNumber
+     *     1-based page number of the list to look up
+     * @return
+     *     ReactiveX {@code ConnectedObservable} that obtains a page of movies from TMDb based on
+     *     the given movie sorting criteria
+     */
+    public ConnectableObservable<GetMoviesResponse> getMovies(String movieSortingCriteria,
+                                                              int pageNumber)
+    {
+        return getMovies(movieSortingCriteria, pageNumber, RequestPriority.VISIBLE);
+    }
+
+    /**
+     * Returns a ReactiveX {@code ConnectedObservable} for getting the given page of the list of
+     * movies from TMDb for the given movie sorting criteria, at the given priority.
+     *
+     * Concurrent calls with the same arguments share a single in-flight request, at the priority
+     * of the call that issued it.
+     *
+     * @param movieSortingCriteria
+     *     sorting criteria used to determine what kind of movies to look up
+     * @param pageNumber
+     *     1-based page number of the list to look up
+     * @param priority
+     *     priority from {@link RequestPriority} to send the request at if TMDb's request quota is
+     *     used up
+     * @return
+     *     ReactiveX {@code ConnectedObservable} that obtains a page of movies from TMDb based on
+     *     the given movie sorting criteria
+     */
+    public ConnectableObservable<GetMoviesResponse> getMovies(String movieSortingCriteria,
+                                                              int pageNumber,
+                                                              String priority)
+    {
+        return requestCoalescer.coalesce(
+                "getMovies(" + movieSortingCriteria + ", " + pageNumber + ")",
+                () -> requestMovies(movieSortingCriteria, pageNumber, priority));
+    }
+
+    /**
+     * Issues a new getMovies call against TMDb with logging attached.
+     *
+     * @see #getMovies(String, int, String)
+     */
+    private ConnectableObservable<GetMoviesResponse> requestMovies(String movieSortingCriteria,
+                                                                   int pageNumber,
+                                                                   String priority)
+    {
+        return log.logCall(tmdbService.getMovies(movieSortingCriteria, pageNumber, priority),
+                           TmdbLogFormatter::summarizeMovies,
+                           TmdbLogFormatter::listMovies,
+                           "getMovies",
+                           movieSortingCriteria,
+                           pageNumber)
+                  .subscribeOn(schedulerFor(priority))
+                  .observeOn(AndroidSchedulers.mainThread())
+                  .share()
+                  .replay();
+    }
+
+    /**
+     * Returns a ReactiveX {@code Observable} for getting the given page of the movies on TMDb
+     * matching the given query.
+     *
+     * Unlike the other calls, searches are not shared between callers: each subscription issues
+     * its own request, which is cancelled once its subscriber unsubscribes. Users rarely repeat a
+     * search while it is in flight, and this way a search that was overtaken by a newer one stops
+     * using the network.
+     *
+     * @param query
+     *     words to search for in the titles of movies
+     * @param pageNumber
+     *     1-based page number of the search results to look up
+     * @return
+     *     ReactiveX {@code Observable} that obtains a page of the movies matching the query
+     */
+    public Observable<GetMoviesResponse> searchMovies(String query, int pageNumber)
+    {
+        return log.logCall(tmdbService.searchMovies(query, pageNumber),
+                           TmdbLogFormatter::summarizeMovies,
+                           TmdbLogFormatter::listMovies,
+                           "searchMovies",
+                           query,
+                           pageNumber)
+                    .subscribeOn(scheduler.visible())
+                    .observeOn(AndroidSchedulers.mainThread());
     }
 
     /**
      * Returns a ReactiveX {@code ConnectedObservable} for getting movie details from TMDb for the
      * given movie ID.
      *
+     * Concurrent calls with the same arguments share a single in-flight request.
+     *
      * @param movieId
      *     movie ID corresponding to the movie to obtain movie details for
      * @return
@@ -151,35 +399,71 @@ public class TmdbGateway
      */
     public ConnectableObservable<GetMovieDetailsResponse> getMovieDetails(int movieId)
     {
-        Log.d(LOG_TAG, String.format("Request -> getMovieDetails(\"%s\")", movieId));
-        ConnectableObservable<GetMovieDetailsResponse> observable =
-                tmdbService.getMovieDetails(movieId)
-                           .subscribeOn(Schedulers.io())
-                           .observeOn(AndroidSchedulers.mainThread())
-                           .share()
-                           .replay();
-        observable.subscribe(
-                response -> Log.i(
-                        LOG_TAG,
-                        String.format(
-                                "Response <- getMovieDetails(\"%s\"): " +
-                                        "{\"id\": %s, \"backdrop_path\": \"%s\"}",
-                                movieId,
-                                response.getId(),
-                                response.getBackdropPath())),
-                error -> Log.e(
-                        LOG_TAG,
-                        String.format(
-                                "Error <- getMovieDetails(\"%s\"): %s",
-                                movieId,
-                                error.getMessage()),
-                        error));
-        return observable;
+        return requestCoalescer.coalesce(
+                "getMovieDetails(" + movieId + ")",
+                () -> requestMovieDetails(movieId));
     }
 
     /**
-     * Returns a ReactiveX {@code ConnectedObservable} for getting the list of reviews from TMDb for
-     * the given movie ID.
+     * Issues a new getMovieDetails call against TMDb with logging attached.
+     *
+     * @see #getMovieDetails(int)
+     */
+    private ConnectableObservable<GetMovieDetailsResponse> requestMovieDetails(int movieId)
+    {
+        return log.logCall(tmdbService.getMovieDetails(movieId),
+                           TmdbLogFormatter::summarizeMovieDetails,
+                           TmdbLogFormatter::summarizeMovieDetails,
+                           "getMovieDetails",
+                           movieId)
+                  .subscribeOn(scheduler.visible())
+                  .observeOn(AndroidSchedulers.mainThread())
+                  .share()
+                  .replay();
+    }
+
+    /**
+     * Returns a ReactiveX {@code ConnectedObservable} for getting movie details from TMDb for the
+     * given movie ID, along with its videos and first page of reviews, in a single request.
+     *
+     * Concurrent calls with the same arguments share a single in-flight request.
+     *
+     * @param movieId
+     *     movie ID corresponding to the movie to obtain movie details, videos and reviews for
+     * @return
+     *     ReactiveX {@code ConnectedObservable} that obtains movie details, videos and reviews from
+     *     TMDb based on the given movie ID
+     */
+    public ConnectableObservable<GetMovieBundleResponse> getMovieBundle(int movieId)
+    {
+        return requestCoalescer.coalesce(
+                "getMovieBundle(" + movieId + ")",
+                () -> requestMovieBundle(movieId));
+    }
+
+    /**
+     * Issues a new getMovieBundle call against TMDb with logging attached.
+     *
+     * @see #getMovieBundle(int)
+     */
+    private ConnectableObservable<GetMovieBundleResponse> requestMovieBundle(int movieId)
+    {
+        return log.logCall(tmdbService.getMovieBundle(movieId, APPEND_VIDEOS_AND_REVIEWS),
+                           TmdbLogFormatter::summarizeMovieBundle,
+                           TmdbLogFormatter::listMovieBundle,
+                           "getMovieBundle",
+                           movieId)
+                  .subscribeOn(scheduler.visible())
+                  .observeOn(AndroidSchedulers.mainThread())
+                  .share()
+                  .replay();
+    }
+
+    /**
+     * Returns a ReactiveX {@code ConnectedObservable} for getting the first page of the list of
+     * reviews from TMDb for the given movie ID.
+     *
+     * Concurrent calls with the same arguments share a single in-flight request.
      *
      * @param movieId
      *     movie ID corresponding to the movie to obtain reviews for
@@ -189,36 +473,55 @@ public class TmdbGateway
      */
     public ConnectableObservable<GetReviewsResponse> getReviews(int movieId)
     {
-        Log.d(LOG_TAG, String.format("Request -> getReviews(\"%s\")", movieId));
-        ConnectableObservable<GetReviewsResponse> observable =
-                tmdbService.getReviews(movieId)
-                           .subscribeOn(Schedulers.io())
-                           .observeOn(AndroidSchedulers.mainThread())
-                           .share()
-                           .replay();
-        observable.subscribe(
-                response -> Log.i(
-                        LOG_TAG,
-                        String.format(
-                                "Response <- getReviews(\"%s\"): %s",
-                                movieId,
-                                Stream.of(response.getReviews())
-                                      .map(review -> "\"" + review.getAuthor() + "\"")
-                                      .collect(Collectors.toList()))),
-                error -> Log.e(
-                        LOG_TAG,
-                        String.format(
-                                "Error <- getReviews(\"%s\"): %s",
-                                movieId,
-                                error.getMessage()),
-                        error));
-        return observable;
+        return getReviews(movieId, FIRST_PAGE);
+    }
+
+    /**
+     * Returns a ReactiveX {@code ConnectedObservable} for getting the given page of the list of
+     * reviews from TMDb for the given movie ID.
+     *
+     * Concurrent calls with the same arguments share a single in-flight request.
+     *
+     * @param movieId
+     *     movie ID corresponding to the movie to obtain reviews for
+     * @param pageNumber
+     *     1-based page number of the list to look up
+     * @return
+     *     ReactiveX {@code ConnectedObservable} that obtains a page of reviews from TMDb based on
+     *     the given movie ID
+     */
+    public ConnectableObservable<GetReviewsResponse> getReviews(int movieId, int pageNumber)
+    {
+        return requestCoalescer.coalesce(
+                "getReviews(" + movieId + ", " + pageNumber + ")",
+                () -> requestReviews(movieId, pageNumber));
+    }
+
+    /**
+     * Issues a new getReviews call against TMDb with logging attached.
+     *
+     * @see #getReviews(int, int)
+     */
+    private ConnectableObservable<GetReviewsResponse> requestReviews(int movieId, int pageNumber)
+    {
+        return log.logCall(tmdbService.getReviews(movieId, pageNumber),
+                           TmdbLogFormatter::summarizeReviews,
+                           TmdbLogFormatter::listReviews,
+                           "getReviews",
+                           movieId,
+                           pageNumber)
+                  .subscribeOn(scheduler.visible())
+                  .observeOn(AndroidSchedulers.mainThread())
+                  .share()
+                  .replay();
     }
 
     /**
      * Returns a ReactiveX {@code ConnectedObservable} for getting the list of videos from TMDb for
      * the given movie ID.
      *
+     * Concurrent calls with the same arguments share a single in-flight request.
+     *
      * @param movieId
      *     movie ID corresponding to the movie to obtain videos for
      * @return
@@ -227,30 +530,84 @@ public class TmdbGateway
      */
     public ConnectableObservable<GetVideosResponse> getVideos(int movieId)
     {
-        Log.d(LOG_TAG, String.format("Request -> getVideos(\"%s\")", movieId));
-        ConnectableObservable<GetVideosResponse> observable =
-                tmdbService.getVideos(movieId)
-                           .subscribeOn(Schedulers.io())
-                           .observeOn(AndroidSchedulers.mainThread())
-                           .share()
-                           .replay();
-        observable.subscribe(
-                response -> Log.i(
-                        LOG_TAG,
-                        String.format(
-                                "Response <- getVideos(\"%s\"): %s",
-                                movieId,
-                                Stream.of(response.getVideos())
-                                      .map(video -> "\"" + video.getName() + "\"")
-                                      .collect(Collectors.toList()))),
-                error -> Log.e(
-                        LOG_TAG,
-                        String.format(
-                                "Error <- getVideos(\"%s\"): %s",
-                                movieId,
-                                error.getMessage()),
-                        error));
-        return observable;
+        return requestCoalescer.coalesce(
+                "getVideos(" + movieId + ")",
+                () -> requestVideos(movieId));
+    }
+
+    /**
+     * Issues a new getVideos call against TMDb with logging attached.
+     *
+     * @see #getVideos(int)
+     */
+    private ConnectableObservable<GetVideosResponse> requestVideos(int movieId)
+    {
+        return log.logCall(tmdbService.getVideos(movieId),
+                           TmdbLogFormatter::summarizeVideos,
+                           TmdbLogFormatter::listVideos,
+                           "getVideos",
+                           movieId)
+                  .subscribeOn(scheduler.visible())
+                  .observeOn(AndroidSchedulers.mainThread())
+                  .share()
+                  .replay();
+    }
+
+    /**
+     * Returns the scheduler of the lane that requests of the given priority run on.
+     */
+    private Scheduler schedulerFor(String priority)
+    {
+        return RequestPriority.PREFETCH.equals(priority) ?
+               scheduler.prefetch() :
+               scheduler.visible();
+    }
+
+    /**
+     * Returns the number of gateway calls that were served by joining a request already in flight
+     * instead of issuing a new one.
+     *
+     * @return
+     *     number of coalesced gateway calls
+     */
+    public long getCoalescedRequestCount()
+    {
+        return requestCoalescer.getHitCount();
+    }
+
+    /**
+     * Returns the number of gateway calls that issued a new request.
+     *
+     * @return
+     *     number of gateway calls that issued a new request
+     */
+    public long getIssuedRequestCount()
+    {
+        return requestCoalescer.getMissCount();
+    }
+
+    /**
+     * Returns the latency, size and cache metrics of the requests made against TMDb so far, per
+     * endpoint.
+     *
+     * @return
+     *     metrics of the requests made against TMDb
+     */
+    public TmdbMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Returns the log of the calls made against TMDb, whose sink may be replaced to capture its
+     * messages elsewhere.
+     *
+     * @return
+     *     log of the calls made against TMDb
+     */
+    public GatewayLog getLog()
+    {
+        return log;
     }
 
     /**
@@ -263,21 +620,63 @@ public class TmdbGateway
         public static final String TOP_RATED = "top_rated";
     }
 
+    /**
+     * Priorities of requests against TMDb, which decide the order in which they are sent once
+     * TMDb's request quota is used up.
+     */
+    public static final class RequestPriority
+    {
+        /**
+         * Request for content that the user is looking at or waiting for. Sent as soon as the
+         * quota allows.
+         */
+        public static final String VISIBLE = "visible";
+
+        /**
+         * Request for content that the user may look at next. Only sent once no visible request
+         * is waiting, and dropped with a {@link RateLimitedException} if the quota stays used up.
+         */
+        public static final String PREFETCH = "prefetch";
+    }
+
     /**
      * Endpoints for accessing TMDb by. Used to define endpoints for Retrofit.
      */
     private interface TmdbEndpointInterface
     {
         /**
-         * Returns the list of movies from TMDb that best match the given movie sorting criteria.
+         * Returns a page of the list of movies from TMDb that best match the given movie sorting
+         * criteria.
          *
          * @param movieSortingCriteria
          *     sorting criteria from {@link MovieSortingCriteria} to sort movies by
+         * @param pageNumber
+         *     1-based page number of the list to return
+         * @param priority
+         *     priority from {@link RequestPriority} to send the request at
          * @return
-         *     list of movies returned by TMDb
+         *     page of the list of movies returned by TMDb
          */
         @GET("3/movie/{criteria}")
-        Observable<GetMoviesResponse> getMovies(@Path("criteria") String movieSortingCriteria);
+        Observable<GetMoviesResponse> getMovies(
+                @Path("criteria") String movieSortingCriteria,
+                @Query("page") int pageNumber,
+                @Header(RateLimitInterceptor.HEADER_PRIORITY) String priority);
+
+        /**
+         * Returns a page of the movies on TMDb whose titles match the given query, best matches
+         * first.
+         *
+         * @param query
+         *     words to search for in the titles of movies
+         * @param pageNumber
+         *     1-based page number of the search results to return
+         * @return
+         *     page of the movies matching the query returned by TMDb
+         */
+        @GET("3/search/movie")
+        Observable<GetMoviesResponse> searchMovies(@Query("query") String query,
+                                                   @Query("page") int pageNumber);
 
         /**
          * Returns the details of a movie from TMDb for the given movie ID.
@@ -291,15 +690,35 @@ public class TmdbGateway
         Observable<GetMovieDetailsResponse> getMovieDetails(@Path("movieId") int movieId);
 
         /**
-         * Returns the list of reviews from TMDb for the given movie ID.
+         * Returns the details of a movie from TMDb for the given movie ID, with the responses of
+         * other movie endpoints appended to it.
+         *
+         * @param movieId
+         *     movie ID corresponding to the movie to obtain movie details for
+         * @param appendToResponse
+         *     comma-separated list of movie sub-endpoints to append, such as
+         *     {@code "videos,reviews"}
+         * @return
+         *     movie details with the requested sub-endpoint responses returned by TMDb
+         */
+        @GET("3/movie/{movieId}")
+        Observable<GetMovieBundleResponse> getMovieBundle(
+                @Path("movieId") int movieId,
+                @Query("append_to_response") String appendToResponse);
+
+        /**
+         * Returns a page of the list of reviews from TMDb for the given movie ID.
          *
          * @param movieId
          *     movie ID corresponding to the movie to obtain reviews for
+         * @param pageNumber
+         *     1-based page number of the list to return
          * @return
-         *     list of reviews returned by TMDb
+         *     page of the list of reviews returned by TMDb
          */
         @GET("3/movie/{movieId}/reviews")
-        Observable<GetReviewsResponse> getReviews(@Path("movieId") int movieId);
+        Observable<GetReviewsResponse> getReviews(@Path("movieId") int movieId,
+                                                  @Query("page") int pageNumber);
 
         /**
          * Returns the list of videos from TMDb for the given movie ID.
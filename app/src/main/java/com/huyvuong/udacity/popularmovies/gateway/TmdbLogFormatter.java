@@ -0,0 +1,183 @@
+package com.huyvuong.udacity.popularmovies.gateway;
+
+import com.annimon.stream.Collectors;
+import com.annimon.stream.Stream;
+import com.huyvuong.udacity.popularmovies.model.transport.GetMovieBundleResponse;
+import com.huyvuong.udacity.popularmovies.model.transport.GetMovieDetailsResponse;
+import com.huyvuong.udacity.popularmovies.model.transport.GetMoviesResponse;
+import com.huyvuong.udacity.popularmovies.model.transport.GetReviewsResponse;
+import com.huyvuong.udacity.popularmovies.model.transport.GetVideosResponse;
+
+import java.util.List;
+
+/**
+ * Builds the log messages that {@link TmdbGateway} writes for each request, response and error.
+ */
+final class TmdbLogFormatter
+{
+    private TmdbLogFormatter()
+    {
+        throw new UnsupportedOperationException("Do not instantiate utility classes.");
+    }
+
+    /**
+     * Returns the message logged when a gateway call is issued.
+     *
+     * @param methodName
+     *     name of the gateway method being called
+     * @param arguments
+     *     arguments the gateway method was called with
+     * @return
+     *     log message describing the request
+     */
+    static String formatRequest(String methodName, Object... arguments)
+    {
+        return String.format("Request -> %s(%s)", methodName, formatArguments(arguments));
+    }
+
+    /**
+     * Returns the message logged when a gateway call fails.
+     *
+     * @param methodName
+     *     name of the gateway method that failed
+     * @param error
+     *     error the call failed with
+     * @param arguments
+     *     arguments the gateway method was called with
+     * @return
+     *     log message describing the error
+     */
+    static String formatError(String methodName, Throwable error, Object... arguments)
+    {
+        return String.format(
+                "Error <- %s(%s): %s",
+                methodName,
+                formatArguments(arguments),
+                error.getMessage());
+    }
+
+    /**
+     * Returns the message logged when a gateway call returns a response.
+     *
+     * @param methodName
+     *     name of the gateway method that returned
+     * @param description
+     *     summary or item list of the response
+     * @param arguments
+     *     arguments the gateway method was called with
+     * @return
+     *     log message describing the response
+     */
+    static String formatResponse(String methodName, String description, Object... arguments)
+    {
+        return String.format(
+                "Response <- %s(%s): %s",
+                methodName,
+                formatArguments(arguments),
+                description);
+    }
+
+    static String summarizeMovies(GetMoviesResponse response)
+    {
+        return String.format(
+                "{\"page\": %s, \"total_pages\": %s, \"results\": %s}",
+                response.getPageNumber(),
+                response.getTotalPageCount(),
+                sizeOf(response.getMovies()));
+    }
+
+    static String listMovies(GetMoviesResponse response)
+    {
+        // The streaming adapters leave the results null when TMDb sends none.
+        if (response.getMovies() == null)
+        {
+            return "[]";
+        }
+        return Stream.of(response.getMovies())
+                     .map(movie -> "\"" + movie.getOriginalTitle() + "\"")
+                     .collect(Collectors.toList())
+                     .toString();
+    }
+
+    static String summarizeMovieDetails(GetMovieDetailsResponse response)
+    {
+        return String.format(
+                "{\"id\": %s, \"backdrop_path\": \"%s\"}",
+                response.getId(),
+                response.getBackdropPath());
+    }
+
+    static String summarizeMovieBundle(GetMovieBundleResponse response)
+    {
+        return String.format(
+                "{\"id\": %s, \"backdrop_path\": \"%s\", \"videos\": %s, \"reviews\": %s}",
+                response.getId(),
+                response.getBackdropPath(),
+                (response.getVideos() != null) ? sizeOf(response.getVideos().getVideos()) : 0,
+                (response.getReviews() != null) ? sizeOf(response.getReviews().getReviews()) : 0);
+    }
+
+    static String listMovieBundle(GetMovieBundleResponse response)
+    {
+        return String.format(
+                "{\"videos\": %s, \"reviews\": %s}",
+                (response.getVideos() != null) ? listVideos(response.getVideos()) : "[]",
+                (response.getReviews() != null) ? listReviews(response.getReviews()) : "[]");
+    }
+
+    static String summarizeReviews(GetReviewsResponse response)
+    {
+        return String.format(
+                "{\"page\": %s, \"total_pages\": %s, \"results\": %s}",
+                response.getPageNumber(),
+                response.getTotalPageCount(),
+                sizeOf(response.getReviews()));
+    }
+
+    static String listReviews(GetReviewsResponse response)
+    {
+        if (response.getReviews() == null)
+        {
+            return "[]";
+        }
+        return Stream.of(response.getReviews())
+                     .map(review -> "\"" + review.getAuthor() + "\"")
+                     .collect(Collectors.toList())
+                     .toString();
+    }
+
+    static String summarizeVideos(GetVideosResponse response)
+    {
+        return String.format(
+                "{\"results\": %s}",
+                sizeOf(response.getVideos()));
+    }
+
+    static String listVideos(GetVideosResponse response)
+    {
+        if (response.getVideos() == null)
+        {
+            return "[]";
+        }
+        return Stream.of(response.getVideos())
+                     .map(video -> "\"" + video.getName() + "\"")
+                     .collect(Collectors.toList())
+                     .toString();
+    }
+
+    /**
+     * Returns the size of the given list of results, or 0 if TMDb sent none, in which case the
+     * streaming adapters leave it null.
+     */
+    private static int sizeOf(List<?> results)
+    {
+        return (results != null) ? results.size() : 0;
+    }
+
+    private static String formatArguments(Object... arguments)
+    {
+        return Stream.of(arguments)
+                     .map(argument -> "\"" + argument + "\"")
+                     .collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,146 @@
+package com.huyvuong.udacity.popularmovies.gateway;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import okhttp3.HttpUrl;
+
+/**
+ * Metrics of every request made against TMDb since the process started, grouped by endpoint. An
+ * endpoint is identified by its templated path, in which movie IDs are replaced by {@code {id}}
+ * and movie sorting criteria by {@code {criteria}}, such as {@code 3/movie/{criteria}} or
+ * {@code 3/movie/{id}/reviews}. Requests for movie details with other endpoints appended are kept
+ * apart from plain movie details, since they return much larger responses.
+ *
+ * The metrics are recorded by {@link MetricsInterceptor}. Obtain them from
+ * {@link TmdbGateway#getMetrics()}, and dump them with {@link #toJson()} for offline analysis.
+ */
+public class TmdbMetrics
+{
+    private static final String SEGMENT_API_VERSION = "3";
+    private static final String SEGMENT_MOVIE = "movie";
+    private static final String PLACEHOLDER_ID = "{id}";
+    private static final String PLACEHOLDER_CRITERIA = "{criteria}";
+    private static final String QUERY_APPEND_TO_RESPONSE = "append_to_response";
+
+    private final ConcurrentMap<String, EndpointMetrics> endpointMetrics =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Returns the templated paths of the endpoints that requests were made against.
+     *
+     * @return
+     *     sorted list of the templated paths of the endpoints called so far
+     */
+    public List<String> getEndpoints()
+    {
+        List<String> endpoints = new ArrayList<>(endpointMetrics.keySet());
+        Collections.sort(endpoints);
+        return endpoints;
+    }
+
+    /**
+     * Returns the metrics of the endpoint with the given templated path.
+     *
+     * @param endpoint
+     *     templated path of the endpoint, as returned by {@link #getEndpoints()}
+     * @return
+     *     metrics of the endpoint, or null if no requests were made against it
+     */
+    public EndpointMetrics getEndpointMetrics(String endpoint)
+    {
+        return endpointMetrics.get(endpoint);
+    }
+
+    /**
+     * Returns the metrics of every endpoint as a JSON object keyed by templated path.
+     *
+     * @return
+     *     pretty-printed JSON dump of the metrics of every endpoint
+     */
+    public String toJson()
+    {
+        JsonObject json = new JsonObject();
+        for (String endpoint : getEndpoints())
+        {
+            json.add(endpoint, endpointMetrics.get(endpoint).toJson());
+        }
+        return new GsonBuilder().setPrettyPrinting().create().toJson(json);
+    }
+
+    /**
+     * Returns the metrics of the endpoint that the given URL refers to, creating them on first
+     * use.
+     *
+     * @param url
+     *     URL of a request made against TMDb
+     * @return
+     *     metrics of the endpoint of the URL
+     */
+    EndpointMetrics forUrl(HttpUrl url)
+    {
+        String endpoint = templatePathOf(url);
+        EndpointMetrics metrics = endpointMetrics.get(endpoint);
+        if (metrics == null)
+        {
+            EndpointMetrics newMetrics = new EndpointMetrics();
+            metrics = endpointMetrics.putIfAbsent(endpoint, newMetrics);
+            if (metrics == null)
+            {
+                metrics = newMetrics;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns the templated path of the given URL, e.g. {@code 3/movie/{id}/reviews} for
+     * {@code 3/movie/550/reviews}.
+     */
+    static String templatePathOf(HttpUrl url)
+    {
+        List<String> segments = url.pathSegments();
+        StringBuilder templatePath = new StringBuilder();
+        for (int i = 0; i < segments.size(); i++)
+        {
+            String segment = segments.get(i);
+            if (i > 0)
+            {
+                templatePath.append('/');
+            }
+
+            if (i > 0 && TmdbCachePolicy.isNumeric(segment))
+            {
+                templatePath.append(PLACEHOLDER_ID);
+            }
+            else if (i == 2 &&
+                     segments.size() == 3 &&
+                     SEGMENT_API_VERSION.equals(segments.get(0)) &&
+                     SEGMENT_MOVIE.equals(segments.get(1)))
+            {
+                // Movie lists, such as 3/movie/popular.
+                templatePath.append(PLACEHOLDER_CRITERIA);
+            }
+            else
+            {
+                templatePath.append(segment);
+            }
+        }
+
+        String appendToResponse = url.queryParameter(QUERY_APPEND_TO_RESPONSE);
+        if (appendToResponse != null)
+        {
+            templatePath.append('?')
+                        .append(QUERY_APPEND_TO_RESPONSE)
+                        .append('=')
+                        .append(appendToResponse);
+        }
+        return templatePath.toString();
+    }
+}
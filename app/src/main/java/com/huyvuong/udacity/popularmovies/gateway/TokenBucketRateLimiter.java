@@ -0,0 +1,168 @@
+package com.huyvuong.udacity.popularmovies.gateway;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket limiting the rate of requests sent to TMDb. The bucket holds up to a burst of
+ * tokens and refills at a steady rate; every request takes one token, and waits for one if the
+ * bucket is empty.
+ *
+ * Waiting requests are served in two queues: visible requests, for content the user is looking
+ * at, always go ahead of prefetch requests, for content the user may look at next. Within a
+ * queue, requests are served in arrival order. Visible requests wait as long as it takes, whereas
+ * prefetch requests are rejected once too many of them are waiting already or once they have
+ * waited too long.
+ */
+class TokenBucketRateLimiter
+{
+    private static final long NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final int burstSize;
+    private final double tokensPerNano;
+    private final int maxQueuedPrefetches;
+    private final long maxPrefetchWaitNanos;
+
+    private final ArrayDeque<Object> visibleWaiters = new ArrayDeque<>();
+    private final ArrayDeque<Object> prefetchWaiters = new ArrayDeque<>();
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+
+    /**
+     * Constructs a new rate limiter with a full bucket.
+     *
+     * @param burstSize
+     *     number of tokens the bucket holds, i.e. how many requests may be sent at once
+     * @param tokensPerSecond
+     *     rate at which the bucket refills, i.e. how many requests may be sent per second in the
+     *     long run
+     * @param maxQueuedPrefetches
+     *     number of prefetch requests that may wait for a token at once
+     * @param maxPrefetchWaitMillis
+     *     how long a prefetch request may wait for a token
+     */
+    TokenBucketRateLimiter(int burstSize,
+                           double tokensPerSecond,
+                           int maxQueuedPrefetches,
+                           long maxPrefetchWaitMillis)
+    {
+        this.burstSize = burstSize;
+        this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.maxQueuedPrefetches = maxQueuedPrefetches;
+        this.maxPrefetchWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxPrefetchWaitMillis);
+        this.tokens = burstSize;
+    }
+
+    /**
+     * Takes a token for a request, waiting until one is available and every request ahead of this
+     * one has been served.
+     *
+     * @param isPrefetch
+     *     true if the request prefetches content; false if it is for visible content
+     * @throws RateLimitedException
+     *     if the request is a prefetch that had to be rejected
+     * @throws InterruptedIOException
+     *     if the thread was interrupted while waiting
+     */
+    synchronized void acquire(boolean isPrefetch) throws IOException
+    {
+        long startNanos = System.nanoTime();
+        if (isPrefetch && prefetchWaiters.size() >= maxQueuedPrefetches && !hasToken(startNanos))
+        {
+            throw new RateLimitedException(
+                    "Dropped prefetch with " + prefetchWaiters.size() + " prefetches queued");
+        }
+
+        ArrayDeque<Object> waiters = isPrefetch ? prefetchWaiters : visibleWaiters;
+        Object waiter = new Object();
+        waiters.addLast(waiter);
+        try
+        {
+            while (true)
+            {
+                long nowNanos = System.nanoTime();
+                boolean isNext =
+                        (waiter == visibleWaiters.peekFirst()) ||
+                        (visibleWaiters.isEmpty() && waiter == prefetchWaiters.peekFirst());
+                if (isNext && hasToken(nowNanos))
+                {
+                    tokens -= 1.0;
+                    return;
+                }
+
+                // Wait for the next token if this request is next, or to be notified otherwise.
+                long waitNanos = isNext ? (long) Math.ceil((1.0 - tokens) / tokensPerNano) : 0L;
+                if (isPrefetch)
+                {
+                    long remainingNanos = startNanos + maxPrefetchWaitNanos - nowNanos;
+                    if (remainingNanos <= 0)
+                    {
+                        throw new RateLimitedException(
+                                "Dropped prefetch after waiting "
+                                + TimeUnit.NANOSECONDS.toMillis(nowNanos - startNanos) + " ms");
+                    }
+                    waitNanos = (waitNanos > 0) ? Math.min(waitNanos, remainingNanos) :
+                                remainingNanos;
+                }
+                waitFor(waitNanos);
+            }
+        }
+        finally
+        {
+            waiters.remove(waiter);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Returns the number of requests that a request of the given priority would queue behind.
+     *
+     * @param isPrefetch
+     *     true if the request prefetches content; false if it is for visible content
+     * @return
+     *     number of requests waiting ahead of a new request of the given priority
+     */
+    synchronized int getQueueDepth(boolean isPrefetch)
+    {
+        return isPrefetch ?
+               visibleWaiters.size() + prefetchWaiters.size() :
+               visibleWaiters.size();
+    }
+
+    /**
+     * Refills the bucket for the time passed since it was last refilled, and returns whether it
+     * holds a whole token.
+     */
+    private boolean hasToken(long nowNanos)
+    {
+        tokens = Math.min(burstSize, tokens + (nowNanos - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = nowNanos;
+        return tokens >= 1.0;
+    }
+
+    /**
+     * Waits on this limiter for the given time, or until notified if it is 0.
+     */
+    private void waitFor(long nanos) throws InterruptedIOException
+    {
+        try
+        {
+            if (nanos > 0)
+            {
+                // Object.wait(0, 0) would wait until notified, so always wait for at least 1 ms.
+                wait(Math.max(nanos / NANOS_PER_MILLI, 1L));
+            }
+            else
+            {
+                wait();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a TMDb request token");
+        }
+    }
+}
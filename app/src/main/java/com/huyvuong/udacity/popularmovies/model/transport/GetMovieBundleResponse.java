@@ -0,0 +1,137 @@
+package com.huyvuong.udacity.popularmovies.model.transport;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Response object corresponding to the JSON response returned by The Movie Database (TMDb) API when
+ * it returns the details for a given movie with its videos and reviews appended, as requested with
+ * {@code append_to_response=videos,reviews}.
+ */
+public class GetMovieBundleResponse
+        extends GetMovieDetailsResponse
+{
+    @SerializedName("videos")
+    private GetVideosResponse videos;
+
+    @SerializedName("reviews")
+    private GetReviewsResponse reviews;
+
+    private GetMovieBundleResponse(Integer id,
+                                   String backdropPath,
+                                   GetVideosResponse videos,
+                                   GetReviewsResponse reviews)
+    {
+        super(id, backdropPath);
+        this.videos = videos;
+        this.reviews = reviews;
+    }
+
+    /**
+     * Returns the videos appended to this movie's details.
+     *
+     * Corresponds to the {@code videos} field from a TMDb response. Note that TMDb omits the
+     * {@code id} field on appended responses, so {@link GetVideosResponse#getMovieId()} is null;
+     * use {@link #getId()} instead.
+     *
+     * @return
+     *     videos for this movie
+     */
+    public GetVideosResponse getVideos()
+    {
+        return videos;
+    }
+
+    /**
+     * Returns the first page of reviews appended to this movie's details.
+     *
+     * Corresponds to the {@code reviews} field from a TMDb response. Note that TMDb omits the
+     * {@code id} field on appended responses, so {@link GetReviewsResponse#getMovieId()} is null;
+     * use {@link #getId()} instead.
+     *
+     * @return
+     *     first page of reviews for this movie
+     */
+    public GetReviewsResponse getReviews()
+    {
+        return reviews;
+    }
+
+    /**
+     * Builder for use in constructing a new GetMovieBundleResponse object.
+     */
+    public static class Builder
+    {
+        private Integer id;
+        private String backdropPath;
+        private GetVideosResponse videos;
+        private GetReviewsResponse reviews;
+
+        /**
+         * Sets the movie ID.
+         *
+         * @param id
+         *     movie ID assigned by TMDb
+         * @return
+         *     reference to this {@link Builder}
+         */
+        public Builder withId(Integer id)
+        {
+            this.id = id;
+            return this;
+        }
+
+        /**
+         * Sets the movie's backdrop path.
+         *
+         * @param backdropPath
+         *     identifier for use in the URL path to this movie's backdrop image
+         * @return
+         *     reference to this {@link Builder}
+         */
+        public Builder withBackdropPath(String backdropPath)
+        {
+            this.backdropPath = backdropPath;
+            return this;
+        }
+
+        /**
+         * Sets the videos appended to the movie's details.
+         *
+         * @param videos
+         *     videos for the movie
+         * @return
+         *     reference to this {@link Builder}
+         */
+        public Builder withVideos(GetVideosResponse videos)
+        {
+            this.videos = videos;
+            return this;
+        }
+
+        /**
+         * Sets the reviews appended to the movie's details.
+         *
+         * @param reviews
+         *     first page of reviews for the movie
+         * @return
+         *     reference to this {@link Builder}
+         */
+        public Builder withReviews(GetReviewsResponse reviews)
+        {
+            this.reviews = reviews;
+            return this;
+        }
+
+        /**
+         * Constructs a {@link GetMovieBundleResponse} object with the given values for its fields.
+         *
+         * @return
+         *     newly-constructed {@link GetMovieBundleResponse} object with the given values for
+         *     its fields
+         */
+        public GetMovieBundleResponse build()
+        {
+            return new GetMovieBundleResponse(id, backdropPath, videos, reviews);
+        }
+    }
+}
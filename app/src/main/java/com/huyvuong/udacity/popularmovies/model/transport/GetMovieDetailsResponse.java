@@ -14,7 +14,7 @@ public class GetMovieDetailsResponse
     @SerializedName("backdrop_path")
     private String backdropPath;
 
-    private GetMovieDetailsResponse(Integer id, String backdropPath)
+    protected GetMovieDetailsResponse(Integer id, String backdropPath)
     {
         this.id = id;
         this.backdropPath = backdropPath;
@@ -0,0 +1,594 @@
+package com.huyvuong.udacity.popularmovies.model.transport;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.huyvuong.udacity.popularmovies.model.business.Movie;
+import com.huyvuong.udacity.popularmovies.model.business.Review;
+import com.huyvuong.udacity.popularmovies.model.business.Video;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Supplies hand-written streaming {@code TypeAdapter}s for the TMDb transport and business model,
+ * so that Gson reads responses straight into each class's {@code Builder} through a
+ * {@code JsonReader} instead of binding fields by reflection.
+ *
+ * Fields that the model does not use are skipped without being materialized, and values that
+ * repeat across responses, such as {@link Video#getType()}, are interned.
+ *
+ * The gain is in the first response decoded after the app starts, when Gson would otherwise have
+ * to build its reflective adapters; see {@code TmdbJsonDecodingBenchmark}. Once those are built,
+ * reflective decoding is about as fast as these adapters.
+ *
+ * Register with {@code new GsonBuilder().registerTypeAdapterFactory(new TmdbTypeAdapterFactory())}.
+ * Any new field added to a model class must also be added to its adapter here.
+ */
+public class TmdbTypeAdapterFactory
+        implements TypeAdapterFactory
+{
+    // Field names shared by multiple TMDb responses.
+    private static final String FIELD_ID = "id";
+    private static final String FIELD_PAGE = "page";
+    private static final String FIELD_RESULTS = "results";
+    private static final String FIELD_TOTAL_RESULTS = "total_results";
+    private static final String FIELD_TOTAL_PAGES = "total_pages";
+
+    private final TypeAdapter<Movie> movieAdapter = new MovieAdapter().nullSafe();
+    private final TypeAdapter<Review> reviewAdapter = new ReviewAdapter().nullSafe();
+    private final TypeAdapter<Video> videoAdapter = new VideoAdapter().nullSafe();
+    private final TypeAdapter<GetMoviesResponse> getMoviesResponseAdapter =
+            new GetMoviesResponseAdapter().nullSafe();
+    private final TypeAdapter<GetReviewsResponse> getReviewsResponseAdapter =
+            new GetReviewsResponseAdapter().nullSafe();
+    private final TypeAdapter<GetVideosResponse> getVideosResponseAdapter =
+            new GetVideosResponseAdapter().nullSafe();
+    private final TypeAdapter<GetMovieDetailsResponse> getMovieDetailsResponseAdapter =
+            new GetMovieDetailsResponseAdapter().nullSafe();
+    private final TypeAdapter<GetMovieBundleResponse> getMovieBundleResponseAdapter =
+            new GetMovieBundleResponseAdapter().nullSafe();
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type)
+    {
+        Class<? super T> rawType = type.getRawType();
+        if (rawType == Movie.class)
+        {
+            return (TypeAdapter<T>) movieAdapter;
+        }
+        else if (rawType == Review.class)
+        {
+            return (TypeAdapter<T>) reviewAdapter;
+        }
+        else if (rawType == Video.class)
+        {
+            return (TypeAdapter<T>) videoAdapter;
+        }
+        else if (rawType == GetMoviesResponse.class)
+        {
+            return (TypeAdapter<T>) getMoviesResponseAdapter;
+        }
+        else if (rawType == GetReviewsResponse.class)
+        {
+            return (TypeAdapter<T>) getReviewsResponseAdapter;
+        }
+        else if (rawType == GetVideosResponse.class)
+        {
+            return (TypeAdapter<T>) getVideosResponseAdapter;
+        }
+        else if (rawType == GetMovieDetailsResponse.class)
+        {
+            return (TypeAdapter<T>) getMovieDetailsResponseAdapter;
+        }
+        else if (rawType == GetMovieBundleResponse.class)
+        {
+            return (TypeAdapter<T>) getMovieBundleResponseAdapter;
+        }
+        return null;
+    }
+
+    private static Integer nextIntegerOrNull(JsonReader in) throws IOException
+    {
+        if (in.peek() == JsonToken.NULL)
+        {
+            in.nextNull();
+            return null;
+        }
+        return in.nextInt();
+    }
+
+    private static Long nextLongOrNull(JsonReader in) throws IOException
+    {
+        if (in.peek() == JsonToken.NULL)
+        {
+            in.nextNull();
+            return null;
+        }
+        return in.nextLong();
+    }
+
+    private static Double nextDoubleOrNull(JsonReader in) throws IOException
+    {
+        if (in.peek() == JsonToken.NULL)
+        {
+            in.nextNull();
+            return null;
+        }
+        return in.nextDouble();
+    }
+
+    private static String nextStringOrNull(JsonReader in) throws IOException
+    {
+        if (in.peek() == JsonToken.NULL)
+        {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    private static <E> List<E> readList(JsonReader in, TypeAdapter<E> elementAdapter)
+            throws IOException
+    {
+        if (in.peek() == JsonToken.NULL)
+        {
+            in.nextNull();
+            return null;
+        }
+        List<E> elements = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext())
+        {
+            elements.add(elementAdapter.read(in));
+        }
+        in.endArray();
+        return elements;
+    }
+
+    private static <E> void writeList(JsonWriter out,
+                                      List<E> elements,
+                                      TypeAdapter<E> elementAdapter) throws IOException
+    {
+        if (elements == null)
+        {
+            out.nullValue();
+            return;
+        }
+        out.beginArray();
+        for (E element : elements)
+        {
+            elementAdapter.write(out, element);
+        }
+        out.endArray();
+    }
+
+    /**
+     * Streaming adapter for {@link Movie}.
+     */
+    private static class MovieAdapter
+            extends TypeAdapter<Movie>
+    {
+        private static final String FIELD_ORIGINAL_TITLE = "original_title";
+        private static final String FIELD_POSTER_PATH = "poster_path";
+        private static final String FIELD_OVERVIEW = "overview";
+        private static final String FIELD_VOTE_AVERAGE = "vote_average";
+        private static final String FIELD_RELEASE_DATE = "release_date";
+
+        @Override
+        public Movie read(JsonReader in) throws IOException
+        {
+            Movie.Builder builder = new Movie.Builder();
+            in.beginObject();
+            while (in.hasNext())
+            {
+                switch (in.nextName())
+                {
+                    case FIELD_ID:
+                        builder.withId(nextIntegerOrNull(in));
+                        break;
+                    case FIELD_ORIGINAL_TITLE:
+                        builder.withOriginalTitle(nextStringOrNull(in));
+                        break;
+                    case FIELD_POSTER_PATH:
+                        builder.withPosterPath(nextStringOrNull(in));
+                        break;
+                    case FIELD_OVERVIEW:
+                        builder.withPlotSynopsis(nextStringOrNull(in));
+                        break;
+                    case FIELD_VOTE_AVERAGE:
+                        builder.withRating(nextDoubleOrNull(in));
+                        break;
+                    case FIELD_RELEASE_DATE:
+                        builder.withReleaseDate(nextStringOrNull(in));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return builder.build();
+        }
+
+        @Override
+        public void write(JsonWriter out, Movie movie) throws IOException
+        {
+            out.beginObject();
+            out.name(FIELD_ID).value(movie.getId());
+            out.name(FIELD_ORIGINAL_TITLE).value(movie.getOriginalTitle());
+            out.name(FIELD_POSTER_PATH).value(movie.getPosterPath());
+            out.name(FIELD_OVERVIEW).value(movie.getPlotSynopsis());
+            out.name(FIELD_VOTE_AVERAGE).value(movie.getRating());
+            out.name(FIELD_RELEASE_DATE).value(movie.getReleaseDate());
+            out.endObject();
+        }
+    }
+
+    /**
+     * Streaming adapter for {@link Review}.
+     */
+    private static class ReviewAdapter
+            extends TypeAdapter<Review>
+    {
+        private static final String FIELD_AUTHOR = "author";
+        private static final String FIELD_CONTENT = "content";
+
+        @Override
+        public Review read(JsonReader in) throws IOException
+        {
+            Review.Builder builder = new Review.Builder();
+            in.beginObject();
+            while (in.hasNext())
+            {
+                switch (in.nextName())
+                {
+                    case FIELD_ID:
+                        builder.withId(nextStringOrNull(in));
+                        break;
+                    case FIELD_AUTHOR:
+                        builder.withAuthor(nextStringOrNull(in));
+                        break;
+                    case FIELD_CONTENT:
+                        builder.withContent(nextStringOrNull(in));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return builder.build();
+        }
+
+        @Override
+        public void write(JsonWriter out, Review review) throws IOException
+        {
+            out.beginObject();
+            out.name(FIELD_ID).value(review.getId());
+            out.name(FIELD_AUTHOR).value(review.getAuthor());
+            out.name(FIELD_CONTENT).value(review.getContent());
+            out.endObject();
+        }
+    }
+
+    /**
+     * Streaming adapter for {@link Video}. The {@code type} field only takes a handful of values,
+     * so each distinct value is kept as a single shared string instance.
+     */
+    private static class VideoAdapter
+            extends TypeAdapter<Video>
+    {
+        private static final String FIELD_NAME = "name";
+        private static final String FIELD_KEY = "key";
+        private static final String FIELD_TYPE = "type";
+
+        private final Map<String, String> internedTypes = new HashMap<>();
+
+        @Override
+        public Video read(JsonReader in) throws IOException
+        {
+            Video.Builder builder = new Video.Builder();
+            in.beginObject();
+            while (in.hasNext())
+            {
+                switch (in.nextName())
+                {
+                    case FIELD_ID:
+                        builder.withId(nextStringOrNull(in));
+                        break;
+                    case FIELD_NAME:
+                        builder.withName(nextStringOrNull(in));
+                        break;
+                    case FIELD_KEY:
+                        builder.withKey(nextStringOrNull(in));
+                        break;
+                    case FIELD_TYPE:
+                        builder.withType(intern(nextStringOrNull(in)));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return builder.build();
+        }
+
+        @Override
+        public void write(JsonWriter out, Video video) throws IOException
+        {
+            out.beginObject();
+            out.name(FIELD_ID).value(video.getId());
+            out.name(FIELD_NAME).value(video.getName());
+            out.name(FIELD_KEY).value(video.getKey());
+            out.name(FIELD_TYPE).value(video.getType());
+            out.endObject();
+        }
+
+        private String intern(String type)
+        {
+            if (type == null)
+            {
+                return null;
+            }
+            synchronized (internedTypes)
+            {
+                String internedType = internedTypes.get(type);
+                if (internedType == null)
+                {
+                    internedTypes.put(type, type);
+                    internedType = type;
+                }
+                return internedType;
+            }
+        }
+    }
+
+    /**
+     * Streaming adapter for {@link GetMoviesResponse}.
+     */
+    private class GetMoviesResponseAdapter
+            extends TypeAdapter<GetMoviesResponse>
+    {
+        @Override
+        public GetMoviesResponse read(JsonReader in) throws IOException
+        {
+            GetMoviesResponse.Builder builder = new GetMoviesResponse.Builder();
+            in.beginObject();
+            while (in.hasNext())
+            {
+                switch (in.nextName())
+                {
+                    case FIELD_PAGE:
+                        builder.withPageNumber(nextLongOrNull(in));
+                        break;
+                    case FIELD_RESULTS:
+                        builder.withMovies(readList(in, movieAdapter));
+                        break;
+                    case FIELD_TOTAL_RESULTS:
+                        builder.withTotalResultCount(nextLongOrNull(in));
+                        break;
+                    case FIELD_TOTAL_PAGES:
+                        builder.withTotalPageCount(nextLongOrNull(in));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return builder.build();
+        }
+
+        @Override
+        public void write(JsonWriter out, GetMoviesResponse response) throws IOException
+        {
+            out.beginObject();
+            out.name(FIELD_PAGE).value(response.getPageNumber());
+            out.name(FIELD_RESULTS);
+            writeList(out, response.getMovies(), movieAdapter);
+            out.name(FIELD_TOTAL_RESULTS).value(response.getTotalResultCount());
+            out.name(FIELD_TOTAL_PAGES).value(response.getTotalPageCount());
+            out.endObject();
+        }
+    }
+
+    /**
+     * Streaming adapter for {@link GetReviewsResponse}.
+     */
+    private class GetReviewsResponseAdapter
+            extends TypeAdapter<GetReviewsResponse>
+    {
+        @Override
+        public GetReviewsResponse read(JsonReader in) throws IOException
+        {
+            GetReviewsResponse.Builder builder = new GetReviewsResponse.Builder();
+            in.beginObject();
+            while (in.hasNext())
+            {
+                switch (in.nextName())
+                {
+                    case FIELD_ID:
+                        builder.withMovieId(nextIntegerOrNull(in));
+                        break;
+                    case FIELD_PAGE:
+                        builder.withPageNumber(nextLongOrNull(in));
+                        break;
+                    case FIELD_RESULTS:
+                        builder.withReviews(readList(in, reviewAdapter));
+                        break;
+                    case FIELD_TOTAL_RESULTS:
+                        builder.withTotalResultCount(nextLongOrNull(in));
+                        break;
+                    case FIELD_TOTAL_PAGES:
+                        builder.withTotalPageCount(nextLongOrNull(in));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return builder.build();
+        }
+
+        @Override
+        public void write(JsonWriter out, GetReviewsResponse response) throws IOException
+        {
+            out.beginObject();
+            out.name(FIELD_ID).value(response.getMovieId());
+            out.name(FIELD_PAGE).value(response.getPageNumber());
+            out.name(FIELD_RESULTS);
+            writeList(out, response.getReviews(), reviewAdapter);
+            out.name(FIELD_TOTAL_RESULTS).value(response.getTotalResultCount());
+            out.name(FIELD_TOTAL_PAGES).value(response.getTotalPageCount());
+            out.endObject();
+        }
+    }
+
+    /**
+     * Streaming adapter for {@link GetVideosResponse}.
+     */
+    private class GetVideosResponseAdapter
+            extends TypeAdapter<GetVideosResponse>
+    {
+        @Override
+        public GetVideosResponse read(JsonReader in) throws IOException
+        {
+            GetVideosResponse.Builder builder = new GetVideosResponse.Builder();
+            in.beginObject();
+            while (in.hasNext())
+            {
+                switch (in.nextName())
+                {
+                    case FIELD_ID:
+                        builder.withMovieId(nextIntegerOrNull(in));
+                        break;
+                    case FIELD_RESULTS:
+                        builder.withVideos(readList(in, videoAdapter));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return builder.build();
+        }
+
+        @Override
+        public void write(JsonWriter out, GetVideosResponse response) throws IOException
+        {
+            out.beginObject();
+            out.name(FIELD_ID).value(response.getMovieId());
+            out.name(FIELD_RESULTS);
+            writeList(out, response.getVideos(), videoAdapter);
+            out.endObject();
+        }
+    }
+
+    /**
+     * Streaming adapter for {@link GetMovieDetailsResponse}.
+     */
+    private static class GetMovieDetailsResponseAdapter
+            extends TypeAdapter<GetMovieDetailsResponse>
+    {
+        private static final String FIELD_BACKDROP_PATH = "backdrop_path";
+
+        @Override
+        public GetMovieDetailsResponse read(JsonReader in) throws IOException
+        {
+            GetMovieDetailsResponse.Builder builder = new GetMovieDetailsResponse.Builder();
+            in.beginObject();
+            while (in.hasNext())
+            {
+                switch (in.nextName())
+                {
+                    case FIELD_ID:
+                        builder.withId(nextIntegerOrNull(in));
+                        break;
+                    case FIELD_BACKDROP_PATH:
+                        builder.withBackdropPath(nextStringOrNull(in));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return builder.build();
+        }
+
+        @Override
+        public void write(JsonWriter out, GetMovieDetailsResponse response) throws IOException
+        {
+            out.beginObject();
+            out.name(FIELD_ID).value(response.getId());
+            out.name(FIELD_BACKDROP_PATH).value(response.getBackdropPath());
+            out.endObject();
+        }
+    }
+
+    /**
+     * Streaming adapter for {@link GetMovieBundleResponse}.
+     */
+    private class GetMovieBundleResponseAdapter
+            extends TypeAdapter<GetMovieBundleResponse>
+    {
+        private static final String FIELD_BACKDROP_PATH = "backdrop_path";
+        private static final String FIELD_VIDEOS = "videos";
+        private static final String FIELD_REVIEWS = "reviews";
+
+        @Override
+        public GetMovieBundleResponse read(JsonReader in) throws IOException
+        {
+            GetMovieBundleResponse.Builder builder = new GetMovieBundleResponse.Builder();
+            in.beginObject();
+            while (in.hasNext())
+            {
+                switch (in.nextName())
+                {
+                    case FIELD_ID:
+                        builder.withId(nextIntegerOrNull(in));
+                        break;
+                    case FIELD_BACKDROP_PATH:
+                        builder.withBackdropPath(nextStringOrNull(in));
+                        break;
+                    case FIELD_VIDEOS:
+                        builder.withVideos(getVideosResponseAdapter.read(in));
+                        break;
+                    case FIELD_REVIEWS:
+                        builder.withReviews(getReviewsResponseAdapter.read(in));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return builder.build();
+        }
+
+        @Override
+        public void write(JsonWriter out, GetMovieBundleResponse response) throws IOException
+        {
+            out.beginObject();
+            out.name(FIELD_ID).value(response.getId());
+            out.name(FIELD_BACKDROP_PATH).value(response.getBackdropPath());
+            out.name(FIELD_VIDEOS);
+            getVideosResponseAdapter.write(out, response.getVideos());
+            out.name(FIELD_REVIEWS);
+            getReviewsResponseAdapter.write(out, response.getReviews());
+            out.endObject();
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.huyvuong.udacity.popularmovies.scheduler;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.os.Process;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.huyvuong.udacity.popularmovies.R;
+import com.huyvuong.udacity.popularmovies.gateway.LogLinearHistogram;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+/**
+ * Process-wide ReactiveX schedulers for network and database work, replacing the unbounded
+ * {@code Schedulers.io()}. Work is split into four lanes, each with its own bounded pool of
+ * worker threads, so that background work can never take the threads that the screen the user is
+ * looking at is waiting on:
+ *
+ * <ul>
+ * <li>{@link #visible()}: TMDb requests for content on screen, which the user is waiting for.</li>
+ * <li>{@link #database()}: reads from the offline catalog cache and the favorites table for
+ * content on screen. These get their own workers because TMDb requests can hold a visible worker
+ * for seconds while they wait for a rate limit token or to retry, and the cache is what the screen
+ * falls back to exactly when TMDb is slow or down.</li>
+ * <li>{@link #prefetch()}: requests for content that the user may look at next.</li>
+ * <li>{@link #sync()}: writes to the offline catalog cache and the favorites table, which nobody
+ * waits for. A single worker by default, so that writes do not contend for the database.</li>
+ * </ul>
+ *
+ * Prefetch and sync workers run at background thread priority, so that they also yield the CPU
+ * to visible work and to the main thread. Work queued on a lane is dropped without running once
+ * its subscriber unsubscribes, such as when the activity that asked for it is destroyed.
+ *
+ * The worker counts are read from {@code integers.xml}. Every lane records how long work waited
+ * for a worker and how long it ran; dump them with {@link #toJson()}.
+ *
+ * A single instance is shared across the whole process. Obtain it with
+ * {@link #getInstance(Context)}.
+ */
+public class PriorityScheduler
+{
+    private static PriorityScheduler instance;
+
+    private final Lane visibleLane;
+    private final Lane databaseLane;
+    private final Lane prefetchLane;
+    private final Lane syncLane;
+
+    /**
+     * Constructs a new set of lanes configured from the given context.
+     *
+     * @param context
+     *     application context to read the worker counts from
+     */
+    private PriorityScheduler(Context context)
+    {
+        Resources resources = context.getResources();
+        long keepAliveSeconds = resources.getInteger(R.integer.scheduler_keep_alive_seconds);
+        visibleLane = new Lane("visible",
+                               resources.getInteger(R.integer.scheduler_visible_workers),
+                               keepAliveSeconds,
+                               Process.THREAD_PRIORITY_DEFAULT);
+        databaseLane = new Lane("database",
+                                resources.getInteger(R.integer.scheduler_database_workers),
+                                keepAliveSeconds,
+                                Process.THREAD_PRIORITY_DEFAULT);
+        prefetchLane = new Lane("prefetch",
+                                resources.getInteger(R.integer.scheduler_prefetch_workers),
+                                keepAliveSeconds,
+                                Process.THREAD_PRIORITY_BACKGROUND);
+        syncLane = new Lane("sync",
+                            resources.getInteger(R.integer.scheduler_sync_workers),
+                            keepAliveSeconds,
+                            Process.THREAD_PRIORITY_BACKGROUND +
+                            Process.THREAD_PRIORITY_LESS_FAVORABLE);
+    }
+
+    /**
+     * Returns the process-wide PriorityScheduler instance, creating it on first use.
+     *
+     * @param context
+     *     any context; only its application context is used
+     * @return
+     *     shared PriorityScheduler instance
+     */
+    public static synchronized PriorityScheduler getInstance(Context context)
+    {
+        if (instance == null)
+        {
+            instance = new PriorityScheduler(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the scheduler for TMDb requests for content that the user is looking at.
+     *
+     * @return
+     *     scheduler of the visible lane
+     */
+    public Scheduler visible()
+    {
+        return visibleLane.scheduler;
+    }
+
+    /**
+     * Returns the scheduler for database reads for content that the user is looking at.
+     *
+     * @return
+     *     scheduler of the database lane
+     */
+    public Scheduler database()
+    {
+        return databaseLane.scheduler;
+    }
+
+    /**
+     * Returns the scheduler for work on content that the user may look at next.
+     *
+     * @return
+     *     scheduler of the prefetch lane
+     */
+    public Scheduler prefetch()
+    {
+        return prefetchLane.scheduler;
+    }
+
+    /**
+     * Returns the scheduler for background writes that nobody waits for.
+     *
+     * @return
+     *     scheduler of the sync lane
+     */
+    public Scheduler sync()
+    {
+        return syncLane.scheduler;
+    }
+
+    /**
+     * Returns the thread usage of every lane as a JSON object keyed by lane name.
+     *
+     * @return
+     *     pretty-printed JSON dump of the thread usage of every lane
+     */
+    public String toJson()
+    {
+        JsonObject json = new JsonObject();
+        json.add(visibleLane.name, visibleLane.toJson());
+        json.add(databaseLane.name, databaseLane.toJson());
+        json.add(prefetchLane.name, prefetchLane.toJson());
+        json.add(syncLane.name, syncLane.toJson());
+        return new GsonBuilder().setPrettyPrinting().create().toJson(json);
+    }
+
+    /**
+     * Bounded pool of worker threads at a given thread priority, with the scheduler running work
+     * on it and the metrics of its thread usage.
+     */
+    private static class Lane
+    {
+        final String name;
+        final ThreadPoolExecutor executor;
+        final Scheduler scheduler;
+        final AtomicLong completedCount = new AtomicLong();
+        final LogLinearHistogram queueWaitMicros = new LogLinearHistogram();
+        final LogLinearHistogram runMicros = new LogLinearHistogram();
+
+        Lane(String name, int workerCount, long keepAliveSeconds, int threadPriority)
+        {
+            this.name = name;
+            AtomicInteger threadCount = new AtomicInteger();
+            executor = new ThreadPoolExecutor(
+                    workerCount,
+                    workerCount,
+                    keepAliveSeconds,
+                    TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(),
+                    runnable -> new Thread(
+                            () ->
+                            {
+                                Process.setThreadPriority(threadPriority);
+                                runnable.run();
+                            },
+                            name + "-worker-" + threadCount.incrementAndGet()));
+
+            // Let idle lanes give their threads back.
+            executor.allowCoreThreadTimeOut(true);
+
+            scheduler = Schedulers.from(command -> executor.execute(timed(command)));
+        }
+
+        /**
+         * Returns the given work wrapped to record how long it waited and ran.
+         */
+        Runnable timed(Runnable command)
+        {
+            long queuedNanos = System.nanoTime();
+            return () ->
+            {
+                long startNanos = System.nanoTime();
+                queueWaitMicros.record(TimeUnit.NANOSECONDS.toMicros(startNanos - queuedNanos));
+                try
+                {
+                    command.run();
+                }
+                finally
+                {
+                    runMicros.record(
+                            TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+                    completedCount.incrementAndGet();
+                }
+            };
+        }
+
+        JsonObject toJson()
+        {
+            JsonObject json = new JsonObject();
+            json.addProperty("workers", executor.getMaximumPoolSize());
+            json.addProperty("liveThreads", executor.getPoolSize());
+            json.addProperty("largestThreadCount", executor.getLargestPoolSize());
+            json.addProperty("activeThreads", executor.getActiveCount());
+            json.addProperty("queueDepth", executor.getQueue().size());
+            json.addProperty("completed", completedCount.get());
+            json.add("queueWaitMicros", queueWaitMicros.toJson());
+            json.add("runMicros", runMicros.toJson());
+            return json;
+        }
+    }
+}
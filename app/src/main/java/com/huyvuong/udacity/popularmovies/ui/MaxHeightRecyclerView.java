@@ -0,0 +1,63 @@
+package com.huyvuong.udacity.popularmovies.ui;
+
+import android.content.Context;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+import android.util.AttributeSet;
+
+/**
+ * RecyclerView that wraps its rows up to a maximum height and scrolls past it.
+ *
+ * A RecyclerView with a height of {@code wrap_content} inside a scrolling parent, such as a
+ * NestedScrollView, is measured with an unlimited height. Its layout manager then lays out every
+ * row at once and never recycles any of them. Capping the height keeps the number of rows laid out
+ * to the ones that fit, and the rows scrolled out of view are recycled as usual.
+ */
+public class MaxHeightRecyclerView
+        extends RecyclerView
+{
+    private int maxHeight;
+
+    public MaxHeightRecyclerView(Context context)
+    {
+        super(context);
+    }
+
+    public MaxHeightRecyclerView(Context context, @Nullable AttributeSet attrs)
+    {
+        super(context, attrs);
+    }
+
+    public MaxHeightRecyclerView(Context context, @Nullable AttributeSet attrs, int defStyle)
+    {
+        super(context, attrs, defStyle);
+    }
+
+    /**
+     * Sets the height that this RecyclerView grows to at most. The rows beyond it are laid out
+     * only when scrolled into view.
+     *
+     * @param maxHeight
+     *     maximum height in pixels, or 0 for no maximum
+     */
+    public void setMaxHeight(int maxHeight)
+    {
+        this.maxHeight = maxHeight;
+        requestLayout();
+    }
+
+    @Override
+    protected void onMeasure(int widthSpec, int heightSpec)
+    {
+        if (maxHeight > 0)
+        {
+            // Measure against the maximum height, also when the parent leaves the height open.
+            int heightMode = MeasureSpec.getMode(heightSpec);
+            int heightSize = MeasureSpec.getSize(heightSpec);
+            heightSpec = (heightMode == MeasureSpec.UNSPECIFIED) ?
+                         MeasureSpec.makeMeasureSpec(maxHeight, MeasureSpec.AT_MOST) :
+                         MeasureSpec.makeMeasureSpec(Math.min(heightSize, maxHeight), heightMode);
+        }
+        super.onMeasure(widthSpec, heightSpec);
+    }
+}
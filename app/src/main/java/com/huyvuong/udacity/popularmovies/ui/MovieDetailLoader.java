@@ -0,0 +1,257 @@
+package com.huyvuong.udacity.popularmovies.ui;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.os.RemoteException;
+import android.util.Log;
+
+import com.annimon.stream.Collectors;
+import com.annimon.stream.Stream;
+import com.huyvuong.udacity.popularmovies.R;
+import com.huyvuong.udacity.popularmovies.data.CatalogCache;
+import com.huyvuong.udacity.popularmovies.gateway.TmdbGateway;
+import com.huyvuong.udacity.popularmovies.model.business.Review;
+import com.huyvuong.udacity.popularmovies.model.business.Video;
+import com.huyvuong.udacity.popularmovies.model.transport.GetMovieBundleResponse;
+import com.huyvuong.udacity.popularmovies.scheduler.PriorityScheduler;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.functions.Func0;
+
+/**
+ * Loads everything that the detail screen shows beyond what is already known from the master
+ * screen: the backdrop path, the trailers and the reviews of a movie. All three are delivered
+ * together in a single {@link MovieExtras}, so that the detail screen can be laid out once.
+ *
+ * All three come from a single movie bundle request to TMDb. The trailers and reviews each fall
+ * back to the offline catalog cache on their own, if the request fails, takes longer than
+ * {@code R.integer.detail_network_timeout_millis}, or lacks that section. Reading the cache gives
+ * up after {@code R.integer.detail_cache_timeout_millis}, in which case the section is reported as
+ * failed. Every bundle loaded from TMDb is also written to the offline catalog cache.
+ */
+public class MovieDetailLoader
+{
+    private static final String LOG_TAG = MovieDetailLoader.class.getSimpleName();
+
+    // Page count of the reviews when only the cached first page is known.
+    private static final long SINGLE_PAGE = 1L;
+
+    private final ContentResolver contentResolver;
+    private final TmdbGateway tmdbGateway;
+    private final PriorityScheduler scheduler;
+    private final long networkTimeoutMillis;
+    private final long cacheTimeoutMillis;
+
+    /**
+     * Constructs a new loader for the detail screen.
+     *
+     * @param context
+     *     context used to obtain the gateway, the offline catalog cache and the timeouts
+     */
+    public MovieDetailLoader(Context context)
+    {
+        this.contentResolver = context.getContentResolver();
+        this.tmdbGateway = TmdbGateway.getInstance(context);
+        this.scheduler = PriorityScheduler.getInstance(context);
+        this.networkTimeoutMillis =
+                context.getResources().getInteger(R.integer.detail_network_timeout_millis);
+        this.cacheTimeoutMillis =
+                context.getResources().getInteger(R.integer.detail_cache_timeout_millis);
+    }
+
+    /**
+     * Returns an observable emitting the backdrop path, trailers and reviews of the given movie
+     * once all three are settled, on the main thread.
+     *
+     * @param movieId
+     *     TMDb ID of the movie to load the extras for
+     * @return
+     *     observable emitting a single {@link MovieExtras}; it never fails
+     */
+    public Observable<MovieExtras> load(int movieId)
+    {
+        // Share a single bundle request between the three sections.
+        Observable<GetMovieBundleResponse> bundleObservable = tmdbGateway
+                .getMovieBundle(movieId)
+                .autoConnect()
+                .timeout(networkTimeoutMillis, TimeUnit.MILLISECONDS)
+                .doOnNext(response -> cacheExtras(movieId, response))
+                .cache();
+
+        Observable<String> backdropPathObservable = bundleObservable
+                .map(GetMovieBundleResponse::getBackdropPath)
+                .onErrorReturn(error -> null);
+        Observable<List<Video>> trailersObservable = loadSection(
+                bundleObservable.map(response -> (response.getVideos() != null) ?
+                                                 response.getVideos().getVideos() :
+                                                 null),
+                () -> CatalogCache.queryVideos(contentResolver, movieId))
+                .map(videos -> (videos != null) ? filterTrailers(videos) : null);
+        Observable<List<Review>> reviewsObservable = loadSection(
+                bundleObservable.map(response -> (response.getReviews() != null) ?
+                                                 response.getReviews().getReviews() :
+                                                 null),
+                () -> CatalogCache.queryReviews(contentResolver, movieId));
+        Observable<Long> reviewPageCountObservable = bundleObservable
+                .map(response -> (response.getReviews() != null &&
+                                  response.getReviews().getTotalPageCount() != null) ?
+                                 response.getReviews().getTotalPageCount() :
+                                 SINGLE_PAGE)
+                .onErrorReturn(error -> SINGLE_PAGE);
+
+        return Observable
+                .zip(backdropPathObservable,
+                     trailersObservable,
+                     reviewsObservable,
+                     reviewPageCountObservable,
+                     MovieExtras::new)
+                .observeOn(AndroidSchedulers.mainThread());
+    }
+
+    /**
+     * Returns an observable emitting the items of a section of the bundle, or the items cached for
+     * that section if the bundle fails or lacks the section. Emits null if neither is available.
+     */
+    private <T> Observable<List<T>> loadSection(Observable<List<T>> networkObservable,
+                                                Func0<List<T>> cacheQuery)
+    {
+        Observable<List<T>> cacheObservable = Observable.create(
+                subscriber ->
+                {
+                    subscriber.onNext(cacheQuery.call());
+                    subscriber.onCompleted();
+                });
+        Observable<List<T>> fallbackObservable = cacheObservable
+                .subscribeOn(scheduler.database())
+                .timeout(cacheTimeoutMillis, TimeUnit.MILLISECONDS)
+                .map(items -> !items.isEmpty() ? items : null)
+                .onErrorReturn(error ->
+                               {
+                                   Log.e(LOG_TAG, error.getMessage(), error);
+                                   return null;
+                               });
+        return networkObservable
+                .onErrorReturn(error -> null)
+                .flatMap(items -> (items != null) ? Observable.just(items) : fallbackObservable);
+    }
+
+    /**
+     * Writes the videos and reviews from the given movie bundle response to the offline catalog
+     * cache in the background.
+     */
+    private void cacheExtras(int movieId, GetMovieBundleResponse response)
+    {
+        Observable<Void> cacheObservable = Observable.create(
+                subscriber ->
+                {
+                    try
+                    {
+                        if (response.getVideos() != null &&
+                            response.getVideos().getVideos() != null)
+                        {
+                            CatalogCache.replaceVideos(contentResolver,
+                                                       movieId,
+                                                       response.getVideos().getVideos());
+                        }
+                        if (response.getReviews() != null &&
+                            response.getReviews().getReviews() != null)
+                        {
+                            CatalogCache.replaceReviews(contentResolver,
+                                                        movieId,
+                                                        response.getReviews().getReviews());
+                        }
+                        subscriber.onCompleted();
+                    }
+                    catch (RemoteException | OperationApplicationException e)
+                    {
+                        subscriber.onError(e);
+                    }
+                });
+        cacheObservable
+                .subscribeOn(scheduler.sync())
+                .subscribe(ignored -> {}, error -> Log.e(LOG_TAG, error.getMessage(), error));
+    }
+
+    /**
+     * Returns the videos from the given list that are trailers.
+     */
+    private static List<Video> filterTrailers(List<Video> videos)
+    {
+        return Stream.of(videos)
+                     .filter(video -> "Trailer".equals(video.getType()))
+                     .collect(Collectors.toList());
+    }
+
+    /**
+     * Backdrop path, trailers and first page of reviews of a movie, as loaded by
+     * {@link MovieDetailLoader}. Each is null if it could not be loaded from either TMDb or the
+     * offline catalog cache.
+     */
+    public static class MovieExtras
+    {
+        private final String backdropPath;
+        private final List<Video> trailers;
+        private final List<Review> reviews;
+        private final long reviewPageCount;
+
+        private MovieExtras(String backdropPath,
+                            List<Video> trailers,
+                            List<Review> reviews,
+                            long reviewPageCount)
+        {
+            this.backdropPath = backdropPath;
+            this.trailers = trailers;
+            this.reviews = reviews;
+            this.reviewPageCount = reviewPageCount;
+        }
+
+        /**
+         * Returns the path to the movie's backdrop image.
+         *
+         * @return
+         *     backdrop path, or null if it could not be loaded
+         */
+        public String getBackdropPath()
+        {
+            return backdropPath;
+        }
+
+        /**
+         * Returns the trailers of the movie.
+         *
+         * @return
+         *     trailers, or null if they could not be loaded
+         */
+        public List<Video> getTrailers()
+        {
+            return trailers;
+        }
+
+        /**
+         * Returns the first page of reviews of the movie.
+         *
+         * @return
+         *     first page of reviews, or null if they could not be loaded
+         */
+        public List<Review> getReviews()
+        {
+            return reviews;
+        }
+
+        /**
+         * Returns the number of pages of reviews that TMDb has for the movie.
+         *
+         * @return
+         *     total number of pages of reviews; 1 if only the first page is known
+         */
+        public long getReviewPageCount()
+        {
+            return reviewPageCount;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.huyvuong.udacity.popularmovies.ui;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import com.huyvuong.udacity.popularmovies.R;
+import com.huyvuong.udacity.popularmovies.data.CatalogCache;
+import com.huyvuong.udacity.popularmovies.gateway.TmdbGateway;
+import com.huyvuong.udacity.popularmovies.model.business.Movie;
+import com.huyvuong.udacity.popularmovies.scheduler.PriorityScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import rx.android.schedulers.AndroidSchedulers;
+
+/**
+ * Turns the text typed into a search box into lists of matching movies from TMDb.
+ *
+ * A search only starts once the user stops typing for {@code R.integer.search_debounce_millis},
+ * and only if the query changed since the last search. Starting a search cancels the one still in
+ * flight, so results always belong to the latest query. The results of the last
+ * {@code R.integer.search_result_cache_size} queries are kept in memory, so that going back to an
+ * earlier query does not call TMDb again.
+ *
+ * If TMDb cannot be reached, the local catalog is searched instead.
+ */
+public class MovieSearch
+{
+    private static final String LOG_TAG = MovieSearch.class.getSimpleName();
+    private static final int FIRST_PAGE = 1;
+
+    private final ContentResolver contentResolver;
+    private final TmdbGateway tmdbGateway;
+    private final PriorityScheduler scheduler;
+    private final long debounceMillis;
+
+    // Recent search results from TMDb, keyed by their lowercase query.
+    private final LruCache<String, List<Movie>> recentResults;
+
+    /**
+     * Constructs a new search for movies.
+     *
+     * @param context
+     *     context used to obtain the gateway, the local catalog and the search configuration
+     */
+    public MovieSearch(Context context)
+    {
+        this.contentResolver = context.getContentResolver();
+        this.tmdbGateway = TmdbGateway.getInstance(context);
+        this.scheduler = PriorityScheduler.getInstance(context);
+        this.debounceMillis = context.getResources().getInteger(R.integer.search_debounce_millis);
+        this.recentResults = new LruCache<>(
+                context.getResources().getInteger(R.integer.search_result_cache_size));
+    }
+
+    /**
+     * Returns an observable emitting the movies matching each query that the user settles on, on
+     * the main thread. Blank queries are ignored.
+     *
+     * @param queries
+     *     text of the search box, emitted every time it changes
+     * @return
+     *     observable emitting the movies matching the latest query
+     */
+    public Observable<List<Movie>> search(Observable<String> queries)
+    {
+        return queries
+                .debounce(debounceMillis, TimeUnit.MILLISECONDS)
+                .map(String::trim)
+                .filter(query -> !query.isEmpty())
+                .distinctUntilChanged()
+                .switchMap(this::searchFor)
+                .observeOn(AndroidSchedulers.mainThread());
+    }
+
+    /**
+     * Returns an observable emitting the movies matching the given query, from the recent results
+     * if possible.
+     */
+    private Observable<List<Movie>> searchFor(String query)
+    {
+        String cacheKey = query.toLowerCase(Locale.US);
+        List<Movie> cachedMovies = recentResults.get(cacheKey);
+        if (cachedMovies != null)
+        {
+            return Observable.just(cachedMovies);
+        }
+
+        return tmdbGateway
+                .searchMovies(query, FIRST_PAGE)
+                .map(response -> (response.getMovies() != null) ?
+                                 response.getMovies() :
+                                 new ArrayList<Movie>())
+                .doOnNext(movies -> recentResults.put(cacheKey, movies))
+                .onErrorResumeNext(error -> searchLocalCatalogFor(query));
+    }
+
+    /**
+     * Returns an observable emitting the movies in the local catalog matching the given query. The
+     * results are not kept, so that the next search for the query tries TMDb again.
+     */
+    private Observable<List<Movie>> searchLocalCatalogFor(String query)
+    {
+        Observable<List<Movie>> localSearchObservable = Observable.create(
+                subscriber ->
+                {
+                    subscriber.onNext(CatalogCache.searchMovies(contentResolver, query));
+                    subscriber.onCompleted();
+                });
+        return localSearchObservable
+                .subscribeOn(scheduler.database())
+                .onErrorReturn(error ->
+                               {
+                                   Log.e(LOG_TAG, error.getMessage(), error);
+                                   return new ArrayList<>();
+                               });
+    }
+}
@@ -0,0 +1,492 @@
+package com.huyvuong.udacity.popularmovies.ui;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.os.Bundle;
+import android.os.RemoteException;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+
+import com.huyvuong.udacity.popularmovies.data.CatalogCache;
+import com.huyvuong.udacity.popularmovies.gateway.TmdbGateway;
+import com.huyvuong.udacity.popularmovies.model.business.Movie;
+import com.huyvuong.udacity.popularmovies.model.transport.GetMoviesResponse;
+import com.huyvuong.udacity.popularmovies.scheduler.PriorityScheduler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import rx.Observable;
+import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.observables.ConnectableObservable;
+
+/**
+ * Paged data source backing the master poster grid. Loads pages of movies from TMDb for a given
+ * sorting criteria as the user scrolls, into the list of movies shared with the grid's adapter.
+ *
+ * The source keeps a window of at most {@link #MAX_PAGES_IN_MEMORY} consecutive pages. The next
+ * page is requested as soon as the user reaches the last loaded page, so that it is usually ready
+ * before the end of the grid is visible. Once the window is full, the page furthest from the user
+ * is evicted, and it is reloaded if the user scrolls back to it. Movies that TMDb repeats across
+ * pages are only shown once.
+ *
+ * Pages loaded ahead of the scroll position are requested as prefetches, so that they yield to
+ * requests for content on screen while TMDb's request quota is used up. A page dropped that way is
+ * requested again on the next scroll.
+ *
+ * The adapter is notified with ranged insertions and removals only. Every page loaded from TMDb is
+ * also written to the offline catalog cache, which is also where the window is restored from after
+ * the activity is recreated, so that the saved instance state stays small.
+ */
+public class PagedMovieSource
+{
+    private static final String LOG_TAG = PagedMovieSource.class.getSimpleName();
+
+    private static final int FIRST_PAGE = 1;
+    private static final int MAX_PAGES_IN_MEMORY = 10;
+
+    private static final String BUNDLE_CRITERIA = "pagedMovieSourceCriteria";
+    private static final String BUNDLE_PAGE_NUMBERS = "pagedMovieSourcePageNumbers";
+    private static final String BUNDLE_TOTAL_PAGE_COUNT = "pagedMovieSourceTotalPageCount";
+
+    private final Context context;
+    private final List<Movie> movies;
+    private final PosterAdapter adapter;
+    private final Callback callback;
+
+    private final ArrayDeque<LoadedPage> loadedPages = new ArrayDeque<>();
+    private final Set<Integer> loadedMovieIds = new HashSet<>();
+
+    private String movieSortingCriteria;
+    private long totalPageCount;
+    private Subscription pendingPageSubscription;
+    private Subscription pendingRestoreSubscription;
+
+    /**
+     * Constructs a new paged movie source.
+     *
+     * @param context
+     *     context used to obtain the {@link TmdbGateway}
+     * @param movies
+     *     list of movies shown by the given adapter, which this source loads pages into
+     * @param adapter
+     *     adapter to notify when pages are inserted into or removed from the list of movies
+     * @param callback
+     *     callback to notify when the first page is loaded or a page fails to load
+     */
+    public PagedMovieSource(Context context,
+                            List<Movie> movies,
+                            PosterAdapter adapter,
+                            Callback callback)
+    {
+        this.context = context;
+        this.movies = movies;
+        this.adapter = adapter;
+        this.callback = callback;
+    }
+
+    /**
+     * Discards any loaded pages and loads the first page of movies for the given criteria. The
+     * first page is handed to {@link Callback#onFirstPageLoaded(List)} rather than being inserted
+     * into the list of movies directly. Further pages are only loaded once the adapter has applied
+     * it.
+     *
+     * @param movieSortingCriteria
+     *     sorting criteria to load pages of movies for
+     */
+    public void load(String movieSortingCriteria)
+    {
+        stop();
+        this.movieSortingCriteria = movieSortingCriteria;
+        loadPage(FIRST_PAGE, TmdbGateway.RequestPriority.VISIBLE);
+    }
+
+    /**
+     * Stops paging, for example when switching the grid to a list of movies that is not paged.
+     * Any page that is still loading is ignored when it arrives.
+     */
+    public void stop()
+    {
+        if (pendingPageSubscription != null)
+        {
+            pendingPageSubscription.unsubscribe();
+            pendingPageSubscription = null;
+        }
+        if (pendingRestoreSubscription != null)
+        {
+            pendingRestoreSubscription.unsubscribe();
+            pendingRestoreSubscription = null;
+        }
+        movieSortingCriteria = null;
+        totalPageCount = 0;
+        loadedPages.clear();
+        loadedMovieIds.clear();
+    }
+
+    /**
+     * Returns the sorting criteria that pages are currently being loaded for.
+     *
+     * @return
+     *     current sorting criteria, or null if paging is stopped
+     */
+    public String getMovieSortingCriteria()
+    {
+        return movieSortingCriteria;
+    }
+
+    /**
+     * Returns true if at least one page of movies has loaded for the current criteria.
+     *
+     * @return
+     *     true if pages of movies are loaded; false otherwise
+     */
+    public boolean hasLoadedPages()
+    {
+        return !loadedPages.isEmpty();
+    }
+
+    /**
+     * Returns true if the pages saved by {@link #saveState(Bundle)} are still being read back from
+     * the offline catalog cache.
+     *
+     * @return
+     *     true if the paging window is being restored; false otherwise
+     */
+    public boolean isRestoring()
+    {
+        return pendingRestoreSubscription != null;
+    }
+
+    /**
+     * Returns a scroll listener that loads or evicts pages as the given layout manager's visible
+     * range changes. Add it to the RecyclerView showing the list of movies.
+     *
+     * @param layoutManager
+     *     layout manager of the RecyclerView showing the list of movies
+     * @return
+     *     scroll listener that drives paging
+     */
+    public RecyclerView.OnScrollListener createScrollListener(LinearLayoutManager layoutManager)
+    {
+        return new RecyclerView.OnScrollListener()
+        {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy)
+            {
+                onVisibleRangeChanged(layoutManager.findFirstVisibleItemPosition(),
+                                      layoutManager.findLastVisibleItemPosition());
+            }
+        };
+    }
+
+    /**
+     * Saves the paging window into the given bundle: the criteria and the numbers of the loaded
+     * pages, but not the movies on them, which {@link #restoreState(Bundle)} reads back from the
+     * offline catalog cache.
+     *
+     * @param outState
+     *     bundle to save the paging window into
+     */
+    public void saveState(Bundle outState)
+    {
+        if (movieSortingCriteria == null || loadedPages.isEmpty())
+        {
+            return;
+        }
+
+        int[] pageNumbers = new int[loadedPages.size()];
+        int index = 0;
+        for (LoadedPage page : loadedPages)
+        {
+            pageNumbers[index++] = page.pageNumber;
+        }
+        outState.putString(BUNDLE_CRITERIA, movieSortingCriteria);
+        outState.putIntArray(BUNDLE_PAGE_NUMBERS, pageNumbers);
+        outState.putLong(BUNDLE_TOTAL_PAGE_COUNT, totalPageCount);
+    }
+
+    /**
+     * Restores the paging window saved by {@link #saveState(Bundle)}, reading the movies on its
+     * pages from the offline catalog cache in the background. The restored movies are handed to
+     * {@link Callback#onFirstPageLoaded(List)}. Pages are restored up to the first one missing from
+     * the cache; if the first page is missing too, it is loaded from TMDb instead.
+     *
+     * @param savedInstanceState
+     *     bundle to restore the paging window from
+     */
+    public void restoreState(Bundle savedInstanceState)
+    {
+        stop();
+        String criteria = savedInstanceState.getString(BUNDLE_CRITERIA);
+        int[] pageNumbers = savedInstanceState.getIntArray(BUNDLE_PAGE_NUMBERS);
+        if (criteria == null || pageNumbers == null || pageNumbers.length == 0)
+        {
+            return;
+        }
+        movieSortingCriteria = criteria;
+        totalPageCount = savedInstanceState.getLong(BUNDLE_TOTAL_PAGE_COUNT);
+
+        ContentResolver contentResolver = context.getContentResolver();
+        Observable<List<List<Movie>>> restoreObservable = Observable.create(
+                subscriber ->
+                {
+                    List<List<Movie>> pages = new ArrayList<>(pageNumbers.length);
+                    for (int pageNumber : pageNumbers)
+                    {
+                        pages.add(CatalogCache.queryMoviePage(contentResolver,
+                                                              criteria,
+                                                              pageNumber));
+                    }
+                    subscriber.onNext(pages);
+                    subscriber.onCompleted();
+                });
+        pendingRestoreSubscription = restoreObservable
+                .subscribeOn(PriorityScheduler.getInstance(context).database())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(pages ->
+                           {
+                               pendingRestoreSubscription = null;
+                               onPagesRestored(pageNumbers, pages);
+                           },
+                           error ->
+                           {
+                               pendingRestoreSubscription = null;
+                               Log.e(LOG_TAG, "Failed to restore pages", error);
+                               load(criteria);
+                           });
+    }
+
+    /**
+     * Loads the page after or before the current window if the visible range is within one page
+     * of its end or start.
+     *
+     * @param firstVisiblePosition
+     *     adapter position of the first visible movie
+     * @param lastVisiblePosition
+     *     adapter position of the last visible movie
+     */
+    private void onVisibleRangeChanged(int firstVisiblePosition, int lastVisiblePosition)
+    {
+        if (movieSortingCriteria == null ||
+            pendingPageSubscription != null ||
+            adapter.hasPendingUpdate() ||
+            loadedPages.isEmpty() ||
+            lastVisiblePosition == RecyclerView.NO_POSITION)
+        {
+            return;
+        }
+
+        LoadedPage lastPage = loadedPages.peekLast();
+        LoadedPage firstPage = loadedPages.peekFirst();
+        if (lastVisiblePosition >= movies.size() - lastPage.movieIds.size() &&
+            lastPage.pageNumber < totalPageCount)
+        {
+            loadPage(lastPage.pageNumber + 1, TmdbGateway.RequestPriority.PREFETCH);
+        }
+        else if (firstVisiblePosition < firstPage.movieIds.size() &&
+                 firstPage.pageNumber > FIRST_PAGE)
+        {
+            loadPage(firstPage.pageNumber - 1, TmdbGateway.RequestPriority.PREFETCH);
+        }
+    }
+
+    private void loadPage(int pageNumber, String priority)
+    {
+        String requestedCriteria = movieSortingCriteria;
+        ConnectableObservable<GetMoviesResponse> getMoviesObservable =
+                TmdbGateway.getInstance(context).getMovies(requestedCriteria, pageNumber, priority);
+        pendingPageSubscription = getMoviesObservable.subscribe(
+                response ->
+                {
+                    pendingPageSubscription = null;
+                    cachePage(requestedCriteria, pageNumber, response);
+                    if (requestedCriteria.equals(movieSortingCriteria))
+                    {
+                        onPageLoaded(pageNumber, response);
+                    }
+                },
+                error ->
+                {
+                    pendingPageSubscription = null;
+                    Log.e(LOG_TAG, "Failed to load page " + pageNumber, error);
+                    callback.onPageLoadFailed(pageNumber, error);
+                });
+        getMoviesObservable.connect();
+    }
+
+    /**
+     * Writes the given page of movies to the offline catalog cache in the background.
+     */
+    private void cachePage(String criteria, int pageNumber, GetMoviesResponse response)
+    {
+        if (response.getMovies() == null)
+        {
+            return;
+        }
+
+        ContentResolver contentResolver = context.getContentResolver();
+        Observable<Void> cacheObservable = Observable.create(
+                subscriber ->
+                {
+                    try
+                    {
+                        CatalogCache.replaceMoviePage(
+                                contentResolver, criteria, pageNumber, response.getMovies());
+                        subscriber.onCompleted();
+                    }
+                    catch (RemoteException | OperationApplicationException e)
+                    {
+                        subscriber.onError(e);
+                    }
+                });
+        cacheObservable
+                .subscribeOn(PriorityScheduler.getInstance(context).sync())
+                .subscribe(ignored -> {},
+                           error -> Log.e(LOG_TAG, "Failed to cache page " + pageNumber, error));
+    }
+
+    private void onPageLoaded(int pageNumber, GetMoviesResponse response)
+    {
+        if (response.getTotalPageCount() != null)
+        {
+            totalPageCount = response.getTotalPageCount();
+        }
+
+        // Drop movies that already appear on another loaded page.
+        List<Movie> newMovies = new ArrayList<>();
+        List<Integer> newMovieIds = new ArrayList<>();
+        if (response.getMovies() != null)
+        {
+            for (Movie movie : response.getMovies())
+            {
+                if (loadedMovieIds.add(movie.getId()))
+                {
+                    newMovies.add(movie);
+                    newMovieIds.add(movie.getId());
+                }
+            }
+        }
+        LoadedPage loadedPage = new LoadedPage(pageNumber, newMovieIds);
+
+        if (loadedPages.isEmpty())
+        {
+            loadedPages.addLast(loadedPage);
+            callback.onFirstPageLoaded(newMovies);
+        }
+        else if (pageNumber > loadedPages.peekLast().pageNumber)
+        {
+            int insertPosition = movies.size();
+            movies.addAll(newMovies);
+            loadedPages.addLast(loadedPage);
+            adapter.notifyItemRangeInserted(insertPosition, newMovies.size());
+            if (loadedPages.size() > MAX_PAGES_IN_MEMORY)
+            {
+                evictFirstPage();
+            }
+        }
+        else
+        {
+            movies.addAll(0, newMovies);
+            loadedPages.addFirst(loadedPage);
+            adapter.notifyItemRangeInserted(0, newMovies.size());
+            if (loadedPages.size() > MAX_PAGES_IN_MEMORY)
+            {
+                evictLastPage();
+            }
+        }
+    }
+
+    private void onPagesRestored(int[] pageNumbers, List<List<Movie>> pages)
+    {
+        // Keep the pages up to the first one missing from the cache, so the window has no gaps.
+        List<Movie> restoredMovies = new ArrayList<>();
+        for (int i = 0; i < pageNumbers.length && !pages.get(i).isEmpty(); i++)
+        {
+            List<Integer> movieIds = new ArrayList<>();
+            for (Movie movie : pages.get(i))
+            {
+                if (loadedMovieIds.add(movie.getId()))
+                {
+                    restoredMovies.add(movie);
+                    movieIds.add(movie.getId());
+                }
+            }
+            loadedPages.addLast(new LoadedPage(pageNumbers[i], movieIds));
+        }
+
+        if (loadedPages.isEmpty())
+        {
+            load(movieSortingCriteria);
+            return;
+        }
+        callback.onFirstPageLoaded(restoredMovies);
+    }
+
+    private void evictFirstPage()
+    {
+        LoadedPage evictedPage = loadedPages.removeFirst();
+        int count = evictedPage.movieIds.size();
+        movies.subList(0, count).clear();
+        loadedMovieIds.removeAll(evictedPage.movieIds);
+        adapter.notifyItemRangeRemoved(0, count);
+    }
+
+    private void evictLastPage()
+    {
+        LoadedPage evictedPage = loadedPages.removeLast();
+        int count = evictedPage.movieIds.size();
+        int removePosition = movies.size() - count;
+        movies.subList(removePosition, movies.size()).clear();
+        loadedMovieIds.removeAll(evictedPage.movieIds);
+        adapter.notifyItemRangeRemoved(removePosition, count);
+    }
+
+    /**
+     * Callbacks from a {@link PagedMovieSource} to the screen showing its movies.
+     */
+    public interface Callback
+    {
+        /**
+         * Called when the first page of movies for the current criteria has loaded, or when the
+         * pages saved in the instance state have been restored. The receiver is responsible for
+         * replacing the list of movies with the given movies.
+         *
+         * @param movies
+         *     movies on the first page, or on every restored page
+         */
+        void onFirstPageLoaded(List<Movie> movies);
+
+        /**
+         * Called when a page of movies fails to load. Pages after the first are retried the next
+         * time the user scrolls.
+         *
+         * @param pageNumber
+         *     page number that failed to load
+         * @param error
+         *     error the page failed to load with
+         */
+        void onPageLoadFailed(int pageNumber, Throwable error);
+    }
+
+    /**
+     * Page of movies currently held in the list of movies, along with the IDs of the movies that
+     * it contributed to the list.
+     */
+    private static class LoadedPage
+    {
+        final int pageNumber;
+        final List<Integer> movieIds;
+
+        LoadedPage(int pageNumber, List<Integer> movieIds)
+        {
+            this.pageNumber = pageNumber;
+            this.movieIds = movieIds;
+        }
+    }
+}
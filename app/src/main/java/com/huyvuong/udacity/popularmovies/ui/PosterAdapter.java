@@ -2,7 +2,10 @@ package com.huyvuong.udacity.popularmovies.ui;
 
 import android.content.Context;
 import android.content.Intent;
+import android.graphics.Bitmap;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -11,33 +14,113 @@ import android.widget.ImageView;
 import com.huyvuong.udacity.popularmovies.R;
 import com.huyvuong.udacity.popularmovies.model.business.Movie;
 import com.huyvuong.udacity.popularmovies.ui.activity.MovieDetailActivity;
+import com.huyvuong.udacity.popularmovies.util.TmdbImageUtils;
 import com.squareup.picasso.Picasso;
+import com.squareup.picasso.RequestCreator;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
+import rx.Observable;
+import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.schedulers.Schedulers;
 
 /**
  * Adapter for rendering a set of poster images for a given list of Movie objects, which when
  * clicked on, take the user to a different activity for seeing more detailed information about
  * the movie.
  *
+ * Item IDs are stable and correspond to TMDb movie IDs. Replacing the list of movies through
+ * {@link #replaceMovies(List)} diffs the lists off the main thread and only rebinds the posters
+ * that changed.
+ *
  * Implemented with reference to: https://guides.codepath.com/android/using-the-recyclerview
  */
 public class PosterAdapter
         extends RecyclerView.Adapter<PosterAdapter.ViewHolder>
 {
-    // Used for loading the poster image.
-    private static final String MOVIE_POSTER_URL_FORMAT = "http://image.tmdb.org/t/p/w342/%s";
-
     private Context context;
     private List<Movie> movies;
+    private int posterWidth;
+    private int posterHeight;
+    private Subscription pendingUpdate;
+    private PosterPrefetcher posterPrefetcher;
 
     public PosterAdapter(Context context, List<Movie> movies)
     {
         this.context = context;
         this.movies = movies;
+        this.posterWidth = TmdbImageUtils.computeGridPosterWidth(context);
+        this.posterHeight = TmdbImageUtils.computePosterHeight(posterWidth);
+        setHasStableIds(true);
+    }
+
+    /**
+     * Replaces the list of movies shown with the given movies. The difference between the current
+     * and the given list is computed in the background, after which the list is replaced and only
+     * the posters that were inserted, removed, moved or changed are updated.
+     *
+     * If this is called again before the difference is computed, the earlier replacement is
+     * dropped.
+     *
+     * @param newMovies
+     *     movies to show instead of the current ones
+     */
+    public void replaceMovies(List<Movie> newMovies)
+    {
+        if (pendingUpdate != null)
+        {
+            pendingUpdate.unsubscribe();
+        }
+
+        List<Movie> oldMovies = new ArrayList<>(movies);
+        List<Movie> replacementMovies = new ArrayList<>(newMovies);
+        Observable<DiffUtil.DiffResult> diffObservable = Observable.create(
+                subscriber ->
+                {
+                    subscriber.onNext(DiffUtil.calculateDiff(
+                            new MovieDiffCallback(oldMovies, replacementMovies)));
+                    subscriber.onCompleted();
+                });
+
+        // Diffing only uses the CPU and never blocks, so it runs on the computation pool rather
+        // than on a PriorityScheduler lane, which is sized for network and database waits.
+        pendingUpdate = diffObservable
+                .subscribeOn(Schedulers.computation())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(diffResult ->
+                           {
+                               pendingUpdate = null;
+                               movies.clear();
+                               movies.addAll(replacementMovies);
+                               diffResult.dispatchUpdatesTo(this);
+                           });
+    }
+
+    /**
+     * Sets the prefetcher to tell about posters being bound, so that it can count its hits.
+     *
+     * @param posterPrefetcher
+     *     prefetcher warming the cache for the posters of this adapter
+     */
+    public void setPosterPrefetcher(PosterPrefetcher posterPrefetcher)
+    {
+        this.posterPrefetcher = posterPrefetcher;
+    }
+
+    /**
+     * Returns true if a replacement of the list of movies is still being computed. The list
+     * should not be modified in place until it is applied.
+     *
+     * @return
+     *     true if a replacement is pending; false otherwise
+     */
+    public boolean hasPendingUpdate()
+    {
+        return pendingUpdate != null;
     }
 
     @Override
@@ -55,13 +138,16 @@ public class PosterAdapter
     @Override
     public void onBindViewHolder(ViewHolder holder, int position)
     {
-        // Get the movie corresponding to the given position.
-        Movie movie = movies.get(position);
+        // Get the poster of the movie corresponding to the given position.
+        String posterUrl = getPosterUrl(position);
+        if (posterPrefetcher != null)
+        {
+            posterPrefetcher.onPosterBound(posterUrl);
+        }
 
-        // Configure the viewholder.
-        Picasso.with(context)
-               .load(String.format(MOVIE_POSTER_URL_FORMAT, movie.getPosterPath()))
-               .into(holder.posterImageView);
+        // Configure the viewholder. Tag the request with the context, so that the screen can pause
+        // or cancel all of its poster loads at once.
+        createPosterRequest(posterUrl).tag(context).into(holder.posterImageView);
     }
 
     @Override
@@ -70,6 +156,46 @@ public class PosterAdapter
         return movies.size();
     }
 
+    @Override
+    public long getItemId(int position)
+    {
+        return movies.get(position).getId();
+    }
+
+    /**
+     * Returns the URL of the poster of the movie at the given position.
+     *
+     * @param position
+     *     adapter position of the movie
+     * @return
+     *     URL of the movie's poster
+     */
+    String getPosterUrl(int position)
+    {
+        return TmdbImageUtils.buildPosterUrl(movies.get(position).getPosterPath(), posterWidth);
+    }
+
+    /**
+     * Creates the Picasso request for the given poster URL. Binding and prefetching share it, so
+     * that a prefetched poster is found in Picasso's memory cache under the same key.
+     *
+     * The poster is decoded straight to the size of its cell and without an alpha channel, since
+     * posters are opaque thumbnails.
+     *
+     * @param posterUrl
+     *     URL of the poster to load
+     * @return
+     *     request that loads the poster, without a tag
+     */
+    RequestCreator createPosterRequest(String posterUrl)
+    {
+        return Picasso.with(context)
+                      .load(posterUrl)
+                      .resize(posterWidth, posterHeight)
+                      .centerCrop()
+                      .config(Bitmap.Config.RGB_565);
+    }
+
     /**
      * Viewholder for using the Viewholder Pattern with the RecyclerView.
      */
@@ -97,4 +223,47 @@ public class PosterAdapter
                     });
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Compares two lists of movies by TMDb movie ID. A movie whose poster path is unchanged needs
+     * no rebinding, since the poster is all that is shown.
+     */
+    private static class MovieDiffCallback
+            extends DiffUtil.Callback
+    {
+        private final List<Movie> oldMovies;
+        private final List<Movie> newMovies;
+
+        MovieDiffCallback(List<Movie> oldMovies, List<Movie> newMovies)
+        {
+            this.oldMovies = oldMovies;
+            this.newMovies = newMovies;
+        }
+
+        @Override
+        public int getOldListSize()
+        {
+            return oldMovies.size();
+        }
+
+        @Override
+        public int getNewListSize()
+        {
+            return newMovies.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition)
+        {
+            return oldMovies.get(oldItemPosition).getId()
+                            .equals(newMovies.get(newItemPosition).getId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition)
+        {
+            return TextUtils.equals(oldMovies.get(oldItemPosition).getPosterPath(),
+                                    newMovies.get(newItemPosition).getPosterPath());
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.huyvuong.udacity.popularmovies.ui;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.View;
+
+import com.huyvuong.udacity.popularmovies.R;
+import com.squareup.picasso.Callback;
+import com.squareup.picasso.Picasso;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Scroll listener that warms Picasso's caches for the posters just ahead of the scroll position,
+ * so that posters are usually ready by the time their cells are bound during a fling.
+ *
+ * The prefetch window covers the rows after the last visible row when scrolling down, or before
+ * the first visible row when scrolling up. It reaches further ahead the faster the user scrolls,
+ * between {@code R.integer.poster_prefetch_min_rows} and {@code R.integer.poster_prefetch_max_rows}
+ * rows. Prefetches run at low priority and are cancelled once they fall out of the window.
+ *
+ * A prefetch counts as a hit if its poster finished loading before its cell was bound, and as
+ * wasted if it was cancelled or dropped without its cell ever being bound.
+ */
+public class PosterPrefetcher
+        extends RecyclerView.OnScrollListener
+{
+    private static final String LOG_TAG = PosterPrefetcher.class.getSimpleName();
+
+    // How far ahead, in time, the prefetch window reaches at the current scroll speed.
+    private static final long LOOKAHEAD_MILLIS = 500;
+
+    private final Context context;
+    private final PosterAdapter adapter;
+    private final GridLayoutManager layoutManager;
+    private final int minRowsAhead;
+    private final int maxRowsAhead;
+
+    // Prefetches in the current window, keyed by poster URL.
+    private final Map<String, Prefetch> prefetches = new HashMap<>();
+
+    private long lastScrollTimeMillis;
+    private int prefetchCount;
+    private int hitCount;
+    private int lateCount;
+    private int wastedCount;
+
+    /**
+     * Constructs a new prefetcher for the posters of the given adapter.
+     *
+     * @param context
+     *     context used to obtain Picasso and the prefetch window bounds
+     * @param adapter
+     *     adapter whose posters to prefetch
+     * @param layoutManager
+     *     layout manager of the RecyclerView showing the posters
+     */
+    public PosterPrefetcher(Context context,
+                            PosterAdapter adapter,
+                            GridLayoutManager layoutManager)
+    {
+        this.context = context;
+        this.adapter = adapter;
+        this.layoutManager = layoutManager;
+        this.minRowsAhead = context.getResources().getInteger(R.integer.poster_prefetch_min_rows);
+        this.maxRowsAhead = context.getResources().getInteger(R.integer.poster_prefetch_max_rows);
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy)
+    {
+        if (dy == 0)
+        {
+            return;
+        }
+
+        // Estimate the scroll speed from the distance scrolled since the previous event.
+        long scrollTimeMillis = SystemClock.uptimeMillis();
+        long elapsedMillis = Math.max(1, scrollTimeMillis - lastScrollTimeMillis);
+        lastScrollTimeMillis = scrollTimeMillis;
+        float pixelsPerMilli = Math.abs(dy) / (float) elapsedMillis;
+
+        updateWindow(dy > 0, computeRowsAhead(pixelsPerMilli));
+    }
+
+    /**
+     * Tells this prefetcher that the cell showing the poster with the given URL is being bound.
+     *
+     * @param posterUrl
+     *     URL of the poster being bound
+     */
+    void onPosterBound(String posterUrl)
+    {
+        Prefetch prefetch = prefetches.remove(posterUrl);
+        if (prefetch == null)
+        {
+            return;
+        }
+
+        // A prefetch that is still running is left alone, since Picasso attaches the bind to it.
+        if (prefetch.isComplete)
+        {
+            hitCount++;
+        }
+        else
+        {
+            lateCount++;
+        }
+    }
+
+    /**
+     * Cancels all prefetches, for example when the posters are no longer on screen, and logs how
+     * useful prefetching has been so far.
+     */
+    public void cancelAll()
+    {
+        for (Prefetch prefetch : prefetches.values())
+        {
+            discard(prefetch);
+        }
+        prefetches.clear();
+        Log.d(LOG_TAG,
+              String.format(Locale.US,
+                            "Prefetched %d posters: %d hits, %d late, %d wasted",
+                            prefetchCount,
+                            hitCount,
+                            lateCount,
+                            wastedCount));
+    }
+
+    /**
+     * Returns the number of prefetches started.
+     *
+     * @return
+     *     number of prefetches started
+     */
+    public int getPrefetchCount()
+    {
+        return prefetchCount;
+    }
+
+    /**
+     * Returns the number of prefetches whose poster finished loading before its cell was bound.
+     *
+     * @return
+     *     number of prefetch hits
+     */
+    public int getHitCount()
+    {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of prefetches whose poster was still loading when its cell was bound.
+     *
+     * @return
+     *     number of late prefetches
+     */
+    public int getLateCount()
+    {
+        return lateCount;
+    }
+
+    /**
+     * Returns the number of prefetches that were cancelled or dropped without their cell ever
+     * being bound.
+     *
+     * @return
+     *     number of wasted prefetches
+     */
+    public int getWastedCount()
+    {
+        return wastedCount;
+    }
+
+    /**
+     * Returns how many rows ahead of the visible rows to prefetch at the given scroll speed.
+     */
+    private int computeRowsAhead(float pixelsPerMilli)
+    {
+        View firstChild = layoutManager.getChildAt(0);
+        int rowHeight = (firstChild != null) ? firstChild.getHeight() : 0;
+        if (rowHeight <= 0)
+        {
+            return minRowsAhead;
+        }
+
+        int rowsAhead = minRowsAhead + (int) (pixelsPerMilli * LOOKAHEAD_MILLIS / rowHeight);
+        return Math.min(rowsAhead, maxRowsAhead);
+    }
+
+    /**
+     * Moves the prefetch window ahead of the visible rows in the scroll direction, cancelling the
+     * prefetches that fell out of it and starting the ones that entered it.
+     */
+    private void updateWindow(boolean isScrollingDown, int rowsAhead)
+    {
+        int firstVisiblePosition = layoutManager.findFirstVisibleItemPosition();
+        int lastVisiblePosition = layoutManager.findLastVisibleItemPosition();
+        if (firstVisiblePosition == RecyclerView.NO_POSITION ||
+            lastVisiblePosition == RecyclerView.NO_POSITION)
+        {
+            return;
+        }
+
+        int windowSize = rowsAhead * layoutManager.getSpanCount();
+        int windowStart = isScrollingDown ?
+                          lastVisiblePosition + 1 :
+                          Math.max(0, firstVisiblePosition - windowSize);
+        int windowEnd = isScrollingDown ?
+                        Math.min(adapter.getItemCount(), windowStart + windowSize) :
+                        firstVisiblePosition;
+        Set<String> windowPosterUrls = new HashSet<>();
+        for (int position = windowStart; position < windowEnd; position++)
+        {
+            windowPosterUrls.add(adapter.getPosterUrl(position));
+        }
+
+        // Cancel the prefetches that fell out of the window.
+        Iterator<Map.Entry<String, Prefetch>> prefetchIterator = prefetches.entrySet().iterator();
+        while (prefetchIterator.hasNext())
+        {
+            Map.Entry<String, Prefetch> prefetchEntry = prefetchIterator.next();
+            if (!windowPosterUrls.contains(prefetchEntry.getKey()))
+            {
+                discard(prefetchEntry.getValue());
+                prefetchIterator.remove();
+            }
+        }
+
+        // Start prefetching the posters that entered the window.
+        for (String posterUrl : windowPosterUrls)
+        {
+            if (!prefetches.containsKey(posterUrl))
+            {
+                startPrefetch(posterUrl);
+            }
+        }
+    }
+
+    private void startPrefetch(String posterUrl)
+    {
+        Prefetch prefetch = new Prefetch();
+        prefetches.put(posterUrl, prefetch);
+        prefetchCount++;
+        adapter.createPosterRequest(posterUrl)
+               .priority(Picasso.Priority.LOW)
+               .tag(prefetch)
+               .fetch(new Callback()
+               {
+                   @Override
+                   public void onSuccess()
+                   {
+                       prefetch.isComplete = true;
+                   }
+
+                   @Override
+                   public void onError() {}
+               });
+    }
+
+    private void discard(Prefetch prefetch)
+    {
+        if (!prefetch.isComplete)
+        {
+            Picasso.with(context).cancelTag(prefetch);
+        }
+        wastedCount++;
+    }
+
+    /**
+     * Prefetch of a single poster. Also serves as the Picasso tag for cancelling it.
+     */
+    private static class Prefetch
+    {
+        boolean isComplete;
+    }
+}
@@ -0,0 +1,228 @@
+package com.huyvuong.udacity.popularmovies.ui;
+
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import com.huyvuong.udacity.popularmovies.R;
+import com.huyvuong.udacity.popularmovies.model.business.Review;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import butterknife.BindView;
+import butterknife.ButterKnife;
+
+/**
+ * Adapter for rendering the reviews of a movie, one page at a time.
+ *
+ * Reviews are collapsed to {@code R.integer.review_collapsed_max_lines} lines, and clicking on a
+ * review expands or collapses it. While TMDb has more pages of reviews, a footer is shown after the
+ * reviews, which when clicked on, asks the {@link OnLoadMoreListener} for the next page.
+ */
+public class ReviewAdapter
+        extends RecyclerView.Adapter<RecyclerView.ViewHolder>
+{
+    private static final int VIEW_TYPE_REVIEW = 0;
+    private static final int VIEW_TYPE_FOOTER = 1;
+
+    private final List<Review> reviews = new ArrayList<>();
+    private final Set<String> expandedReviewIds = new HashSet<>();
+    private final int collapsedMaxLines;
+    private final OnLoadMoreListener onLoadMoreListener;
+    private boolean hasMorePages;
+    private boolean isLoadingMore;
+
+    public ReviewAdapter(Context context, OnLoadMoreListener onLoadMoreListener)
+    {
+        this.collapsedMaxLines =
+                context.getResources().getInteger(R.integer.review_collapsed_max_lines);
+        this.onLoadMoreListener = onLoadMoreListener;
+    }
+
+    /**
+     * Replaces the reviews shown with the given first page of reviews.
+     *
+     * @param newReviews
+     *     reviews to show instead of the current ones
+     * @param hasMorePages
+     *     true if TMDb has more pages of reviews after the given ones; false otherwise
+     */
+    public void replaceReviews(List<Review> newReviews, boolean hasMorePages)
+    {
+        reviews.clear();
+        reviews.addAll(newReviews);
+        expandedReviewIds.clear();
+        this.hasMorePages = hasMorePages;
+        this.isLoadingMore = false;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Shows the given page of reviews after the current ones.
+     *
+     * @param moreReviews
+     *     next page of reviews
+     * @param hasMorePages
+     *     true if TMDb has more pages of reviews after the given ones; false otherwise
+     */
+    public void appendReviews(List<Review> moreReviews, boolean hasMorePages)
+    {
+        int footerPosition = reviews.size();
+        boolean hadFooter = this.hasMorePages;
+        reviews.addAll(moreReviews);
+        this.hasMorePages = hasMorePages;
+        this.isLoadingMore = false;
+
+        // Move the footer below the new reviews, or remove it after the last page.
+        if (hadFooter)
+        {
+            notifyItemRemoved(footerPosition);
+        }
+        notifyItemRangeInserted(footerPosition, moreReviews.size());
+        if (hasMorePages)
+        {
+            notifyItemInserted(reviews.size());
+        }
+    }
+
+    /**
+     * Sets whether the next page of reviews is being loaded, which the footer shows in place of
+     * its prompt.
+     *
+     * @param isLoadingMore
+     *     true while the next page of reviews is being loaded; false otherwise
+     */
+    public void setLoadingMore(boolean isLoadingMore)
+    {
+        this.isLoadingMore = isLoadingMore;
+        if (hasMorePages)
+        {
+            notifyItemChanged(reviews.size());
+        }
+    }
+
+    @Override
+    public int getItemViewType(int position)
+    {
+        return (position < reviews.size()) ? VIEW_TYPE_REVIEW : VIEW_TYPE_FOOTER;
+    }
+
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType)
+    {
+        LayoutInflater layoutInflater = LayoutInflater.from(parent.getContext());
+        if (viewType == VIEW_TYPE_FOOTER)
+        {
+            return new FooterViewHolder(
+                    layoutInflater.inflate(R.layout.list_item_review_footer, parent, false));
+        }
+        return new ReviewViewHolder(
+                layoutInflater.inflate(R.layout.list_item_review, parent, false));
+    }
+
+    @Override
+    public void onBindViewHolder(RecyclerView.ViewHolder holder, int position)
+    {
+        if (holder instanceof FooterViewHolder)
+        {
+            FooterViewHolder footerViewHolder = (FooterViewHolder) holder;
+            footerViewHolder.loadMoreTextView.setText(isLoadingMore ?
+                                                      R.string.message_reviews_loading_more :
+                                                      R.string.action_load_more_reviews);
+            footerViewHolder.itemView.setEnabled(!isLoadingMore);
+            return;
+        }
+
+        ReviewViewHolder reviewViewHolder = (ReviewViewHolder) holder;
+        Review review = reviews.get(position);
+        reviewViewHolder.letterTextView.setText(
+                String.valueOf(review.getAuthor().charAt(0)).toUpperCase());
+        reviewViewHolder.authorTextView.setText(review.getAuthor());
+        reviewViewHolder.contentTextView.setText(review.getContent());
+        reviewViewHolder.contentTextView.setMaxLines(
+                expandedReviewIds.contains(review.getId()) ? Integer.MAX_VALUE : collapsedMaxLines);
+    }
+
+    @Override
+    public int getItemCount()
+    {
+        return reviews.size() + (hasMorePages ? 1 : 0);
+    }
+
+    /**
+     * Viewholder for a review.
+     */
+    public class ReviewViewHolder extends RecyclerView.ViewHolder
+    {
+        @BindView(R.id.text_review_letter)
+        TextView letterTextView;
+
+        @BindView(R.id.text_review_author)
+        TextView authorTextView;
+
+        @BindView(R.id.text_review_content)
+        TextView contentTextView;
+
+        public ReviewViewHolder(View itemView)
+        {
+            super(itemView);
+            ButterKnife.bind(this, itemView);
+
+            // Expand or collapse the review.
+            itemView.setOnClickListener(
+                    view ->
+                    {
+                        int position = getAdapterPosition();
+                        if (position != RecyclerView.NO_POSITION)
+                        {
+                            String reviewId = reviews.get(position).getId();
+                            if (!expandedReviewIds.remove(reviewId))
+                            {
+                                expandedReviewIds.add(reviewId);
+                            }
+                            notifyItemChanged(position);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Viewholder for the footer prompting to load the next page of reviews.
+     */
+    public class FooterViewHolder extends RecyclerView.ViewHolder
+    {
+        @BindView(R.id.text_load_more_reviews)
+        TextView loadMoreTextView;
+
+        public FooterViewHolder(View itemView)
+        {
+            super(itemView);
+            ButterKnife.bind(this, itemView);
+            itemView.setOnClickListener(
+                    view ->
+                    {
+                        if (!isLoadingMore)
+                        {
+                            onLoadMoreListener.onLoadMore();
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Listener for the user asking for the next page of reviews.
+     */
+    public interface OnLoadMoreListener
+    {
+        /**
+         * Called when the user asks for the next page of reviews.
+         */
+        void onLoadMore();
+    }
+}
@@ -0,0 +1,104 @@
+package com.huyvuong.udacity.popularmovies.ui;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import com.huyvuong.udacity.popularmovies.R;
+import com.huyvuong.udacity.popularmovies.model.business.Video;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import butterknife.BindView;
+import butterknife.ButterKnife;
+
+/**
+ * Adapter for rendering the trailers of a movie, which when clicked on, open the trailer on
+ * YouTube.
+ */
+public class TrailerAdapter
+        extends RecyclerView.Adapter<TrailerAdapter.ViewHolder>
+{
+    // Constants for use in constructing a YouTube URL.
+    private static final String YOUTUBE_URL_START = "https://www.youtube.com/watch";
+    private static final String QUERY_PARAMETER_VIDEO = "v";
+
+    private final Context context;
+    private final List<Video> trailers = new ArrayList<>();
+
+    public TrailerAdapter(Context context)
+    {
+        this.context = context;
+    }
+
+    /**
+     * Replaces the trailers shown with the given trailers.
+     *
+     * @param newTrailers
+     *     trailers to show instead of the current ones
+     */
+    public void replaceTrailers(List<Video> newTrailers)
+    {
+        trailers.clear();
+        trailers.addAll(newTrailers);
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType)
+    {
+        View trailerView = LayoutInflater.from(parent.getContext())
+                                         .inflate(R.layout.list_item_trailer, parent, false);
+        return new ViewHolder(trailerView);
+    }
+
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position)
+    {
+        holder.nameTextView.setText(trailers.get(position).getName());
+    }
+
+    @Override
+    public int getItemCount()
+    {
+        return trailers.size();
+    }
+
+    /**
+     * Viewholder for using the Viewholder Pattern with the RecyclerView.
+     */
+    public class ViewHolder extends RecyclerView.ViewHolder
+    {
+        @BindView(R.id.text_trailer_name)
+        TextView nameTextView;
+
+        public ViewHolder(View itemView)
+        {
+            super(itemView);
+            ButterKnife.bind(this, itemView);
+
+            // Open YouTube to show the trailer to the user.
+            itemView.setOnClickListener(
+                    view ->
+                    {
+                        int position = getAdapterPosition();
+                        if (position != RecyclerView.NO_POSITION)
+                        {
+                            Uri youtubeUrl =
+                                    Uri.parse(YOUTUBE_URL_START)
+                                       .buildUpon()
+                                       .appendQueryParameter(QUERY_PARAMETER_VIDEO,
+                                                             trailers.get(position).getKey())
+                                       .build();
+                            context.startActivity(new Intent(Intent.ACTION_VIEW, youtubeUrl));
+                        }
+                    });
+        }
+    }
+}
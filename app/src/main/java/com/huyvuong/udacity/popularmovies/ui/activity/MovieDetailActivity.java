@@ -1,46 +1,43 @@
 package com.huyvuong.udacity.popularmovies.ui.activity;
 
-import android.content.ContentResolver;
 import android.content.Intent;
-import android.database.Cursor;
 import android.graphics.drawable.ColorDrawable;
-import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.design.widget.CollapsingToolbarLayout;
 import android.support.v7.app.ActionBar;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.Toolbar;
-import android.view.LayoutInflater;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.view.ViewGroup;
 import android.widget.ImageView;
-import android.widget.LinearLayout;
 import android.widget.TextView;
 
-import com.annimon.stream.Stream;
 import com.huyvuong.udacity.popularmovies.R;
-import com.huyvuong.udacity.popularmovies.constants.TmdbImageSizes;
-import com.huyvuong.udacity.popularmovies.data.MovieContract;
+import com.huyvuong.udacity.popularmovies.data.FavoritesRepository;
 import com.huyvuong.udacity.popularmovies.gateway.TmdbGateway;
 import com.huyvuong.udacity.popularmovies.model.business.Movie;
 import com.huyvuong.udacity.popularmovies.model.business.Review;
 import com.huyvuong.udacity.popularmovies.model.business.Video;
-import com.huyvuong.udacity.popularmovies.model.transport.GetMovieDetailsResponse;
-import com.huyvuong.udacity.popularmovies.model.transport.GetReviewsResponse;
-import com.huyvuong.udacity.popularmovies.model.transport.GetVideosResponse;
+import com.huyvuong.udacity.popularmovies.ui.MaxHeightRecyclerView;
+import com.huyvuong.udacity.popularmovies.ui.MovieDetailLoader;
+import com.huyvuong.udacity.popularmovies.ui.ReviewAdapter;
+import com.huyvuong.udacity.popularmovies.ui.TrailerAdapter;
 import com.huyvuong.udacity.popularmovies.util.NetworkUtils;
+import com.huyvuong.udacity.popularmovies.util.RatingUtils;
+import com.huyvuong.udacity.popularmovies.util.TmdbImageUtils;
+import com.squareup.picasso.Callback;
 import com.squareup.picasso.Picasso;
 
+import java.util.Collections;
 import java.util.List;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
-import rx.Observable;
-import rx.android.schedulers.AndroidSchedulers;
-import rx.observables.ConnectableObservable;
-import rx.schedulers.Schedulers;
+import rx.Subscription;
 
 /**
  * Activity containing the detail view of a movie retrieved from TMDb.
@@ -48,26 +45,14 @@ import rx.schedulers.Schedulers;
 public class MovieDetailActivity
         extends AppCompatActivity
 {
+    private static final String LOG_TAG = MovieDetailActivity.class.getSimpleName();
+
     // Intent Extra Keys
     public static final String KEY_MOVIE = "movie";
 
-    // Used for loading the poster image.
-    private static final String MOVIE_POSTER_SIZE = TmdbImageSizes.W780;
-    private static final String MOVIE_POSTER_URL_FORMAT =
-            "http://image.tmdb.org/t/p/" + MOVIE_POSTER_SIZE + "/%s";
-
-    // Used for loading the backdrop image.
-    private static final String MOVIE_BACKDROP_SIZE = TmdbImageSizes.ORIGINAL;
-    private static final String MOVIE_BACKDROP_URL_FORMAT =
-            "http://image.tmdb.org/t/p/" + MOVIE_BACKDROP_SIZE + "/%s";
-
     // Indicates that no average rating for a movie was found.
     private static final double NOT_FOUND = -1.0;
 
-    // Constants for use in constructing a YouTube URL.
-    private static final String YOUTUBE_URL_START = "https://www.youtube.com/watch";
-    private static final String QUERY_PARAMETER_VIDEO = "v";
-
     @BindView(R.id.detail_toolbar)
     Toolbar toolbar;
 
@@ -92,20 +77,28 @@ public class MovieDetailActivity
     @BindView(R.id.text_plot_synopsis)
     TextView plotSynopsisText;
 
-    @BindView(R.id.linear_trailers)
-    LinearLayout trailersLinearLayout;
+    @BindView(R.id.recycler_trailers)
+    MaxHeightRecyclerView trailersRecyclerView;
 
     @BindView(R.id.text_empty_trailers)
     TextView emptyTrailerTextView;
 
-    @BindView(R.id.linear_reviews)
-    LinearLayout reviewsLinearLayout;
+    @BindView(R.id.recycler_reviews)
+    MaxHeightRecyclerView reviewsRecyclerView;
 
     @BindView(R.id.text_empty_reviews)
     TextView emptyReviewTextView;
 
     private MenuItem menuFavorite;
     private Movie movie;
+    private Subscription isFavoriteSubscription;
+    private Subscription movieExtrasSubscription;
+    private long extrasRequestedMillis;
+    private TrailerAdapter trailerAdapter;
+    private ReviewAdapter reviewAdapter;
+    private int loadedReviewPageCount;
+    private long reviewPageCount;
+    private Subscription reviewPageSubscription;
 
     @Override
     protected void onCreate(Bundle savedInstanceState)
@@ -122,6 +115,20 @@ public class MovieDetailActivity
             getSupportActionBar().setDisplayHomeAsUpEnabled(true);
         }
 
+        // Initialize the trailers and reviews lists. Each list grows up to a bounded height inside
+        // the scrolling page and scrolls on its own beyond it, so that only the rows in view are
+        // laid out and the rest are recycled. Scrolling past either end of a list scrolls the page.
+        trailerAdapter = new TrailerAdapter(this);
+        trailersRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        trailersRecyclerView.setMaxHeight(
+                getResources().getDimensionPixelSize(R.dimen.detail_trailers_max_height));
+        trailersRecyclerView.setAdapter(trailerAdapter);
+        reviewAdapter = new ReviewAdapter(this, this::loadMoreReviews);
+        reviewsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        reviewsRecyclerView.setMaxHeight(
+                getResources().getDimensionPixelSize(R.dimen.detail_reviews_max_height));
+        reviewsRecyclerView.setAdapter(reviewAdapter);
+
         // If an intent was passed to this activity, get movie data from that intent's extra data
         // and populate the views for this activity with that data.
         Intent intent = getIntent();
@@ -137,21 +144,22 @@ public class MovieDetailActivity
             originalTitleText.setText(title);
             collapsingToolbarLayout.setTitle(title);
 
-            // Load the poster image.
+            // Load the poster image, decoded at the size it is shown at.
+            int posterWidth = TmdbImageUtils.computeDetailPosterWidth(this);
             Picasso.with(this)
-                   .load(String.format(MOVIE_POSTER_URL_FORMAT, movie.getPosterPath()))
+                   .load(TmdbImageUtils.buildPosterUrl(movie.getPosterPath(), posterWidth))
+                   .resize(posterWidth, TmdbImageUtils.computePosterHeight(posterWidth))
+                   .centerCrop()
+                   .tag(this)
                    .placeholder(
                            new ColorDrawable(getResources().getColor(R.color.loadingPosterColor)))
                    .into(posterImage);
 
-            // Load the backdrop image.
-            loadBackdropImage();
-
             // Populate the average rating.
             double rating = movie.getRating();
             String ratingString = ((rating > NOT_FOUND) ? String.valueOf(rating) : "--") +
                                   " " +
-                                  buildRatingStarString(rating);
+                                  RatingUtils.buildRatingStarString(rating);
             ratingText.setText(ratingString.trim());
 
             // Populate the release date.
@@ -160,11 +168,29 @@ public class MovieDetailActivity
             // Populate the plot synopsis.
             plotSynopsisText.setText(movie.getPlotSynopsis());
 
-            // Populate the trailers listings.
-            getTrailersFor(movie);
+            // Load the backdrop image and populate the trailers and reviews listings.
+            getMovieExtrasFor(movie);
+        }
+    }
 
-            // Populate the reviews listings.
-            getReviewsFor(movie);
+    @Override
+    protected void onDestroy()
+    {
+        super.onDestroy();
+
+        // Stop loading images for this screen now that it is gone.
+        Picasso.with(this).cancelTag(this);
+        if (isFavoriteSubscription != null)
+        {
+            isFavoriteSubscription.unsubscribe();
+        }
+        if (movieExtrasSubscription != null)
+        {
+            movieExtrasSubscription.unsubscribe();
+        }
+        if (reviewPageSubscription != null)
+        {
+            reviewPageSubscription.unsubscribe();
         }
     }
 
@@ -176,12 +202,19 @@ public class MovieDetailActivity
         menuFavorite = menu.findItem(R.id.action_favorite);
 
         // Change the icon for the favorite button based on whether or not the current movie is
-        // marked as a favorite. If it is, show the filled icon. Otherwise, show the outline icon.
-        Uri movieUri = MovieContract.MovieEntry.buildMovieUriWithTmdbId(movie.getId());
-        int favoriteIconDrawable = isFavorite(getContentResolver(), movieUri) ?
-                                   R.drawable.ic_action_action_favorite :
-                                   R.drawable.ic_action_action_favorite_outline;
-        menuFavorite.setIcon(favoriteIconDrawable);
+        // marked as a favorite, now and whenever that changes. If it is, show the filled icon.
+        // Otherwise, show the outline icon. Start from the favorite IDs held in memory, if any, so
+        // that the icon does not flicker.
+        FavoritesRepository favoritesRepository = FavoritesRepository.getInstance(this);
+        showFavoriteIcon(favoritesRepository.isKnownFavorite(movie.getId()));
+        if (isFavoriteSubscription != null)
+        {
+            isFavoriteSubscription.unsubscribe();
+        }
+        isFavoriteSubscription = favoritesRepository
+                .observeIsFavorite(movie.getId())
+                .subscribe(this::showFavoriteIcon,
+                           error -> Log.e(LOG_TAG, error.getMessage(), error));
 
         // Display this menu.
         return true;
@@ -201,168 +234,73 @@ public class MovieDetailActivity
         return super.onOptionsItemSelected(item);
     }
 
-    /**
-     * Returns a string of filled and unfilled stars depending on the given rating.
-     *
-     * @param rating
-     *     numeric rating to determine how many stars to return
-     * @return
-     *     string containing stars based on the given numeric rating
-     */
-    private String buildRatingStarString(double rating)
-    {
-        if (rating >= 1 && rating < 2.8)
-        {
-            // One Star
-            return "\u2605\u2606\u2606\u2606\u2606";
-        }
-        else if (rating >= 2.8 && rating < 4.6)
-        {
-            // Two Stars
-            return "\u2605\u2605\u2606\u2606\u2606";
-        }
-        else if (rating >= 4.6 && rating < 6.4)
-        {
-            // Three Stars
-            return "\u2605\u2605\u2605\u2606\u2606";
-        }
-        else if (rating >= 6.4 && rating < 8.2)
-        {
-            // Four Stars
-            return "\u2605\u2605\u2605\u2605\u2606";
-        }
-        else if (rating >= 8.2 && rating <= 10.0)
-        {
-            // Five Stars
-            return "\u2605\u2605\u2605\u2605\u2605";
-        }
-        else
-        {
-            return "";
-        }
-    }
-
     /**
      * Loads the backdrop image into the ImageView inside the app bar, so that the app bar shows the
      * backdrop image for the movie before scrolling down on the DetailActivity.
-     */
-    private void loadBackdropImage()
-    {
-        ConnectableObservable<GetMovieDetailsResponse> getMovieDetailsObservable =
-                new TmdbGateway().getMovieDetails(movie.getId());
-        getMovieDetailsObservable.subscribe(
-                response -> Picasso.with(this)
-                        .load(String.format(MOVIE_BACKDROP_URL_FORMAT,
-                                response.getBackdropPath()))
-                        .into(posterBackdropImage));
-        getMovieDetailsObservable.connect();
-    }
-
-    /**
-     * Toggles whether or not the current movie is marked as a favorite and updates the favorite
-     * icon to indicate the new favorite status.
      *
-     * If the current movie is currently marked as a favorite, it unmarks it as a favorite.
-     * Otherwise, it marks it as a favorite.
+     * @param backdropPath
+     *     identifier for use in the URL path to the movie's backdrop image
+     * @param callback
+     *     callback to notify once the backdrop image is shown or fails to load
      */
-    private void toggleFavorite()
+    private void loadBackdropImage(String backdropPath, Callback callback)
     {
-        ContentResolver contentResolver = getContentResolver();
-        Uri movieUri = MovieContract.MovieEntry.buildMovieUriWithTmdbId(movie.getId());
-
-        // Check if the movie is currently marked as a favorite.
-        Observable<Boolean> favoriteObservable = Observable.create(
-                subscriber -> subscriber.onNext(isFavorite(contentResolver, movieUri)));
-        favoriteObservable
-                .subscribeOn(Schedulers.io())
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(isFavorite ->
-                           {
-                               if (isFavorite)
-                               {
-                                   unmarkFavorite(movieUri);
-                               }
-                               else
-                               {
-                                   markFavorite();
-                               }
-                           });
+        // Decode the backdrop at the size of the expanded app bar.
+        int backdropWidth = TmdbImageUtils.computeScreenWidth(this);
+        Picasso.with(this)
+               .load(TmdbImageUtils.buildBackdropUrl(backdropPath, backdropWidth))
+               .resize(backdropWidth,
+                       getResources().getDimensionPixelSize(R.dimen.detail_app_bar_height))
+               .centerCrop()
+               .tag(this)
+               .into(posterBackdropImage, callback);
     }
 
     /**
-     * Unmarks the currently display movie as a favorite and updates the favorite icon to the
-     * outlined version.
+     * Shows the filled favorite icon if the current movie is a favorite, or the outlined one
+     * otherwise.
      *
-     * @param movieUri
-     *     URI for the movie to unmark as a favorite
-     */
-    private void unmarkFavorite(Uri movieUri)
-    {
-        Observable<Integer> deleteObservable = Observable.create(
-                subscriber -> subscriber.onNext(
-                        getContentResolver().delete(
-                                movieUri,
-                                MovieContract.MovieEntry.COLUMN_MOVIE_ID + " = ?",
-                                new String[] {String.valueOf(movie.getId())})));
-        deleteObservable
-                .subscribeOn(Schedulers.io())
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(rowsDeleted ->
-                                   menuFavorite.setIcon(
-                                           R.drawable.ic_action_action_favorite_outline));
-    }
-
-    /**
-     * Marks the current movie as a favorite movie and updates the favorite icon to the
-     * filled version.
+     * @param isFavorite
+     *     true if the current movie is marked as a favorite; false otherwise
      */
-    private void markFavorite()
+    private void showFavoriteIcon(boolean isFavorite)
     {
-        Observable<Uri> insertObservable = Observable.create(
-                subscriber -> subscriber.onNext(
-                        getContentResolver()
-                                .insert(MovieContract.MovieEntry.CONTENT_URI,
-                                        movie.toContentValues())));
-        insertObservable
-                .subscribeOn(Schedulers.io())
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(uri -> menuFavorite.setIcon(R.drawable.ic_action_action_favorite));
+        menuFavorite.setIcon(isFavorite ?
+                             R.drawable.ic_action_action_favorite :
+                             R.drawable.ic_action_action_favorite_outline);
     }
 
     /**
-     * Returns true if the movie shown is marked as a favorite by the user. Returns false otherwise.
+     * Toggles whether or not the current movie is marked as a favorite. The favorite icon follows
+     * along, since it observes the favorite status of the movie.
      *
-     * @param contentResolver
-     *     content resolver to query against
-     * @param movieUri
-     *     URI referring to the movie to check favorite status for
-     * @return
-     *     true if the given movie URI corresponds to a favorite movie; false otherwise
+     * If the current movie is currently marked as a favorite, it unmarks it as a favorite.
+     * Otherwise, it marks it as a favorite.
      */
-    private boolean isFavorite(ContentResolver contentResolver, Uri movieUri)
+    private void toggleFavorite()
     {
-        Cursor cursor = contentResolver.query(movieUri, null, null, null, null);
-        boolean isFavorite = false;
-        if (cursor != null)
-        {
-            isFavorite = cursor.moveToFirst();
-            cursor.close();
-        }
-        return isFavorite;
+        FavoritesRepository favoritesRepository = FavoritesRepository.getInstance(this);
+        favoritesRepository
+                .isFavorite(movie.getId())
+                .flatMap(isFavorite -> isFavorite ?
+                                       favoritesRepository.unmarkFavorite(movie.getId()) :
+                                       favoritesRepository.markFavorite(movie))
+                .subscribe(result -> {},
+                           error -> Log.e(LOG_TAG, error.getMessage(), error));
     }
 
     /**
      * Shows a TextView indicating why there are no trailers shown in the UI and hides the
-     * LinearLayout containing each of the trailer entries.
+     * RecyclerView listing the trailers.
      *
      * Call this method when there are no trailers from TMDb to show, either because there are none
      * or if an error occurred.
      */
     private void showEmptyTrailerView(String message)
     {
-        if (trailersLinearLayout != null)
+        if (trailersRecyclerView != null)
         {
-            trailersLinearLayout.setVisibility(View.GONE);
+            trailersRecyclerView.setVisibility(View.GONE);
         }
         if (emptyTrailerTextView != null)
         {
@@ -372,16 +310,16 @@ public class MovieDetailActivity
     }
 
     /**
-     * Shows the LinearLayout containing each of the trailer entries pulled from TMDb and hides the
-     * TextView indicating that there were no trailers for the movie.
+     * Shows the RecyclerView listing the trailers pulled from TMDb and hides the TextView
+     * indicating that there were no trailers for the movie.
      *
      * Call this method when the response from TMDb contains trailers.
      */
-    private void showTrailersLinearLayoutView()
+    private void showTrailersView()
     {
-        if (trailersLinearLayout != null)
+        if (trailersRecyclerView != null)
         {
-            trailersLinearLayout.setVisibility(View.VISIBLE);
+            trailersRecyclerView.setVisibility(View.VISIBLE);
         }
         if (emptyTrailerTextView != null)
         {
@@ -389,35 +327,6 @@ public class MovieDetailActivity
         }
     }
 
-    /**
-     * Binds the given video metadata to a View object for rendering to the user.
-     *
-     * @param trailer
-     *     trailer link to display to user
-     * @param viewGroup
-     *     containing view for the view being created
-     * @return
-     *     View object displaying a view linking the user to YouTube from the given video metadata
-     */
-    private View bindTrailerView(Video trailer, ViewGroup viewGroup)
-    {
-        View trailerView = LayoutInflater.from(this)
-                                         .inflate(R.layout.list_item_trailer, viewGroup, false);
-
-        TextView nameTextView = (TextView) trailerView.findViewById(R.id.text_trailer_name);
-        nameTextView.setText(trailer.getName());
-
-        // Set up an OnClickListener to open YouTube to show the trailer to the user.
-        Uri youtubeUrl = Uri.parse(YOUTUBE_URL_START)
-                            .buildUpon()
-                            .appendQueryParameter(QUERY_PARAMETER_VIDEO, trailer.getKey())
-                            .build();
-        trailerView.setOnClickListener(
-                view -> startActivity(new Intent(Intent.ACTION_VIEW, youtubeUrl)));
-
-        return trailerView;
-    }
-
     /**
      * Clears out the trailers on the UI and repopulates the UI with the given list of videos.
      *
@@ -432,60 +341,23 @@ public class MovieDetailActivity
         }
         else
         {
-            if (trailersLinearLayout != null)
-            {
-                trailersLinearLayout.removeAllViews();
-                Stream.of(trailers)
-                      .map(video -> bindTrailerView(video, trailersLinearLayout))
-                      .forEach(trailerView -> trailersLinearLayout.addView(trailerView));
-                showTrailersLinearLayoutView();
-            }
-        }
-    }
-
-    /**
-     * Calls TMDb to populate the trailers LinearLayout with trailers for the given movie.
-     *
-     * @param movie
-     *     movie to retrieve reviews for
-     */
-    private void getTrailersFor(Movie movie)
-    {
-        if (NetworkUtils.isOnline(this))
-        {
-            int movieId = movie.getId();
-
-            // Populate the LinearLayout with trailer videos as retrieved from TMDb.
-            ConnectableObservable<GetVideosResponse> getVideosObservable =
-                    new TmdbGateway().getVideos(movieId);
-            getVideosObservable.flatMap(response -> Observable.from(response.getVideos()))
-                               .filter(video -> "Trailer".equals(video.getType()))
-                               .toList()
-                               .subscribe(
-                                       this::populateTrailersWith,
-                                       error -> showEmptyTrailerView(
-                                               getString(R.string.message_trailers_error_loading)));
-            getVideosObservable.connect();
-        }
-        else
-        {
-            // Notify the user that they're currently offline.
-            showEmptyTrailerView(getString(R.string.message_trailers_offline));
+            trailerAdapter.replaceTrailers(trailers);
+            showTrailersView();
         }
     }
 
     /**
      * Shows a TextView indicating why there are no reviews shown in the UI and hides the
-     * LinearLayout containing each of the review entries.
+     * RecyclerView listing the reviews.
      *
      * Call this method when there are no reviews from TMDb to show, either because there are none
      * or if an error occurred.
      */
     private void showEmptyReviewView(String message)
     {
-        if (reviewsLinearLayout != null)
+        if (reviewsRecyclerView != null)
         {
-            reviewsLinearLayout.setVisibility(View.GONE);
+            reviewsRecyclerView.setVisibility(View.GONE);
         }
         if (emptyReviewTextView != null)
         {
@@ -495,16 +367,16 @@ public class MovieDetailActivity
     }
 
     /**
-     * Shows the LinearLayout containing each of the review entries pulled from TMDb and hides the
-     * TextView indicating that there were no reviews for the movie.
+     * Shows the RecyclerView listing the reviews pulled from TMDb and hides the TextView indicating
+     * that there were no reviews for the movie.
      *
      * Call this method when the response from TMDb contains reviews.
      */
-    private void showReviewsLinearLayoutView()
+    private void showReviewsView()
     {
-        if (reviewsLinearLayout != null)
+        if (reviewsRecyclerView != null)
         {
-            reviewsLinearLayout.setVisibility(View.VISIBLE);
+            reviewsRecyclerView.setVisibility(View.VISIBLE);
         }
         if (emptyReviewTextView != null)
         {
@@ -513,82 +385,137 @@ public class MovieDetailActivity
     }
 
     /**
-     * Binds the given review data to a View object for rendering to the user.
-     *
-     * @param review
-     *     review to display data from
-     * @param viewGroup
-     *     containing view for the view being created
-     * @return
-     *     View object displaying review data from the given review
-     */
-    private View bindReviewView(Review review, ViewGroup viewGroup)
-    {
-        View reviewView = LayoutInflater.from(this)
-                                        .inflate(R.layout.list_item_review, viewGroup, false);
-
-        TextView letterTextView = (TextView) reviewView.findViewById(R.id.text_review_letter);
-        letterTextView.setText(String.valueOf(review.getAuthor().charAt(0)).toUpperCase());
-
-        TextView authorTextView = (TextView) reviewView.findViewById(R.id.text_review_author);
-        authorTextView.setText(review.getAuthor());
-
-        TextView contentTextView = (TextView) reviewView.findViewById(R.id.text_review_content);
-        contentTextView.setText(review.getContent());
-
-        return reviewView;
-    }
-
-    /**
-     * Clears out the reviews on the UI and repopulates the UI with the given list of reviews.
+     * Clears out the reviews on the UI and repopulates the UI with the given first page of reviews.
      *
      * @param reviews
-     *     list of reviews to display to the user
+     *     first page of reviews to display to the user
+     * @param pageCount
+     *     total number of pages of reviews that TMDb has for the movie
      */
-    private void populateReviewsWith(List<Review> reviews)
+    private void populateReviewsWith(List<Review> reviews, long pageCount)
     {
+        loadedReviewPageCount = 1;
+        reviewPageCount = pageCount;
+
         if (reviews.isEmpty())
         {
             showEmptyReviewView(getString(R.string.message_reviews_empty));
         }
         else
         {
-            if (reviewsLinearLayout != null)
-            {
-                reviewsLinearLayout.removeAllViews();
-                Stream.of(reviews)
-                      .map(review -> bindReviewView(review, reviewsLinearLayout))
-                      .forEach(reviewView -> reviewsLinearLayout.addView(reviewView));
-                showReviewsLinearLayoutView();
-            }
+            reviewAdapter.replaceReviews(reviews, loadedReviewPageCount < reviewPageCount);
+            showReviewsView();
         }
     }
 
     /**
-     * Calls TMDb to populate the reviews LinearLayout with reviews for the given movie.
+     * Loads the next page of reviews from TMDb and shows it after the reviews already shown.
+     */
+    private void loadMoreReviews()
+    {
+        int pageNumber = loadedReviewPageCount + 1;
+        reviewAdapter.setLoadingMore(true);
+        reviewPageSubscription = TmdbGateway
+                .getInstance(this)
+                .getReviews(movie.getId(), pageNumber)
+                .autoConnect()
+                .subscribe(response ->
+                           {
+                               loadedReviewPageCount = pageNumber;
+                               if (response.getTotalPageCount() != null)
+                               {
+                                   reviewPageCount = response.getTotalPageCount();
+                               }
+                               reviewAdapter.appendReviews(
+                                       (response.getReviews() != null) ?
+                                       response.getReviews() :
+                                       Collections.emptyList(),
+                                       loadedReviewPageCount < reviewPageCount);
+                           },
+                           error ->
+                           {
+                               // Let the user try again.
+                               reviewAdapter.setLoadingMore(false);
+                               Log.e(LOG_TAG, error.getMessage(), error);
+                           });
+    }
+
+    /**
+     * Loads the backdrop image and populates the trailers and reviews LinearLayouts for the given
+     * movie, all at once when the backdrop path, trailers and reviews have been loaded. A section
+     * that could not be loaded from either TMDb or the offline catalog cache shows why instead.
      *
      * @param movie
-     *     movie to retrieve reviews for
+     *     movie to retrieve the backdrop, trailers and reviews for
      */
-    private void getReviewsFor(Movie movie)
+    private void getMovieExtrasFor(Movie movie)
     {
-        if (NetworkUtils.isOnline(this))
+        extrasRequestedMillis = SystemClock.elapsedRealtime();
+        movieExtrasSubscription = new MovieDetailLoader(this)
+                .load(movie.getId())
+                .subscribe(this::showMovieExtras,
+                           error -> Log.e(LOG_TAG, error.getMessage(), error));
+    }
+
+    /**
+     * Shows the given backdrop, trailers and reviews in a single pass over the views.
+     *
+     * @param extras
+     *     backdrop path, trailers and reviews of the current movie
+     */
+    private void showMovieExtras(MovieDetailLoader.MovieExtras extras)
+    {
+        boolean isOnline = NetworkUtils.isOnline(this);
+        if (extras.getTrailers() != null)
         {
-            int movieId = movie.getId();
-
-            // Populate the LinearLayout with movie reviews as retrieved from TMDb.
-            ConnectableObservable<GetReviewsResponse> getReviewsObservable =
-                    new TmdbGateway().getReviews(movieId);
-            getReviewsObservable.subscribe(
-                    response -> populateReviewsWith(response.getReviews()),
-                    error -> showEmptyReviewView(
-                            getString(R.string.message_reviews_error_loading)));
-            getReviewsObservable.connect();
+            populateTrailersWith(extras.getTrailers());
         }
         else
         {
-            // Notify the user that they're currently offline.
-            showEmptyReviewView(getString(R.string.message_reviews_offline));
+            showEmptyTrailerView(getString(isOnline ?
+                                           R.string.message_trailers_error_loading :
+                                           R.string.message_trailers_offline));
+        }
+        if (extras.getReviews() != null)
+        {
+            populateReviewsWith(extras.getReviews(), extras.getReviewPageCount());
         }
+        else
+        {
+            showEmptyReviewView(getString(isOnline ?
+                                          R.string.message_reviews_error_loading :
+                                          R.string.message_reviews_offline));
+        }
+
+        // The content is complete once the backdrop image is shown too, if there is one.
+        if (extras.getBackdropPath() == null)
+        {
+            logTimeToFullContent();
+            return;
+        }
+        loadBackdropImage(extras.getBackdropPath(), new Callback()
+        {
+            @Override
+            public void onSuccess()
+            {
+                logTimeToFullContent();
+            }
+
+            @Override
+            public void onError()
+            {
+                logTimeToFullContent();
+            }
+        });
+    }
+
+    /**
+     * Logs how long the detail screen took to show all of its content since it was requested.
+     */
+    private void logTimeToFullContent()
+    {
+        Log.d(LOG_TAG,
+              "Showed full details of movie " + movie.getId() + " in " +
+              (SystemClock.elapsedRealtime() - extrasRequestedMillis) + " ms");
     }
 }
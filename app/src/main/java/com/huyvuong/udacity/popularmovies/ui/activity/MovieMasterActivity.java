@@ -1,15 +1,16 @@
 package com.huyvuong.udacity.popularmovies.ui.activity;
 
+import android.content.ContentResolver;
 import android.content.SharedPreferences;
-import android.database.Cursor;
 import android.os.Bundle;
 import android.os.Parcelable;
 import android.preference.PreferenceManager;
-import android.support.annotation.NonNull;
 import android.support.design.widget.Snackbar;
+import android.support.v4.view.MenuItemCompat;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
 import android.support.v7.widget.Toolbar;
 import android.util.Log;
 import android.view.Menu;
@@ -19,12 +20,17 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.huyvuong.udacity.popularmovies.R;
-import com.huyvuong.udacity.popularmovies.data.MovieContract;
+import com.huyvuong.udacity.popularmovies.data.CatalogCache;
+import com.huyvuong.udacity.popularmovies.data.FavoritesRepository;
 import com.huyvuong.udacity.popularmovies.gateway.TmdbGateway;
 import com.huyvuong.udacity.popularmovies.model.business.Movie;
-import com.huyvuong.udacity.popularmovies.model.transport.GetMoviesResponse;
+import com.huyvuong.udacity.popularmovies.scheduler.PriorityScheduler;
+import com.huyvuong.udacity.popularmovies.ui.MovieSearch;
+import com.huyvuong.udacity.popularmovies.ui.PagedMovieSource;
 import com.huyvuong.udacity.popularmovies.ui.PosterAdapter;
+import com.huyvuong.udacity.popularmovies.ui.PosterPrefetcher;
 import com.huyvuong.udacity.popularmovies.util.NetworkUtils;
+import com.squareup.picasso.Picasso;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -32,38 +38,22 @@ import java.util.List;
 import butterknife.BindView;
 import butterknife.ButterKnife;
 import rx.Observable;
+import rx.Subscription;
 import rx.android.schedulers.AndroidSchedulers;
-import rx.observables.ConnectableObservable;
-import rx.schedulers.Schedulers;
+import rx.subjects.PublishSubject;
 
 /**
  * Activity containing the master view of the movies retrieved from TMDb.
  */
 public class MovieMasterActivity
         extends AppCompatActivity
+        implements PagedMovieSource.Callback
 {
     private static final String LOG_TAG = MovieMasterActivity.class.getSimpleName();
 
     private static final String KEY_CRITERIA = "movieDisplayCriteria";
-    private static final String BUNDLE_MOVIE_LIST = "movies";
     private static final String BUNDLE_RECYCLER_VIEW_STATE = "recyclerViewState";
 
-    private static final String[] MOVIE_PROJECTION = new String[]
-            {
-                    MovieContract.MovieEntry.COLUMN_MOVIE_ID,
-                    MovieContract.MovieEntry.COLUMN_ORIGINAL_TITLE,
-                    MovieContract.MovieEntry.COLUMN_POSTER_PATH,
-                    MovieContract.MovieEntry.COLUMN_PLOT_SYNOPSIS,
-                    MovieContract.MovieEntry.COLUMN_RATING,
-                    MovieContract.MovieEntry.COLUMN_RELEASE_DATE
-            };
-    private static final int INDEX_MOVIE_ID = 0;
-    private static final int INDEX_ORIGINAL_TITLE = 1;
-    private static final int INDEX_POSTER_PATH = 2;
-    private static final int INDEX_PLOT_SYNOPSIS = 3;
-    private static final int INDEX_RATING = 4;
-    private static final int INDEX_RELEASE_DATE = 5;
-
     @BindView(R.id.toolbar)
     Toolbar toolbar;
 
@@ -74,10 +64,18 @@ public class MovieMasterActivity
     TextView emptyMovieTextView;
 
     private PosterAdapter posterAdapter;
+    private PagedMovieSource pagedMovieSource;
+    private PosterPrefetcher posterPrefetcher;
     private GridLayoutManager gridLayoutManager;
     private Parcelable recyclerViewState;
     private ArrayList<Movie> movies;
     private Snackbar offlineSnackbar;
+    private boolean isShowingCachedMovies;
+    private Subscription cachedMoviesSubscription;
+    private Subscription favoriteMoviesSubscription;
+    private MovieSearch movieSearch;
+    private PublishSubject<String> searchQueries;
+    private Subscription searchSubscription;
     private MovieDisplayCriteria movieDisplayCriteria;
 
     @Override
@@ -92,15 +90,7 @@ public class MovieMasterActivity
 
         // Populate the grid view with movie posters that when clicked, open the detail view for
         // that movie.
-        if (savedInstanceState != null &&
-            savedInstanceState.getParcelableArrayList(BUNDLE_MOVIE_LIST) != null)
-        {
-            movies = savedInstanceState.getParcelableArrayList(BUNDLE_MOVIE_LIST);
-        }
-        else
-        {
-            movies = new ArrayList<>();
-        }
+        movies = new ArrayList<>();
         posterAdapter = new PosterAdapter(this, movies);
         moviesRecyclerView.setAdapter(posterAdapter);
         gridLayoutManager = new GridLayoutManager(
@@ -108,6 +98,43 @@ public class MovieMasterActivity
                 getResources().getInteger(R.integer.movie_recycler_span_count));
         moviesRecyclerView.setLayoutManager(gridLayoutManager);
 
+        // Load further pages of movies as the user scrolls through the grid. Pages shown before
+        // the activity was recreated are restored from the offline catalog cache.
+        pagedMovieSource = new PagedMovieSource(this, movies, posterAdapter, this);
+        moviesRecyclerView.addOnScrollListener(
+                pagedMovieSource.createScrollListener(gridLayoutManager));
+        if (savedInstanceState != null)
+        {
+            pagedMovieSource.restoreState(savedInstanceState);
+        }
+
+        // Warm the image cache for the posters just ahead of the scroll position.
+        posterPrefetcher = new PosterPrefetcher(this, posterAdapter, gridLayoutManager);
+        posterAdapter.setPosterPrefetcher(posterPrefetcher);
+        moviesRecyclerView.addOnScrollListener(posterPrefetcher);
+
+        // Pause poster loads for the cells flung past, and resume them once the grid settles.
+        // Prefetches carry their own tags and keep running meanwhile.
+        moviesRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener()
+        {
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView, int newState)
+            {
+                Picasso picasso = Picasso.with(MovieMasterActivity.this);
+                if (newState == RecyclerView.SCROLL_STATE_SETTLING)
+                {
+                    picasso.pauseTag(MovieMasterActivity.this);
+                }
+                else
+                {
+                    picasso.resumeTag(MovieMasterActivity.this);
+                }
+            }
+        });
+
+        // Search TMDb for movies as the user types into the search box.
+        movieSearch = new MovieSearch(this);
+
         // Determine the previous criteria used to display movies. If there were none, default to
         // showing popular movies.
         movieDisplayCriteria = loadMovieDisplayCriteria();
@@ -118,17 +145,19 @@ public class MovieMasterActivity
     {
         super.onResume();
 
-        if (moviesRecyclerView != null)
+        // Search results stay on screen until the user closes the search box.
+        if (moviesRecyclerView != null && searchSubscription == null)
         {
-            moviesRecyclerView.getAdapter().notifyDataSetChanged();
             if (MovieDisplayCriteria.POPULAR.equals(movieDisplayCriteria) &&
-                moviesRecyclerView.getAdapter().getItemCount() == 0)
+                moviesRecyclerView.getAdapter().getItemCount() == 0 &&
+                !pagedMovieSource.isRestoring())
             {
                 // Show popular movies.
                 getMoviesBy(TmdbGateway.MovieSortingCriteria.POPULAR);
             }
             else if (MovieDisplayCriteria.TOP_RATED.equals(movieDisplayCriteria) &&
-                     moviesRecyclerView.getAdapter().getItemCount() == 0)
+                     moviesRecyclerView.getAdapter().getItemCount() == 0 &&
+                     !pagedMovieSource.isRestoring())
             {
                 // Show top rated movies.
                 getMoviesBy(TmdbGateway.MovieSortingCriteria.TOP_RATED);
@@ -145,6 +174,39 @@ public class MovieMasterActivity
         }
     }
 
+    @Override
+    public void onPause()
+    {
+        super.onPause();
+
+        // No point prefetching posters that are no longer on screen.
+        if (posterPrefetcher != null)
+        {
+            posterPrefetcher.cancelAll();
+        }
+    }
+
+    @Override
+    protected void onDestroy()
+    {
+        super.onDestroy();
+
+        // Stop loading posters for this screen now that it is gone.
+        Picasso.with(this).cancelTag(this);
+        stopObservingFavoriteMovies();
+        stopSearch();
+
+        // Stop loading movies for this screen; queries that have not started yet are dropped.
+        if (cachedMoviesSubscription != null)
+        {
+            cachedMoviesSubscription.unsubscribe();
+        }
+        if (pagedMovieSource != null)
+        {
+            pagedMovieSource.stop();
+        }
+    }
+
     @Override
     protected void onRestoreInstanceState(Bundle savedInstanceState)
     {
@@ -184,9 +246,12 @@ public class MovieMasterActivity
             recyclerViewState = gridLayoutManager.onSaveInstanceState();
             outState.putParcelable(BUNDLE_RECYCLER_VIEW_STATE, recyclerViewState);
         }
-        if (movies != null)
+
+        // Only save which pages are shown, not the movies on them, which could take up more than
+        // the binder transaction allows.
+        if (pagedMovieSource != null)
         {
-            outState.putParcelableArrayList(BUNDLE_MOVIE_LIST, movies);
+            pagedMovieSource.saveState(outState);
         }
     }
 
@@ -195,6 +260,50 @@ public class MovieMasterActivity
     {
         // Inflate the menu; this adds items to the action bar if it is present.
         getMenuInflater().inflate(R.menu.menu_movie_master, menu);
+
+        // Show the movies matching the text of the search box while it is open, and go back to
+        // the movies for the selected display criteria once it is closed.
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        SearchView searchView = (SearchView) MenuItemCompat.getActionView(searchItem);
+        searchView.setQueryHint(getString(R.string.hint_search_movies));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener()
+        {
+            @Override
+            public boolean onQueryTextSubmit(String query)
+            {
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText)
+            {
+                if (searchQueries != null)
+                {
+                    searchQueries.onNext(newText);
+                }
+                return true;
+            }
+        });
+        MenuItemCompat.setOnActionExpandListener(
+                searchItem,
+                new MenuItemCompat.OnActionExpandListener()
+                {
+                    @Override
+                    public boolean onMenuItemActionExpand(MenuItem item)
+                    {
+                        startSearch();
+                        return true;
+                    }
+
+                    @Override
+                    public boolean onMenuItemActionCollapse(MenuItem item)
+                    {
+                        stopSearch();
+                        showMoviesForDisplayCriteria();
+                        return true;
+                    }
+                });
         return true;
     }
 
@@ -265,44 +374,6 @@ public class MovieMasterActivity
         }
     }
 
-    /**
-     * Queries for and returns the list of the user's favorite movies.
-     *
-     * @return
-     *     list of favorite movies marked by the user
-     */
-    @NonNull
-    private List<Movie> queryForFavoriteMovies()
-    {
-        // Query for all of the movies that the user has marked as favorites.
-        Cursor cursor = getContentResolver().query(
-                MovieContract.MovieEntry.CONTENT_URI,
-                MOVIE_PROJECTION,
-                null,
-                null,
-                null);
-
-        // Convert the returned database rows to Movie objects.
-        List<Movie> favoriteMovies = new ArrayList<>();
-        if (cursor != null)
-        {
-            while (cursor.moveToNext())
-            {
-                Movie movie = new Movie.Builder()
-                        .withId(cursor.getInt(INDEX_MOVIE_ID))
-                        .withOriginalTitle(cursor.getString(INDEX_ORIGINAL_TITLE))
-                        .withPosterPath(cursor.getString(INDEX_POSTER_PATH))
-                        .withPlotSynopsis(cursor.getString(INDEX_PLOT_SYNOPSIS))
-                        .withRating(cursor.getDouble(INDEX_RATING))
-                        .withReleaseDate(cursor.getString(INDEX_RELEASE_DATE))
-                        .build();
-                favoriteMovies.add(movie);
-            }
-            cursor.close();
-        }
-        return favoriteMovies;
-    }
-
     /**
      * Populates the grid view of movies with the given list of movies.
      *
@@ -311,88 +382,223 @@ public class MovieMasterActivity
      */
     private void populateMoviesWith(List<Movie> moviesToPopulateWith)
     {
-        movies.clear();
-        movies.addAll(moviesToPopulateWith);
-        if (movies.isEmpty())
+        posterAdapter.replaceMovies(moviesToPopulateWith);
+        if (moviesToPopulateWith.isEmpty())
         {
             showEmptyMovieView(getString(R.string.message_movies_empty));
         }
         else
         {
-            posterAdapter.notifyDataSetChanged();
             showMoviesRecyclerView();
         }
     }
 
     /**
      * Calls TMDb to populate the RecyclerView with movies fulfilling the given search criteria.
+     * Further pages are loaded as the user scrolls. Until TMDb answers, the movies last cached for
+     * the criteria are shown instead.
      *
-     * If the device is currently offline, shows a Snackbar instead that indicates that the device
-     * is offline and provides the user a way to retry.
+     * If the device is currently offline, the movies are served from the HTTP cache when
+     * available. If nothing is cached, shows a Snackbar instead that indicates that the device is
+     * offline and provides the user a way to retry.
      *
      * @param movieSortingCriteria
      *     sorting criteria to sort movies by
      */
     private void getMoviesBy(String movieSortingCriteria)
     {
-        if (NetworkUtils.isOnline(this))
+        // Populate the RecyclerView with movie posters as retrieved from TMDb.
+        stopObservingFavoriteMovies();
+        isShowingCachedMovies = false;
+        pagedMovieSource.load(movieSortingCriteria);
+        showCachedMoviesFor(movieSortingCriteria);
+
+        // If the device is no longer offline, then no point showing the Snackbar notifying the
+        // user that their device is offline.
+        if (offlineSnackbar != null && NetworkUtils.isOnline(this))
         {
-            // Populate the RecyclerView with movie posters as retrieved from TMDb.
-            ConnectableObservable<GetMoviesResponse> getMoviesObservable =
-                    new TmdbGateway().getMovies(movieSortingCriteria);
-            getMoviesObservable.flatMap(response -> Observable.from(response.getMovies()))
-                               .toList()
-                               .subscribe(this::populateMoviesWith,
-                                          error ->
-                                          {
-                                              showEmptyMovieView(
-                                                      getString(
-                                                              R.string.message_movies_error_loading));
-                                              Log.e(LOG_TAG, error.getMessage(), error);
-                                          });
-            getMoviesObservable.connect();
-
-            // If the device is no longer offline, then no point showing the Snackbar notifying the
-            // user that their device is offline.
-            if (offlineSnackbar != null)
-            {
-                offlineSnackbar.dismiss();
-            }
+            offlineSnackbar.dismiss();
         }
-        else
+    }
+
+    /**
+     * Populates the RecyclerView with the first page of movies cached for the given criteria,
+     * unless TMDb has answered first.
+     *
+     * @param movieSortingCriteria
+     *     sorting criteria to show the cached movies for
+     */
+    private void showCachedMoviesFor(String movieSortingCriteria)
+    {
+        ContentResolver contentResolver = getContentResolver();
+        Observable<List<Movie>> cachedMoviesObservable = Observable.create(
+                subscriber ->
+                {
+                    subscriber.onNext(
+                            CatalogCache.queryMoviePage(contentResolver, movieSortingCriteria, 1));
+                    subscriber.onCompleted();
+                });
+        if (cachedMoviesSubscription != null)
+        {
+            cachedMoviesSubscription.unsubscribe();
+        }
+        cachedMoviesSubscription = cachedMoviesObservable
+                .subscribeOn(PriorityScheduler.getInstance(this).database())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(cachedMovies ->
+                           {
+                               if (!cachedMovies.isEmpty() &&
+                                   !pagedMovieSource.hasLoadedPages() &&
+                                   movieSortingCriteria.equals(
+                                           pagedMovieSource.getMovieSortingCriteria()))
+                               {
+                                   isShowingCachedMovies = true;
+                                   populateMoviesWith(cachedMovies);
+                               }
+                           },
+                           error -> Log.e(LOG_TAG, error.getMessage(), error));
+    }
+
+    @Override
+    public void onFirstPageLoaded(List<Movie> firstPageMovies)
+    {
+        isShowingCachedMovies = false;
+        populateMoviesWith(firstPageMovies);
+    }
+
+    @Override
+    public void onPageLoadFailed(int pageNumber, Throwable error)
+    {
+        // Later pages are retried on the next scroll, so only a failure to show anything at all
+        // is surfaced to the user.
+        if (pageNumber > 1)
         {
-            // Show a Snackbar that allows the user to retry the request using the same movie
-            // sorting criteria that they originally selected.
-            offlineSnackbar = Snackbar
-                    .make(
-                            moviesRecyclerView,
-                            R.string.snackbar_offline_message,
-                            Snackbar.LENGTH_INDEFINITE)
-                    .setAction(
-                            R.string.snackbar_offline_action_retry,
-                            view -> getMoviesBy(movieSortingCriteria));
-            offlineSnackbar.show();
+            return;
+        }
+
+        if (!NetworkUtils.isOnline(this))
+        {
+            showOfflineSnackbar(pagedMovieSource.getMovieSortingCriteria());
+        }
+        else if (!isShowingCachedMovies)
+        {
+            showEmptyMovieView(getString(R.string.message_movies_error_loading));
         }
     }
 
     /**
-     * Calls the MovieProvider to populate the RecyclerView with movies that the user marked as
-     * their favorite movies.
+     * Shows a Snackbar that allows the user to retry the request using the same movie sorting
+     * criteria that they originally selected.
+     *
+     * @param movieSortingCriteria
+     *     sorting criteria to retry the request with
+     */
+    private void showOfflineSnackbar(String movieSortingCriteria)
+    {
+        offlineSnackbar = Snackbar
+                .make(
+                        moviesRecyclerView,
+                        R.string.snackbar_offline_message,
+                        Snackbar.LENGTH_INDEFINITE)
+                .setAction(
+                        R.string.snackbar_offline_action_retry,
+                        view -> getMoviesBy(movieSortingCriteria));
+        offlineSnackbar.show();
+    }
+
+    /**
+     * Populates the RecyclerView with the movies that the user marked as their favorite movies,
+     * and keeps it up to date as favorites are marked or unmarked, until the user switches to
+     * another display criteria.
      */
     private void getFavoriteMovies()
     {
-        Observable.from(queryForFavoriteMovies())
-                  .subscribeOn(Schedulers.io())
-                  .observeOn(AndroidSchedulers.mainThread())
-                  .toList()
-                  .subscribe(this::populateMoviesWith,
-                             error ->
-                             {
-                                 showEmptyMovieView(
-                                         getString(
-                                                 R.string.message_movies_error_loading));
-                                 Log.e(LOG_TAG, error.getMessage(), error);
-                             });
+        pagedMovieSource.stop();
+        isShowingCachedMovies = false;
+
+        // Already listening for the favorites, so the grid is up to date.
+        if (favoriteMoviesSubscription != null && !favoriteMoviesSubscription.isUnsubscribed())
+        {
+            return;
+        }
+
+        favoriteMoviesSubscription = FavoritesRepository
+                .getInstance(this)
+                .observeFavoriteMovies()
+                .subscribe(this::populateMoviesWith,
+                           error ->
+                           {
+                               showEmptyMovieView(
+                                       getString(R.string.message_movies_error_loading));
+                               Log.e(LOG_TAG, error.getMessage(), error);
+                           });
+    }
+
+    /**
+     * Stops updating the RecyclerView as the user's favorite movies change.
+     */
+    private void stopObservingFavoriteMovies()
+    {
+        if (favoriteMoviesSubscription != null)
+        {
+            favoriteMoviesSubscription.unsubscribe();
+            favoriteMoviesSubscription = null;
+        }
+    }
+
+    /**
+     * Replaces the movies in the RecyclerView with the movies matching the text of the search box,
+     * every time the user settles on a new query.
+     */
+    private void startSearch()
+    {
+        pagedMovieSource.stop();
+        stopObservingFavoriteMovies();
+        isShowingCachedMovies = false;
+
+        searchQueries = PublishSubject.create();
+        searchSubscription = movieSearch
+                .search(searchQueries)
+                .subscribe(this::populateMoviesWith,
+                           error ->
+                           {
+                               showEmptyMovieView(
+                                       getString(R.string.message_movies_error_loading));
+                               Log.e(LOG_TAG, error.getMessage(), error);
+                           });
+    }
+
+    /**
+     * Stops showing the movies matching the text of the search box, cancelling any search in
+     * flight.
+     */
+    private void stopSearch()
+    {
+        if (searchSubscription != null)
+        {
+            searchSubscription.unsubscribe();
+            searchSubscription = null;
+        }
+        searchQueries = null;
+    }
+
+    /**
+     * Populates the RecyclerView with the movies for the selected display criteria.
+     */
+    private void showMoviesForDisplayCriteria()
+    {
+        switch (movieDisplayCriteria)
+        {
+            case POPULAR:
+                getMoviesBy(TmdbGateway.MovieSortingCriteria.POPULAR);
+                break;
+            case TOP_RATED:
+                getMoviesBy(TmdbGateway.MovieSortingCriteria.TOP_RATED);
+                break;
+            case FAVORITE:
+                getFavoriteMovies();
+                break;
+        }
     }
 
     /**
@@ -0,0 +1,53 @@
+package com.huyvuong.udacity.popularmovies.util;
+
+/**
+ * Utility class containing methods for presenting movie ratings.
+ */
+public class RatingUtils
+{
+    private RatingUtils()
+    {
+        throw new UnsupportedOperationException("Do not instantiate utility classes.");
+    }
+
+    /**
+     * Returns a string of filled and unfilled stars depending on the given rating.
+     *
+     * @param rating
+     *     numeric rating to determine how many stars to return
+     * @return
+     *     string containing stars based on the given numeric rating
+     */
+    public static String buildRatingStarString(double rating)
+    {
+        if (rating >= 1 && rating < 2.8)
+        {
+            // One Star
+            return "\u2605\u2606\u2606\u2606\u2606";
+        }
+        else if (rating >= 2.8 && rating < 4.6)
+        {
+            // Two Stars
+            return "\u2605\u2605\u2606\u2606\u2606";
+        }
+        else if (rating >= 4.6 && rating < 6.4)
+        {
+            // Three Stars
+            return "\u2605\u2605\u2605\u2606\u2606";
+        }
+        else if (rating >= 6.4 && rating < 8.2)
+        {
+            // Four Stars
+            return "\u2605\u2605\u2605\u2605\u2606";
+        }
+        else if (rating >= 8.2 && rating <= 10.0)
+        {
+            // Five Stars
+            return "\u2605\u2605\u2605\u2605\u2605";
+        }
+        else
+        {
+            return "";
+        }
+    }
+}
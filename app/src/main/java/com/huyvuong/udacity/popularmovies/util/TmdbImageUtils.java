@@ -0,0 +1,156 @@
+package com.huyvuong.udacity.popularmovies.util;
+
+import android.content.Context;
+import android.content.res.Resources;
+
+import com.huyvuong.udacity.popularmovies.R;
+import com.huyvuong.udacity.popularmovies.constants.TmdbImageSizes;
+
+/**
+ * Utility class containing methods for resolving TMDb image URLs to the smallest image size that
+ * covers the view showing the image, so that small screens do not download oversized images and
+ * large screens do not show blurry ones.
+ *
+ * Target widths are in pixels, so they already account for the screen density.
+ */
+public class TmdbImageUtils
+{
+    private static final String IMAGE_URL_FORMAT = "http://image.tmdb.org/t/p/%s/%s";
+
+    // Poster sizes from smallest to largest, along with their widths in pixels.
+    private static final String[] POSTER_SIZES = new String[]
+            {
+                    TmdbImageSizes.W92,
+                    TmdbImageSizes.W154,
+                    TmdbImageSizes.W185,
+                    TmdbImageSizes.W342,
+                    TmdbImageSizes.W500,
+                    TmdbImageSizes.W780
+            };
+    private static final int[] POSTER_WIDTHS = new int[] {92, 154, 185, 342, 500, 780};
+
+    // Backdrop sizes from smallest to largest, along with their widths in pixels.
+    private static final String[] BACKDROP_SIZES = new String[]
+            {
+                    TmdbImageSizes.W300,
+                    TmdbImageSizes.W780,
+                    TmdbImageSizes.W1280
+            };
+    private static final int[] BACKDROP_WIDTHS = new int[] {300, 780, 1280};
+
+    private TmdbImageUtils()
+    {
+        throw new UnsupportedOperationException("Do not instantiate utility classes.");
+    }
+
+    /**
+     * Returns the URL of the given poster at the smallest size at least as wide as the given
+     * width.
+     *
+     * @param posterPath
+     *     poster path returned by TMDb
+     * @param targetWidthPixels
+     *     width of the view showing the poster, in pixels
+     * @return
+     *     URL of the poster
+     */
+    public static String buildPosterUrl(String posterPath, int targetWidthPixels)
+    {
+        return String.format(IMAGE_URL_FORMAT,
+                             selectSize(POSTER_SIZES, POSTER_WIDTHS, targetWidthPixels),
+                             posterPath);
+    }
+
+    /**
+     * Returns the URL of the given backdrop at the smallest size at least as wide as the given
+     * width.
+     *
+     * @param backdropPath
+     *     backdrop path returned by TMDb
+     * @param targetWidthPixels
+     *     width of the view showing the backdrop, in pixels
+     * @return
+     *     URL of the backdrop
+     */
+    public static String buildBackdropUrl(String backdropPath, int targetWidthPixels)
+    {
+        return String.format(IMAGE_URL_FORMAT,
+                             selectSize(BACKDROP_SIZES, BACKDROP_WIDTHS, targetWidthPixels),
+                             backdropPath);
+    }
+
+    /**
+     * Returns the width in pixels of a poster cell in the master grid, which splits the screen
+     * width into {@code R.integer.movie_recycler_span_count} columns.
+     *
+     * @param context
+     *     context used to obtain the screen width and span count
+     * @return
+     *     width of a poster cell in pixels
+     */
+    public static int computeGridPosterWidth(Context context)
+    {
+        Resources resources = context.getResources();
+        return computeScreenWidth(context) /
+               resources.getInteger(R.integer.movie_recycler_span_count);
+    }
+
+    /**
+     * Returns the height in pixels of a poster shown at the given width. TMDb posters have an
+     * aspect ratio of 2:3.
+     *
+     * @param posterWidthPixels
+     *     width of the poster in pixels
+     * @return
+     *     height of the poster in pixels
+     */
+    public static int computePosterHeight(int posterWidthPixels)
+    {
+        return posterWidthPixels * 3 / 2;
+    }
+
+    /**
+     * Returns the width in pixels of the poster on the detail screen, which takes
+     * {@code R.integer.detail_poster_width_percent} of the screen width.
+     *
+     * @param context
+     *     context used to obtain the screen width and poster share
+     * @return
+     *     width of the detail poster in pixels
+     */
+    public static int computeDetailPosterWidth(Context context)
+    {
+        Resources resources = context.getResources();
+        return computeScreenWidth(context) *
+               resources.getInteger(R.integer.detail_poster_width_percent) / 100;
+    }
+
+    /**
+     * Returns the width of the screen in pixels in its current orientation.
+     *
+     * @param context
+     *     context used to obtain the display metrics
+     * @return
+     *     width of the screen in pixels
+     */
+    public static int computeScreenWidth(Context context)
+    {
+        return context.getResources().getDisplayMetrics().widthPixels;
+    }
+
+    /**
+     * Returns the smallest of the given sizes whose width covers the target width, falling back to
+     * {@link TmdbImageSizes#ORIGINAL} if none does.
+     */
+    private static String selectSize(String[] sizes, int[] widths, int targetWidthPixels)
+    {
+        for (int i = 0; i < sizes.length; i++)
+        {
+            if (widths[i] >= targetWidthPixels)
+            {
+                return sizes[i];
+            }
+        }
+        return TmdbImageSizes.ORIGINAL;
+    }
+}
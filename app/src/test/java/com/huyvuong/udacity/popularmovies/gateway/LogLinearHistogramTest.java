@@ -0,0 +1,135 @@
+package com.huyvuong.udacity.popularmovies.gateway;
+
+import com.google.gson.JsonArray;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit test of the bucket and percentile math of {@link LogLinearHistogram}.
+ */
+public class LogLinearHistogramTest
+{
+    @Test
+    public void empty_reportsZero()
+    {
+        LogLinearHistogram histogram = new LogLinearHistogram();
+
+        assertEquals(0L, histogram.getCount());
+        assertEquals(0L, histogram.getMax());
+        assertEquals(0.0, histogram.getMean(), 0.0);
+        assertEquals(0L, histogram.getValueAtPercentile(50.0));
+    }
+
+    @Test
+    public void record_countsNegativeValuesAsZero()
+    {
+        LogLinearHistogram histogram = new LogLinearHistogram();
+
+        histogram.record(-5L);
+
+        assertEquals(1L, histogram.getCount());
+        assertEquals(0L, histogram.getMax());
+        assertEquals(0L, histogram.getValueAtPercentile(100.0));
+    }
+
+    @Test
+    public void getMean_isExact()
+    {
+        LogLinearHistogram histogram = new LogLinearHistogram();
+
+        histogram.record(1000L);
+        histogram.record(3001L);
+
+        assertEquals(2000.5, histogram.getMean(), 0.0);
+        assertEquals(3001L, histogram.getMax());
+    }
+
+    @Test
+    public void getValueAtPercentile_isExactBelowSixteen()
+    {
+        for (long value = 0L; value < 16L; value++)
+        {
+            LogLinearHistogram histogram = new LogLinearHistogram();
+            histogram.record(value);
+            histogram.record(Long.MAX_VALUE);
+
+            assertEquals(value, histogram.getValueAtPercentile(50.0));
+        }
+    }
+
+    @Test
+    public void getValueAtPercentile_isWithinOneSixteenthAboveSixteen()
+    {
+        long[] values = {16L, 17L, 31L, 32L, 33L, 100L, 1000L, 1023L, 1024L, 123456789L,
+                         Long.MAX_VALUE / 3};
+        for (long value : values)
+        {
+            LogLinearHistogram histogram = new LogLinearHistogram();
+            histogram.record(value);
+            histogram.record(Long.MAX_VALUE);
+
+            // The upper end of the value's bucket is reported, as the max does not cap it here.
+            long reportedValue = histogram.getValueAtPercentile(50.0);
+            assertTrue(value + " reported as " + reportedValue, reportedValue >= value);
+            assertTrue(value + " reported as " + reportedValue,
+                       reportedValue - value <= value / 16);
+        }
+    }
+
+    @Test
+    public void getValueAtPercentile_isCappedAtMax()
+    {
+        LogLinearHistogram histogram = new LogLinearHistogram();
+
+        histogram.record(1000L);
+
+        // 1000 falls in the bucket [992, 1023].
+        assertEquals(1000L, histogram.getValueAtPercentile(99.0));
+    }
+
+    @Test
+    public void getValueAtPercentile_walksBucketsInOrder()
+    {
+        LogLinearHistogram histogram = new LogLinearHistogram();
+        for (long value = 1L; value <= 100L; value++)
+        {
+            histogram.record(value);
+        }
+
+        // 50 falls in the bucket [50, 51], 99 in [96, 99] and 100 in [100, 103].
+        assertEquals(1L, histogram.getValueAtPercentile(0.0));
+        assertEquals(51L, histogram.getValueAtPercentile(50.0));
+        assertEquals(99L, histogram.getValueAtPercentile(99.0));
+        assertEquals(100L, histogram.getValueAtPercentile(100.0));
+    }
+
+    @Test
+    public void record_handlesLongMaxValue()
+    {
+        LogLinearHistogram histogram = new LogLinearHistogram();
+
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(50.0));
+    }
+
+    @Test
+    public void toJson_listsLowestValueOfEveryBucket()
+    {
+        LogLinearHistogram histogram = new LogLinearHistogram();
+        histogram.record(7L);
+        histogram.record(1000L);
+        histogram.record(1010L);
+
+        JsonArray buckets = histogram.toJson().getAsJsonArray("buckets");
+
+        assertEquals(2, buckets.size());
+        assertEquals(7L, buckets.get(0).getAsJsonArray().get(0).getAsLong());
+        assertEquals(1L, buckets.get(0).getAsJsonArray().get(1).getAsLong());
+        assertEquals(992L, buckets.get(1).getAsJsonArray().get(0).getAsLong());
+        assertEquals(2L, buckets.get(1).getAsJsonArray().get(1).getAsLong());
+    }
+}
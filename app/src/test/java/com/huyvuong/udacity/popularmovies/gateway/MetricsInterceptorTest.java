@@ -0,0 +1,79 @@
+package com.huyvuong.udacity.popularmovies.gateway;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit test of the latency phases {@link MetricsInterceptor} records against a
+ * {@link MockWebServer}.
+ */
+public class MetricsInterceptorTest
+{
+    private static final long WAIT_MILLIS = 200L;
+
+    private MockWebServer server;
+    private TmdbMetrics metrics;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        server = new MockWebServer();
+        server.start();
+        metrics = new TmdbMetrics();
+        MetricsInterceptor metricsInterceptor = new MetricsInterceptor(metrics);
+
+        // Stand in for a rate limit wait or retry backoff before the request goes out.
+        client = new OkHttpClient.Builder()
+                .addInterceptor(metricsInterceptor)
+                .addInterceptor(
+                        chain ->
+                        {
+                            try
+                            {
+                                Thread.sleep(WAIT_MILLIS);
+                            }
+                            catch (InterruptedException e)
+                            {
+                                throw new InterruptedIOException();
+                            }
+                            return chain.proceed(chain.request());
+                        })
+                .addInterceptor(metricsInterceptor.attemptInterceptor())
+                .addNetworkInterceptor(metricsInterceptor.networkInterceptor())
+                .build();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        server.shutdown();
+    }
+
+    @Test
+    public void connect_excludesWaitsBeforeTheAttempt() throws Exception
+    {
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        Response response = client.newCall(
+                new Request.Builder().url(server.url("/3/movie/550")).build()).execute();
+        response.body().string();
+
+        EndpointMetrics endpointMetrics = metrics.getEndpointMetrics("3/movie/{id}");
+        assertEquals(1L, endpointMetrics.getConnectMicros().getCount());
+        assertTrue(endpointMetrics.getConnectMicros().getMax() < WAIT_MILLIS * 1000L);
+        assertTrue(endpointMetrics.getTotalMicros().getMax() >= WAIT_MILLIS * 1000L);
+    }
+}
@@ -0,0 +1,190 @@
+package com.huyvuong.udacity.popularmovies.gateway;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit test of {@link ResilienceInterceptor} against a {@link MockWebServer}.
+ */
+public class ResilienceInterceptorTest
+{
+    private static final int FAILURE_THRESHOLD = 2;
+    private static final long OPEN_MILLIS = 200L;
+
+    private MockWebServer server;
+    private ResilienceInterceptor interceptor;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        server = new MockWebServer();
+        server.start();
+        interceptor = new ResilienceInterceptor.Builder()
+                .withMaxAttempts(3)
+                .withBaseDelayMillis(10L)
+                .withMaxDelayMillis(100L)
+                .withFailureThreshold(FAILURE_THRESHOLD)
+                .withOpenMillis(OPEN_MILLIS)
+                .build();
+        client = new OkHttpClient.Builder()
+                .addInterceptor(interceptor)
+                .build();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        server.shutdown();
+    }
+
+    @Test
+    public void get_retriesServerErrorsUntilSuccess() throws Exception
+    {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        Response response = get("3/movie/550");
+
+        assertEquals(200, response.code());
+        assertEquals("ok", response.body().string());
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void get_returnsLastFailureAfterMaxAttempts() throws Exception
+    {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody("unexpected"));
+
+        Response response = get("3/movie/550");
+
+        assertEquals(503, response.code());
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void get_doesNotRetryClientErrors() throws Exception
+    {
+        server.enqueue(new MockResponse().setResponseCode(404));
+        server.enqueue(new MockResponse().setBody("unexpected"));
+
+        Response response = get("3/movie/550");
+
+        assertEquals(404, response.code());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void get_waitsForRetryAfter() throws Exception
+    {
+        server.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "0"));
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        Response response = get("3/movie/popular");
+
+        assertEquals(200, response.code());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void get_longRetryAfterOpensCircuitWithoutRetrying() throws Exception
+    {
+        server.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "60"));
+        server.enqueue(new MockResponse().setBody("unexpected"));
+
+        Response response = get("3/movie/popular");
+
+        assertEquals(429, response.code());
+        assertEquals(1, server.getRequestCount());
+        assertEquals(CircuitBreaker.State.OPEN,
+                     interceptor.getCircuitState(url("3/movie/popular")));
+    }
+
+    @Test
+    public void post_isNotRetried() throws Exception
+    {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody("unexpected"));
+
+        Request request = new Request.Builder()
+                .url(url("3/movie/550/rating"))
+                .post(RequestBody.create(MediaType.parse("application/json"), "{}"))
+                .build();
+        Response response = client.newCall(request).execute();
+
+        assertEquals(503, response.code());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void get_openCircuitStopsCallingEndpoint() throws Exception
+    {
+        for (int i = 0; i < FAILURE_THRESHOLD * 3; i++)
+        {
+            server.enqueue(new MockResponse().setResponseCode(503));
+        }
+
+        for (int i = 0; i < FAILURE_THRESHOLD; i++)
+        {
+            get("3/movie/550/videos").body().close();
+        }
+        int requestCountWhenOpened = server.getRequestCount();
+
+        // Without a cache, short-circuited requests fail as unsatisfiable.
+        Response response = get("3/movie/680/videos");
+
+        assertEquals(504, response.code());
+        assertEquals(requestCountWhenOpened, server.getRequestCount());
+        assertEquals(CircuitBreaker.State.OPEN,
+                     interceptor.getCircuitState(url("3/movie/550/videos")));
+        assertEquals(CircuitBreaker.State.CLOSED, interceptor.getCircuitState(url("3/movie/550")));
+    }
+
+    @Test
+    public void get_successfulTrialRequestClosesCircuit() throws Exception
+    {
+        for (int i = 0; i < FAILURE_THRESHOLD * 3; i++)
+        {
+            server.enqueue(new MockResponse().setResponseCode(503));
+        }
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        for (int i = 0; i < FAILURE_THRESHOLD; i++)
+        {
+            get("3/movie/550/reviews").body().close();
+        }
+        Thread.sleep(OPEN_MILLIS + 50L);
+
+        Response response = get("3/movie/550/reviews");
+
+        assertEquals(200, response.code());
+        assertEquals(CircuitBreaker.State.CLOSED,
+                     interceptor.getCircuitState(url("3/movie/550/reviews")));
+    }
+
+    private Response get(String path) throws Exception
+    {
+        return client.newCall(new Request.Builder().url(url(path)).build()).execute();
+    }
+
+    private HttpUrl url(String path)
+    {
+        return server.url("/" + path);
+    }
+}
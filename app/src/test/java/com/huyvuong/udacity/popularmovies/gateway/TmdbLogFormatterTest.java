@@ -0,0 +1,55 @@
+package com.huyvuong.udacity.popularmovies.gateway;
+
+import com.huyvuong.udacity.popularmovies.model.transport.GetMovieBundleResponse;
+import com.huyvuong.udacity.popularmovies.model.transport.GetMoviesResponse;
+import com.huyvuong.udacity.popularmovies.model.transport.GetReviewsResponse;
+import com.huyvuong.udacity.popularmovies.model.transport.GetVideosResponse;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit test of the {@link TmdbLogFormatter} messages for responses without results, which
+ * the streaming adapters decode with null lists.
+ */
+public class TmdbLogFormatterTest
+{
+    @Test
+    public void summarizeMovieBundle_countsMissingResultsAsZero()
+    {
+        GetMovieBundleResponse response = new GetMovieBundleResponse.Builder()
+                .withId(550)
+                .withBackdropPath("/backdrop.jpg")
+                .withVideos(new GetVideosResponse.Builder().build())
+                .withReviews(new GetReviewsResponse.Builder().build())
+                .build();
+
+        assertEquals("{\"id\": 550, \"backdrop_path\": \"/backdrop.jpg\", " +
+                     "\"videos\": 0, \"reviews\": 0}",
+                     TmdbLogFormatter.summarizeMovieBundle(response));
+    }
+
+    @Test
+    public void listMovieBundle_listsMissingResultsAsEmpty()
+    {
+        GetMovieBundleResponse response = new GetMovieBundleResponse.Builder()
+                .withId(550)
+                .withVideos(new GetVideosResponse.Builder().build())
+                .withReviews(new GetReviewsResponse.Builder().build())
+                .build();
+
+        assertEquals("{\"videos\": [], \"reviews\": []}",
+                     TmdbLogFormatter.listMovieBundle(response));
+    }
+
+    @Test
+    public void listMovies_listsMissingResultsAsEmpty()
+    {
+        GetMoviesResponse response = new GetMoviesResponse.Builder().build();
+
+        assertEquals("[]", TmdbLogFormatter.listMovies(response));
+        assertEquals("{\"page\": null, \"total_pages\": null, \"results\": 0}",
+                     TmdbLogFormatter.summarizeMovies(response));
+    }
+}
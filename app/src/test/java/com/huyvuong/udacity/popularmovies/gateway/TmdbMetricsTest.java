@@ -0,0 +1,48 @@
+package com.huyvuong.udacity.popularmovies.gateway;
+
+import org.junit.Test;
+
+import okhttp3.HttpUrl;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit test of how {@link TmdbMetrics} groups TMDb URLs into endpoints.
+ */
+public class TmdbMetricsTest
+{
+    private static final String BASE_URL = "https://api.themoviedb.org/";
+
+    @Test
+    public void templatePathOf_keepsApiVersion()
+    {
+        assertEquals("3/search/movie", templatePathOf("3/search/movie?query=alien&page=1"));
+    }
+
+    @Test
+    public void templatePathOf_templatesMovieId()
+    {
+        assertEquals("3/movie/{id}", templatePathOf("3/movie/550"));
+        assertEquals("3/movie/{id}/reviews", templatePathOf("3/movie/550/reviews?page=2"));
+        assertEquals("3/movie/{id}/videos", templatePathOf("3/movie/550/videos"));
+    }
+
+    @Test
+    public void templatePathOf_templatesMovieListCriteria()
+    {
+        assertEquals("3/movie/{criteria}", templatePathOf("3/movie/popular?page=1"));
+        assertEquals("3/movie/{criteria}", templatePathOf("3/movie/top_rated?page=3"));
+    }
+
+    @Test
+    public void templatePathOf_keepsAppendToResponse()
+    {
+        assertEquals("3/movie/{id}?append_to_response=videos,reviews",
+                     templatePathOf("3/movie/550?append_to_response=videos,reviews"));
+    }
+
+    private static String templatePathOf(String pathAndQuery)
+    {
+        return TmdbMetrics.templatePathOf(HttpUrl.parse(BASE_URL + pathAndQuery));
+    }
+}
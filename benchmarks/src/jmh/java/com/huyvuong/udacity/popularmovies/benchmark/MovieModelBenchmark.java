@@ -0,0 +1,82 @@
+package com.huyvuong.udacity.popularmovies.benchmark;
+
+import android.content.ContentValues;
+
+import com.google.gson.Gson;
+import com.huyvuong.udacity.popularmovies.model.business.Movie;
+import com.huyvuong.udacity.popularmovies.model.transport.GetMoviesResponse;
+import com.huyvuong.udacity.popularmovies.util.RatingUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-page cost of building, mapping and presenting {@link Movie} objects, using the
+ * 20 movies from the sample popular movies payload.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MovieModelBenchmark
+{
+    private List<Movie> movies;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        String moviesJson = TmdbFixtures.load(TmdbFixtures.GET_MOVIES_POPULAR);
+        movies = new Gson().fromJson(moviesJson, GetMoviesResponse.class).getMovies();
+    }
+
+    @Benchmark
+    public void buildMovies(Blackhole blackhole)
+    {
+        for (Movie movie : movies)
+        {
+            blackhole.consume(
+                    new Movie.Builder()
+                            .withId(movie.getId())
+                            .withOriginalTitle(movie.getOriginalTitle())
+                            .withPosterPath(movie.getPosterPath())
+                            .withPlotSynopsis(movie.getPlotSynopsis())
+                            .withRating(movie.getRating())
+                            .withReleaseDate(movie.getReleaseDate())
+                            .build());
+        }
+    }
+
+    @Benchmark
+    public void toContentValues(Blackhole blackhole)
+    {
+        for (Movie movie : movies)
+        {
+            ContentValues values = movie.toContentValues();
+            blackhole.consume(values);
+        }
+    }
+
+    @Benchmark
+    public void buildRatingStarStrings(Blackhole blackhole)
+    {
+        for (Movie movie : movies)
+        {
+            blackhole.consume(RatingUtils.buildRatingStarString(movie.getRating()));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.huyvuong.udacity.popularmovies.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Loads the sample TMDb response payloads bundled with the benchmarks.
+ */
+public final class TmdbFixtures
+{
+    public static final String GET_MOVIES_POPULAR = "tmdb/get_movies_popular.json";
+    public static final String GET_REVIEWS = "tmdb/get_reviews.json";
+    public static final String GET_VIDEOS = "tmdb/get_videos.json";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private TmdbFixtures()
+    {
+        throw new UnsupportedOperationException("Do not instantiate utility classes.");
+    }
+
+    /**
+     * Returns the contents of the given fixture as a string.
+     *
+     * @param fixture
+     *     classpath location of the fixture, such as {@link #GET_MOVIES_POPULAR}
+     * @return
+     *     JSON contents of the fixture
+     * @throws IOException
+     *     if the fixture cannot be read
+     */
+    public static String load(String fixture) throws IOException
+    {
+        InputStream in = TmdbFixtures.class.getClassLoader().getResourceAsStream(fixture);
+        if (in == null)
+        {
+            throw new IOException("Missing fixture: " + fixture);
+        }
+        try
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), UTF_8);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+}
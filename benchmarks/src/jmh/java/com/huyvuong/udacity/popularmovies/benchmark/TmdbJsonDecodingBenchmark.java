@@ -0,0 +1,113 @@
+package com.huyvuong.udacity.popularmovies.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.huyvuong.udacity.popularmovies.model.transport.GetMoviesResponse;
+import com.huyvuong.udacity.popularmovies.model.transport.GetReviewsResponse;
+import com.huyvuong.udacity.popularmovies.model.transport.GetVideosResponse;
+import com.huyvuong.udacity.popularmovies.model.transport.TmdbTypeAdapterFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding TMDb responses with Gson's reflective binding against the streaming adapters
+ * from {@link TmdbTypeAdapterFactory}.
+ *
+ * The {@code warm} benchmarks reuse one {@code Gson} instance, as the gateway does. The
+ * {@code cold} benchmarks build a new {@code Gson} for every decode, which approximates the cost
+ * paid by the first response after the app starts. Only the {@code cold} benchmarks show a clear
+ * difference between the two; the {@code warm} ones are within each other's error.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TmdbJsonDecodingBenchmark
+{
+    private Gson reflectiveGson;
+    private Gson streamingGson;
+
+    private String moviesJson;
+    private String reviewsJson;
+    private String videosJson;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        reflectiveGson = new Gson();
+        streamingGson = newStreamingGson();
+
+        moviesJson = TmdbFixtures.load(TmdbFixtures.GET_MOVIES_POPULAR);
+        reviewsJson = TmdbFixtures.load(TmdbFixtures.GET_REVIEWS);
+        videosJson = TmdbFixtures.load(TmdbFixtures.GET_VIDEOS);
+    }
+
+    @Benchmark
+    public GetMoviesResponse warmMoviesReflective()
+    {
+        return reflectiveGson.fromJson(moviesJson, GetMoviesResponse.class);
+    }
+
+    @Benchmark
+    public GetMoviesResponse warmMoviesStreaming()
+    {
+        return streamingGson.fromJson(moviesJson, GetMoviesResponse.class);
+    }
+
+    @Benchmark
+    public GetReviewsResponse warmReviewsReflective()
+    {
+        return reflectiveGson.fromJson(reviewsJson, GetReviewsResponse.class);
+    }
+
+    @Benchmark
+    public GetReviewsResponse warmReviewsStreaming()
+    {
+        return streamingGson.fromJson(reviewsJson, GetReviewsResponse.class);
+    }
+
+    @Benchmark
+    public GetVideosResponse warmVideosReflective()
+    {
+        return reflectiveGson.fromJson(videosJson, GetVideosResponse.class);
+    }
+
+    @Benchmark
+    public GetVideosResponse warmVideosStreaming()
+    {
+        return streamingGson.fromJson(videosJson, GetVideosResponse.class);
+    }
+
+    @Benchmark
+    public GetMoviesResponse coldMoviesReflective()
+    {
+        return new Gson().fromJson(moviesJson, GetMoviesResponse.class);
+    }
+
+    @Benchmark
+    public GetMoviesResponse coldMoviesStreaming()
+    {
+        return newStreamingGson().fromJson(moviesJson, GetMoviesResponse.class);
+    }
+
+    private static Gson newStreamingGson()
+    {
+        return new GsonBuilder()
+                .registerTypeAdapterFactory(new TmdbTypeAdapterFactory())
+                .create();
+    }
+}
@@ -0,0 +1,99 @@
+package com.huyvuong.udacity.popularmovies.gateway;
+
+import com.google.gson.Gson;
+import com.huyvuong.udacity.popularmovies.benchmark.TmdbFixtures;
+import com.huyvuong.udacity.popularmovies.model.transport.GetMoviesResponse;
+import com.huyvuong.udacity.popularmovies.model.transport.GetReviewsResponse;
+import com.huyvuong.udacity.popularmovies.model.transport.GetVideosResponse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the log messages {@link TmdbGateway} builds for every request and response:
+ * the summary logged at INFO and the item list logged at VERBOSE. This lives in the gateway
+ * package because {@link TmdbLogFormatter} is package-private.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TmdbLogFormattingBenchmark
+{
+    private GetMoviesResponse moviesResponse;
+    private GetReviewsResponse reviewsResponse;
+    private GetVideosResponse videosResponse;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        Gson gson = new Gson();
+        moviesResponse = gson.fromJson(TmdbFixtures.load(TmdbFixtures.GET_MOVIES_POPULAR),
+                                       GetMoviesResponse.class);
+        reviewsResponse = gson.fromJson(TmdbFixtures.load(TmdbFixtures.GET_REVIEWS),
+                                        GetReviewsResponse.class);
+        videosResponse = gson.fromJson(TmdbFixtures.load(TmdbFixtures.GET_VIDEOS),
+                                       GetVideosResponse.class);
+    }
+
+    @Benchmark
+    public String formatRequest()
+    {
+        return TmdbLogFormatter.formatRequest("getMovies", "popular", 1);
+    }
+
+    @Benchmark
+    public String summarizeMoviesResponse()
+    {
+        return TmdbLogFormatter.formatResponse(
+                "getMovies", TmdbLogFormatter.summarizeMovies(moviesResponse), "popular", 1);
+    }
+
+    @Benchmark
+    public String listMoviesResponse()
+    {
+        return TmdbLogFormatter.formatResponse(
+                "getMovies", TmdbLogFormatter.listMovies(moviesResponse), "popular", 1);
+    }
+
+    @Benchmark
+    public String summarizeReviewsResponse()
+    {
+        return TmdbLogFormatter.formatResponse(
+                "getReviews", TmdbLogFormatter.summarizeReviews(reviewsResponse), 550, 1);
+    }
+
+    @Benchmark
+    public String listReviewsResponse()
+    {
+        return TmdbLogFormatter.formatResponse(
+                "getReviews", TmdbLogFormatter.listReviews(reviewsResponse), 550, 1);
+    }
+
+    @Benchmark
+    public String summarizeVideosResponse()
+    {
+        return TmdbLogFormatter.formatResponse(
+                "getVideos", TmdbLogFormatter.summarizeVideos(videosResponse), 550);
+    }
+
+    @Benchmark
+    public String listVideosResponse()
+    {
+        return TmdbLogFormatter.formatResponse(
+                "getVideos", TmdbLogFormatter.listVideos(videosResponse), 550);
+    }
+}